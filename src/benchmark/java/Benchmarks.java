@@ -0,0 +1,27 @@
+import java.util.Random;
+
+/**
+ * Helpers shared by the benchmarks.
+ */
+public class Benchmarks
+{
+	private Benchmarks() {
+	}
+
+	/**
+	 * @return A Picture of the given size filled with random colors, the
+	 * 	same each time, so that every benchmark measures the same pixels.
+	 */
+	public static Picture syntheticPicture(int width, int height) {
+		Picture picture = new Picture(width, height);
+		int[] row = new int[width];
+		Random random = new Random(60);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++)
+				row[x] = random.nextInt();
+			picture.setRow(y, row);
+		}
+		return picture;
+	}
+
+} // End of Benchmarks class
@@ -0,0 +1,104 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Compares BmpCodec with ImageIO for reading and writing the bundled BMP
+ * 	pictures, and a synthetic 8K picture.
+ * 
+ * Run with: gradle bmpBenchmark
+ * 
+ * Reading with ImageIO includes the conversion SimplePicture does to get a
+ * 	TYPE_INT_RGB raster, since that is what loading a picture costs. Each
+ * 	measurement is the median of several runs, after a few warm-up runs.
+ */
+public class BmpCodecBenchmark
+{
+	/** Number of untimed runs before measuring. */
+	private static final int WARMUP_RUNS = 3;
+
+	/** Number of timed runs; the median is reported. */
+	private static final int MEASURED_RUNS = 5;
+
+	/** Something to time. */
+	private interface Task {
+		void run() throws IOException;
+	}
+
+	public static void main(String[] args) throws IOException {
+		System.out.printf("%-22s %12s %12s %8s %12s %12s %8s%n", "picture",
+				"ImageIO read", "Bmp read", "speedup",
+				"ImageIO write", "Bmp write", "speedup");
+
+		for (String name : new String[] {"Micro.bmp", "Okinawa_tiny.bmp",
+				"Maria1.bmp", "Okinawa.bmp", "Camel.bmp"}) {
+			String fileName = Picture.class.getResource(name).getFile()
+					.replaceAll("%20", " ");
+			report(name, fileName, new Picture(fileName));
+		}
+
+		File eightK = File.createTempFile("benchmark", ".bmp");
+		eightK.deleteOnExit();
+		Picture picture = Benchmarks.syntheticPicture(7680, 4320);
+		picture.writeOrFail(eightK.getPath());
+		report("synthetic 8K", eightK.getPath(), picture);
+	}
+
+	/**
+	 * Times reading the file provided and writing the picture provided with
+	 * 	both codecs, and prints one line of the report.
+	 */
+	private static void report(String name, String fileName, Picture picture)
+			throws IOException {
+		File output = File.createTempFile("benchmark", ".bmp");
+		output.deleteOnExit();
+
+		double imageIORead = time(() -> toIntRGB(ImageIO.read(new File(fileName))));
+		double bmpRead = time(() -> BmpCodec.read(fileName));
+		double imageIOWrite = time(() -> ImageIO.write(
+				picture.getBufferedImage(), "bmp", output));
+		double bmpWrite = time(() -> BmpCodec.write(picture, output.getPath()));
+		System.out.printf("%-22s %9.2f ms %9.2f ms %7.1fx %9.2f ms %9.2f ms %7.1fx%n",
+				name + " " + picture.getWidth() + "x" + picture.getHeight(),
+				imageIORead, bmpRead, imageIORead / bmpRead,
+				imageIOWrite, bmpWrite, imageIOWrite / bmpWrite);
+	}
+
+	/**
+	 * @return The image provided, converted to TYPE_INT_RGB as
+	 * 	SimplePicture does if needed.
+	 */
+	private static BufferedImage toIntRGB(BufferedImage image) {
+		if (image.getType() == BufferedImage.TYPE_INT_RGB)
+			return image;
+		BufferedImage converted = new BufferedImage(image.getWidth(),
+				image.getHeight(), BufferedImage.TYPE_INT_RGB);
+		int[] data = new int[image.getWidth() * image.getHeight()];
+		image.getRGB(0, 0, image.getWidth(), image.getHeight(),
+				data, 0, image.getWidth());
+		converted.setRGB(0, 0, image.getWidth(), image.getHeight(),
+				data, 0, image.getWidth());
+		return converted;
+	}
+
+	/**
+	 * @return The median time, in milliseconds, of running the task.
+	 */
+	private static double time(Task task) throws IOException {
+		for (int i = 0; i < WARMUP_RUNS; i++)
+			task.run();
+
+		double[] millis = new double[MEASURED_RUNS];
+		for (int i = 0; i < MEASURED_RUNS; i++) {
+			long start = System.nanoTime();
+			task.run();
+			millis[i] = (System.nanoTime() - start) / 1e6;
+		}
+		Arrays.sort(millis);
+		return millis[MEASURED_RUNS / 2];
+	}
+
+} // End of BmpCodecBenchmark class
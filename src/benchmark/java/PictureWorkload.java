@@ -0,0 +1,147 @@
+import java.awt.Color;
+
+import benchmark.PictureOperations;
+
+/**
+ * The filters of Picture measured by benchmark.PictureBenchmark, applied to
+ * 	one of the bundled pictures or to a synthetic one.
+ *
+ * JMH cannot generate benchmarks for a class in the default package, and a
+ * 	class in a package cannot name Picture, so the benchmark creates a
+ * 	PictureWorkload by reflection, once per fork, and calls it through
+ * 	PictureOperations. Every filter returns a new Picture, so none of them
+ * 	changes the picture it is given.
+ */
+public class PictureWorkload implements PictureOperations
+{
+	/** The picture the filters are applied to. */
+	private final Picture source;
+
+	/** The background of chromaKey, the same size as source. */
+	private final Picture background;
+
+	/** A copy of source, which equals compares it with. */
+	private final Picture copy;
+
+	/** The number of seams carveMany removes. */
+	private final int seams;
+
+	/**
+	 * Loads the picture provided.
+	 *
+	 * @param picture The name of a bundled picture, without its extension,
+	 * 	or synthetic4K or synthetic8K.
+	 */
+	public PictureWorkload(String picture) {
+		if (picture.equals("synthetic4K"))
+			source = Benchmarks.syntheticPicture(3840, 2160);
+		else if (picture.equals("synthetic8K"))
+			source = Benchmarks.syntheticPicture(7680, 4320);
+		else
+			source = Picture.loadPicture(picture + ".bmp");
+		background = source.negate();
+		copy = new Picture(source);
+		seams = Math.min(50, source.getWidth() / 2);
+	}
+
+	public Object grayscale() {
+		return source.grayscale();
+	}
+
+	public Object negate() {
+		return source.negate();
+	}
+
+	public Object lighten() {
+		return source.lighten(30);
+	}
+
+	public Object rotateRight() {
+		return source.rotateRight();
+	}
+
+	public Object flipHorizontal() {
+		return source.flip(Picture.HORIZONTAL);
+	}
+
+	public Object flipVertical() {
+		return source.flip(Picture.VERTICAL);
+	}
+
+	public Object flipForwardDiagonal() {
+		return source.flip(Picture.FORWARD_DIAGONAL);
+	}
+
+	public Object flipBackwardDiagonal() {
+		return source.flip(Picture.BACKWARD_DIAGONAL);
+	}
+
+	/*
+	 * luminosity, energy and the seam filters drop the luminosity plane the
+	 * source caches first, so that each call computes it as a first call
+	 * would.
+	 */
+
+	public Object luminosity() {
+		source.rasterChanged();
+		return source.luminosity();
+	}
+
+	public Object energy() {
+		source.rasterChanged();
+		return source.energy();
+	}
+
+	public Object computeSeam() {
+		source.rasterChanged();
+		return source.computeSeam();
+	}
+
+	public Object carve() {
+		source.rasterChanged();
+		return source.carve();
+	}
+
+	public Object carveMany() {
+		source.rasterChanged();
+		return source.carveMany(seams);
+	}
+
+	public Object chromaKey() {
+		return source.chromaKey(source.getWidth() / 2, source.getHeight() / 2,
+				background, 60);
+	}
+
+	public Object showEdges() {
+		return source.showEdges(20);
+	}
+
+	public Object blur() {
+		return source.blur(3);
+	}
+
+	public Object paintBucket() {
+		return source.paintBucket(source.getWidth() / 2,
+				source.getHeight() / 2, 60, Color.red);
+	}
+
+	public boolean equalsCopy() {
+		return source.equals(copy);
+	}
+
+	public long digest() {
+		// the digest is cached until the pixels change
+		source.rasterChanged();
+		return source.digest();
+	}
+
+	public Object showDifferences() {
+		return source.showDifferences(background);
+	}
+
+	public Object diff() {
+		return new PictureDiff().withTolerance(8)
+				.withTraversal(source.getTraversal()).compare(source, copy);
+	}
+
+} // End of PictureWorkload class
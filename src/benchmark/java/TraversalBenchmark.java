@@ -0,0 +1,156 @@
+import java.util.Arrays;
+
+/**
+ * Compares the row-major filters in Picture with the column-by-column loops
+ * 	they replaced, on the bundled Camel.bmp and on a synthetic 8K picture.
+ * 
+ * Run with: gradle benchmark
+ * 
+ * Each measurement is the median of several runs, after a few warm-up runs
+ * 	so that the JIT compiler has compiled both versions.
+ */
+public class TraversalBenchmark
+{
+	/** Number of untimed runs before measuring. */
+	private static final int WARMUP_RUNS = 3;
+
+	/** Number of timed runs; the median is reported. */
+	private static final int MEASURED_RUNS = 5;
+
+	/** A filter to time. */
+	private interface Filter {
+		Picture apply(Picture picture);
+	}
+
+	public static void main(String[] args) {
+		Picture camel = Picture.loadPicture("Camel.bmp");
+		Picture eightK = Benchmarks.syntheticPicture(7680, 4320);
+
+		report("Camel.bmp", camel);
+		report("synthetic 8K", eightK);
+	}
+
+	/**
+	 * Prints the timings of every filter on the Picture provided.
+	 */
+	private static void report(String name, Picture picture) {
+		System.out.println(name + " (" + picture.getWidth() + "x"
+				+ picture.getHeight() + ")");
+		System.out.printf("  %-12s %14s %14s %8s%n",
+				"filter", "column-major", "row-major", "speedup");
+
+		compare("grayscale", picture,
+				TraversalBenchmark::columnMajorGrayscale, Picture::grayscale);
+		compare("negate", picture,
+				TraversalBenchmark::columnMajorNegate, Picture::negate);
+		compare("energy", picture,
+				TraversalBenchmark::columnMajorEnergy, Picture::energy);
+		compare("rotateRight", picture,
+				TraversalBenchmark::columnMajorRotateRight, Picture::rotateRight);
+
+		PixelTraversal untiled = picture.getTraversal();
+		picture.setTraversal(PixelTraversal.tiled(256, 256));
+		compare("negate/tiled", picture,
+				TraversalBenchmark::columnMajorNegate, Picture::negate);
+		picture.setTraversal(untiled);
+		System.out.println();
+	}
+
+	/**
+	 * Times both versions of a filter, checks that they agree, and prints
+	 * 	one line of the report.
+	 */
+	private static void compare(String name, Picture picture,
+			Filter before, Filter after) {
+		if (!before.apply(picture).equals(after.apply(picture)))
+			throw new IllegalStateException(name + ": results differ");
+
+		double beforeMillis = time(picture, before);
+		double afterMillis = time(picture, after);
+		System.out.printf("  %-12s %11.1f ms %11.1f ms %7.1fx%n", name,
+				beforeMillis, afterMillis, beforeMillis / afterMillis);
+	}
+
+	/**
+	 * @return The median time, in milliseconds, of applying the filter.
+	 */
+	private static double time(Picture picture, Filter filter) {
+		for (int i = 0; i < WARMUP_RUNS; i++)
+			filter.apply(picture);
+
+		double[] millis = new double[MEASURED_RUNS];
+		for (int i = 0; i < MEASURED_RUNS; i++) {
+			long start = System.nanoTime();
+			filter.apply(picture);
+			millis[i] = (System.nanoTime() - start) / 1e6;
+		}
+		Arrays.sort(millis);
+		return millis[MEASURED_RUNS / 2];
+	}
+
+	//////////////////////// Column-major reference loops ////////////////////////
+
+	private static Picture columnMajorGrayscale(Picture picture) {
+		Picture newPicture = new Picture(picture);
+		PixelCursor pixel = new PixelCursor(newPicture);
+		for (int x = 0; x < picture.getWidth(); x++) {
+			for (int y = 0; y < picture.getHeight(); y++) {
+				int average = pixel.moveTo(x, y).getAverage();
+				pixel.setRGB(average, average, average);
+			}
+		}
+		return newPicture;
+	}
+
+	private static Picture columnMajorNegate(Picture picture) {
+		Picture newPicture = new Picture(picture);
+		PixelCursor pixel = new PixelCursor(picture);
+		PixelCursor newPixel = new PixelCursor(newPicture);
+		for (int x = 0; x < picture.getWidth(); x++) {
+			for (int y = 0; y < picture.getHeight(); y++) {
+				pixel.moveTo(x, y);
+				newPixel.moveTo(x, y).setRGB(255 - pixel.getRed(),
+						255 - pixel.getGreen(), 255 - pixel.getBlue());
+			}
+		}
+		return newPicture;
+	}
+
+	private static Picture columnMajorEnergy(Picture picture) {
+		Picture newPicture = new Picture(picture);
+		PixelCursor newPixel = new PixelCursor(newPicture);
+		int width = picture.getWidth();
+		int height = picture.getHeight();
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int right = x + 1 < width ? x + 1 : x - 1;
+				int below = y + 1 < height ? y + 1 : y - 1;
+				int here = luminosity(picture.getBasicPixel(x, y));
+				int energy = Math.abs(luminosity(picture.getBasicPixel(right, y)) - here)
+						+ Math.abs(luminosity(picture.getBasicPixel(x, below)) - here);
+				newPixel.moveTo(x, y).setRGB(energy, energy, energy);
+			}
+		}
+		return newPicture;
+	}
+
+	private static Picture columnMajorRotateRight(Picture picture) {
+		int width = picture.getWidth();
+		int height = picture.getHeight();
+		Picture newPicture = new Picture(height, width);
+		PixelCursor pixel = new PixelCursor(picture);
+		PixelCursor newPixel = new PixelCursor(newPicture);
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				newPixel.moveTo(height - 1 - y, x).setRGB(pixel.moveTo(x, y).getRGB());
+			}
+		}
+		return newPicture;
+	}
+
+	private static int luminosity(int rgb) {
+		return (int) (0.21 * Pixel.getRed(rgb) + 0.72 * Pixel.getGreen(rgb)
+				+ 0.07 * Pixel.getBlue(rgb));
+	}
+
+} // End of TraversalBenchmark class
@@ -0,0 +1,167 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of every public filter of Picture, on pictures from 3x5
+ * 	pixels to 8K, so that changes to the filters can be measured instead of
+ * 	guessed.
+ *
+ * Run with: gradle jmh
+ * 	or, for some filters and pictures only:
+ * 	gradle jmh -Pjmh.include=benchmark.PictureBenchmark.blur -Pjmh.picture=Camel
+ *
+ * Each filter is measured both as a throughput (operations per second) and
+ * 	as sampled times, from which JMH reports the median and the 90th, 99th
+ * 	and 99.9th percentiles. The jmh task also runs the GC profiler, which
+ * 	reports the bytes allocated per operation and the allocation rate.
+ * 	The results are also saved in build/reports/jmh/results.json.
+ *
+ * JMH only generates benchmarks for classes in a package, and Picture is
+ * 	in the default package, which a class in a package cannot name. The
+ * 	filters are therefore applied by PictureWorkload, in the default
+ * 	package, which is created by reflection when the picture is loaded,
+ * 	once per fork, and called through PictureOperations. Every filter
+ * 	returns a new Picture, which JMH consumes, so none of them changes the
+ * 	picture it is given.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class PictureBenchmark
+{
+	/** The bundled pictures, smallest first, then the synthetic ones. */
+	@Param({"Micro", "Okinawa_tiny", "Okinawa", "Camel", "synthetic4K",
+			"synthetic8K"})
+	public String picture;
+
+	/** The filters, applied to the picture. */
+	private PictureOperations operations;
+
+	@Setup
+	public void loadPicture() throws ReflectiveOperationException {
+		operations = (PictureOperations) Class.forName("PictureWorkload")
+				.getConstructor(String.class).newInstance(picture);
+	}
+
+	@Benchmark
+	public Object grayscale() {
+		return operations.grayscale();
+	}
+
+	@Benchmark
+	public Object negate() {
+		return operations.negate();
+	}
+
+	@Benchmark
+	public Object lighten() {
+		return operations.lighten();
+	}
+
+	@Benchmark
+	public Object rotateRight() {
+		return operations.rotateRight();
+	}
+
+	@Benchmark
+	public Object flipHorizontal() {
+		return operations.flipHorizontal();
+	}
+
+	@Benchmark
+	public Object flipVertical() {
+		return operations.flipVertical();
+	}
+
+	@Benchmark
+	public Object flipForwardDiagonal() {
+		return operations.flipForwardDiagonal();
+	}
+
+	@Benchmark
+	public Object flipBackwardDiagonal() {
+		return operations.flipBackwardDiagonal();
+	}
+
+	@Benchmark
+	public Object luminosity() {
+		return operations.luminosity();
+	}
+
+	@Benchmark
+	public Object energy() {
+		return operations.energy();
+	}
+
+	@Benchmark
+	public Object computeSeam() {
+		return operations.computeSeam();
+	}
+
+	@Benchmark
+	public Object carve() {
+		return operations.carve();
+	}
+
+	@Benchmark
+	public Object carveMany() {
+		return operations.carveMany();
+	}
+
+	@Benchmark
+	public Object chromaKey() {
+		return operations.chromaKey();
+	}
+
+	@Benchmark
+	public Object showEdges() {
+		return operations.showEdges();
+	}
+
+	@Benchmark
+	public Object blur() {
+		return operations.blur();
+	}
+
+	@Benchmark
+	public Object paintBucket() {
+		return operations.paintBucket();
+	}
+
+	@Benchmark
+	public boolean equalsCopy() {
+		return operations.equalsCopy();
+	}
+
+	@Benchmark
+	public long digest() {
+		return operations.digest();
+	}
+
+	@Benchmark
+	public Object showDifferences() {
+		return operations.showDifferences();
+	}
+
+	@Benchmark
+	public Object diff() {
+		return operations.diff();
+	}
+
+} // End of PictureBenchmark class
@@ -0,0 +1,53 @@
+package benchmark;
+
+/**
+ * The operations PictureBenchmark measures, on one picture. They are
+ * 	implemented by PictureWorkload, in the default package with Picture,
+ * 	since a class in a package cannot name the classes of the default
+ * 	package; the results are returned as Objects for JMH to consume.
+ */
+public interface PictureOperations
+{
+	Object grayscale();
+
+	Object negate();
+
+	Object lighten();
+
+	Object rotateRight();
+
+	Object flipHorizontal();
+
+	Object flipVertical();
+
+	Object flipForwardDiagonal();
+
+	Object flipBackwardDiagonal();
+
+	Object luminosity();
+
+	Object energy();
+
+	Object computeSeam();
+
+	Object carve();
+
+	Object carveMany();
+
+	Object chromaKey();
+
+	Object showEdges();
+
+	Object blur();
+
+	Object paintBucket();
+
+	boolean equalsCopy();
+
+	long digest();
+
+	Object showDifferences();
+
+	Object diff();
+
+} // End of PictureOperations interface
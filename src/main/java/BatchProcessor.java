@@ -0,0 +1,552 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A command-line program that applies a chain of Picture filters to every
+ * 	picture matching a glob, without any window, and writes the results
+ * 	next to each other.
+ *
+ * 	java BatchProcessor [-threads N] [-decoders N] [-encoders N] [-queue N]
+ * 			<input glob> <output pattern> <op>...
+ *
+ * 	java BatchProcessor "photos/**.bmp" "out/*_small.png" grayscale blur:3 carveMany:50
+ *
+ * 	or, through Gradle: gradle batch -Pargs="photos/*.bmp out/*.png negate"
+ *
+ * The input glob is matched as by FileSystem.getPathMatcher, from the
+ * 	directory before its first wildcard. The * in the output pattern is
+ * 	replaced by the name of each input file without its extension, and the
+ * 	extension of the pattern picks the format (.bmp, .raster, or any format
+ * 	ImageIO writes). Nothing is processed if two input files would be
+ * 	written to the same output file, such as photos/a/x.bmp and
+ * 	photos/b/x.bmp, or x.bmp and x.png.
+ *
+ * The operations use the names of the Picture methods, with their
+ * 	arguments after a colon, separated by commas: grayscale, luminosity,
+ * 	negate, energy, lighten:N, darken:N, addRed:N, addGreen:N, addBlue:N,
+ * 	gamma:G, contrast:F, levels:BLACK,WHITE, blur:N, showEdges:N,
+ * 	rotateRight, flip:HORIZONTAL (or VERTICAL, FORWARD_DIAGONAL,
+ * 	BACKWARD_DIAGONAL), showSeam, carve, carveMany:N, carveHorizontal,
+ * 	widen:N and retarget:WIDTH,HEIGHT. They are chained in a
+ * 	FilterPipeline, so consecutive point operations run in one pass.
+ *
+ * The pictures go through a StagedExecutor with three stages: decode,
+ * 	compute (the filters) and encode, each with its own threads (one per
+ * 	core by default) and a bounded queue (two pictures per compute thread
+ * 	by default). Pictures are decoded and encoded while others are
+ * 	filtered, and a stage waits when the queue after it is full, so memory
+ * 	stays bounded however many files match. At the end, the number of
+ * 	pictures per second and the metrics of each stage are printed.
+ *
+ */
+public class BatchProcessor
+{
+
+	/////////////////////////// Static Variables //////////////////////////////
+
+	/** The capacity of each queue, per compute thread, by default. */
+	private static final int PICTURES_PER_THREAD = 2;
+
+	/** The options of the command line, each followed by a number. */
+	private static final List<String> OPTIONS = Arrays.asList(
+			"-threads", "-decoders", "-encoders", "-queue");
+
+	/** The characters that make a part of a path a wildcard. */
+	private static final String WILDCARDS = "*?[{";
+
+	////////////////////////////// Fields /////////////////////////////////////
+
+	private final FilterPipeline pipeline;
+	private final int decodeThreads, computeThreads, encodeThreads;
+	private final int queueCapacity;
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	/**
+	 * Creates a BatchProcessor applying a pipeline with several threads per
+	 * 	stage, and queues of two pictures per thread.
+	 *
+	 * @param pipeline The filters to apply to every picture.
+	 * @param threads The number of threads of each stage.
+	 */
+	public BatchProcessor(FilterPipeline pipeline, int threads) {
+		this(pipeline, threads, threads, threads, PICTURES_PER_THREAD * threads);
+	}
+
+	/**
+	 * Creates a BatchProcessor applying a pipeline, with the stages sized
+	 * 	as provided.
+	 *
+	 * @param pipeline The filters to apply to every picture.
+	 * @param decodeThreads The number of threads reading pictures.
+	 * @param computeThreads The number of threads filtering pictures.
+	 * @param encodeThreads The number of threads writing pictures.
+	 * @param queueCapacity The number of pictures that can wait for each
+	 * 	stage.
+	 */
+	public BatchProcessor(FilterPipeline pipeline, int decodeThreads,
+			int computeThreads, int encodeThreads, int queueCapacity) {
+		if (decodeThreads < 1 || computeThreads < 1 || encodeThreads < 1
+				|| queueCapacity < 1)
+			throw new IllegalArgumentException("The numbers of threads and the"
+					+ " queue capacity must be positive");
+		this.pipeline = pipeline;
+		this.decodeThreads = decodeThreads;
+		this.computeThreads = computeThreads;
+		this.encodeThreads = encodeThreads;
+		this.queueCapacity = queueCapacity;
+	}
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * Runs the batch processor from the command line; see the class comment.
+	 */
+	public static void main(String[] args) throws IOException {
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		int threads = Runtime.getRuntime().availableProcessors();
+		int decoders = -1, encoders = -1, queue = -1;
+		while (arguments.size() >= 2 && arguments.get(0).startsWith("-")) {
+			String option = arguments.get(0);
+			if (!OPTIONS.contains(option))
+				usage("Unknown option: " + option);
+			int value;
+			try {
+				value = Integer.parseInt(arguments.get(1));
+			} catch (NumberFormatException e) {
+				value = 0;
+			}
+			if (value < 1)
+				usage(option + " needs a positive number, not " + arguments.get(1));
+			switch (option) {
+			case "-threads": threads = value; break;
+			case "-decoders": decoders = value; break;
+			case "-encoders": encoders = value; break;
+			case "-queue": queue = value; break;
+			}
+			arguments = arguments.subList(2, arguments.size());
+		}
+		// the other stages are sized after the compute stage by default
+		if (decoders < 0)
+			decoders = threads;
+		if (encoders < 0)
+			encoders = threads;
+		if (queue < 0)
+			queue = PICTURES_PER_THREAD * threads;
+		if (arguments.size() < 3)
+			usage(null);
+
+		FilterPipeline pipeline;
+		try {
+			pipeline = parse(arguments.subList(2, arguments.size()));
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		List<Path> inputs = findFiles(arguments.get(0));
+		System.out.println("Applying " + pipeline + " to " + inputs.size()
+				+ " pictures with " + threads + " threads");
+		Report report;
+		try {
+			report = new BatchProcessor(pipeline, decoders, threads,
+					encoders, queue).process(inputs, arguments.get(1));
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		System.out.println(report);
+		if (report.getFailed() > 0)
+			System.exit(2);
+	}
+
+	/**
+	 * Prints a problem with the command line, if any, and the usage, and
+	 * 	exits with status 1.
+	 */
+	private static void usage(String problem) {
+		if (problem != null)
+			System.err.println(problem);
+		System.err.println("Usage: java BatchProcessor [-threads N]"
+				+ " [-decoders N] [-encoders N] [-queue N]"
+				+ " <input glob> <output pattern> <op>...");
+		System.err.println("For example: java BatchProcessor \"photos/*.bmp\""
+				+ " \"out/*.png\" grayscale blur:3 flip:HORIZONTAL");
+		System.exit(1);
+	}
+
+	/**
+	 * Builds the pipeline of a chain of operations, such as
+	 * 	["grayscale", "blur:3", "flip:HORIZONTAL"].
+	 *
+	 * @param operations The operations, as described in the class comment.
+	 * @return The pipeline applying the operations in order.
+	 * @throws IllegalArgumentException If an operation is unknown or has
+	 * 	the wrong arguments.
+	 */
+	public static FilterPipeline parse(List<String> operations) {
+		FilterPipeline pipeline = new FilterPipeline();
+		for (String operation : operations)
+			pipeline = parse(pipeline, operation);
+		return pipeline;
+	}
+
+	/**
+	 * @return The pipeline provided, followed by one operation.
+	 */
+	private static FilterPipeline parse(FilterPipeline pipeline,
+			String operation) {
+		int colon = operation.indexOf(':');
+		String name = colon < 0 ? operation : operation.substring(0, colon);
+		String[] arguments = colon < 0 ? new String[0]
+				: operation.substring(colon + 1).split(",");
+		try {
+			switch (name) {
+			case "grayscale":
+				checkArguments(operation, arguments, 0);
+				return pipeline.grayscale();
+			case "luminosity":
+				checkArguments(operation, arguments, 0);
+				return pipeline.luminosity();
+			case "negate":
+				checkArguments(operation, arguments, 0);
+				return pipeline.negate();
+			case "energy":
+				checkArguments(operation, arguments, 0);
+				return pipeline.energy();
+			case "lighten":
+				checkArguments(operation, arguments, 1);
+				return pipeline.lighten(Integer.parseInt(arguments[0]));
+			case "darken":
+				checkArguments(operation, arguments, 1);
+				return pipeline.darken(Integer.parseInt(arguments[0]));
+			case "addRed":
+				checkArguments(operation, arguments, 1);
+				return pipeline.addRed(Integer.parseInt(arguments[0]));
+			case "addGreen":
+				checkArguments(operation, arguments, 1);
+				return pipeline.addGreen(Integer.parseInt(arguments[0]));
+			case "addBlue":
+				checkArguments(operation, arguments, 1);
+				return pipeline.addBlue(Integer.parseInt(arguments[0]));
+			case "gamma":
+				checkArguments(operation, arguments, 1);
+				return pipeline.point(operation,
+						ChannelLut.gamma(Double.parseDouble(arguments[0])));
+			case "contrast":
+				checkArguments(operation, arguments, 1);
+				return pipeline.point(operation,
+						ChannelLut.contrast(Double.parseDouble(arguments[0])));
+			case "levels":
+				checkArguments(operation, arguments, 2);
+				return pipeline.point(operation, ChannelLut.levels(
+						Integer.parseInt(arguments[0]),
+						Integer.parseInt(arguments[1])));
+			case "blur":
+				checkArguments(operation, arguments, 1);
+				return pipeline.blur(Integer.parseInt(arguments[0]));
+			case "showEdges":
+				checkArguments(operation, arguments, 1);
+				return pipeline.showEdges(Integer.parseInt(arguments[0]));
+			case "rotateRight":
+				checkArguments(operation, arguments, 0);
+				return pipeline.filter(operation, Picture::rotateRight);
+			case "flip":
+				checkArguments(operation, arguments, 1);
+				int axis = axis(operation, arguments[0]);
+				return pipeline.filter(operation, picture -> picture.flip(axis));
+			case "showSeam":
+				checkArguments(operation, arguments, 0);
+				return pipeline.filter(operation, Picture::showSeam);
+			case "carve":
+				checkArguments(operation, arguments, 0);
+				return pipeline.filter(operation, Picture::carve);
+			case "carveMany":
+				checkArguments(operation, arguments, 1);
+				int seams = Integer.parseInt(arguments[0]);
+				return pipeline.filter(operation, picture -> picture.carveMany(seams));
+			case "carveHorizontal":
+				checkArguments(operation, arguments, 0);
+				return pipeline.filter(operation, Picture::carveHorizontal);
+			case "widen":
+				checkArguments(operation, arguments, 1);
+				int widenSeams = Integer.parseInt(arguments[0]);
+				return pipeline.filter(operation, picture -> picture.widen(widenSeams));
+			case "retarget":
+				checkArguments(operation, arguments, 2);
+				int width = Integer.parseInt(arguments[0]);
+				int height = Integer.parseInt(arguments[1]);
+				return pipeline.filter(operation,
+						picture -> picture.retarget(width, height));
+			default:
+				throw new IllegalArgumentException("Unknown operation: " + operation);
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Bad argument in " + operation
+					+ ": " + e.getMessage());
+		}
+	}
+
+	private static void checkArguments(String operation, String[] arguments,
+			int count) {
+		if (arguments.length != count)
+			throw new IllegalArgumentException(operation + " needs " + count
+					+ (count == 1 ? " argument" : " arguments"));
+	}
+
+	/**
+	 * @return The Picture constant of the axis named, such as HORIZONTAL.
+	 */
+	private static int axis(String operation, String name) {
+		switch (name.toUpperCase()) {
+		case "HORIZONTAL":
+			return Picture.HORIZONTAL;
+		case "VERTICAL":
+			return Picture.VERTICAL;
+		case "FORWARD_DIAGONAL":
+			return Picture.FORWARD_DIAGONAL;
+		case "BACKWARD_DIAGONAL":
+			return Picture.BACKWARD_DIAGONAL;
+		default:
+			throw new IllegalArgumentException("Unknown axis in " + operation
+					+ "; use HORIZONTAL, VERTICAL, FORWARD_DIAGONAL"
+					+ " or BACKWARD_DIAGONAL");
+		}
+	}
+
+	/**
+	 * Finds the files matching a glob, such as "photos/*.bmp" or
+	 * 	"photos/**.bmp" (which also looks in the subdirectories).
+	 *
+	 * @param glob The glob; the part before the first wildcard is the
+	 * 	directory searched.
+	 * @return The regular files matching the glob, sorted by name.
+	 * @throws IOException If the directory cannot be read.
+	 */
+	public static List<Path> findFiles(String glob) throws IOException {
+		String[] parts = glob.split("[/\\\\]");
+		int firstWildcard = 0;
+		while (firstWildcard < parts.length
+				&& parts[firstWildcard].chars().noneMatch(c -> WILDCARDS.indexOf(c) >= 0))
+			firstWildcard++;
+		if (firstWildcard == parts.length) {
+			Path file = Paths.get(glob);
+			return Files.isRegularFile(file) ? Arrays.asList(file)
+					: new ArrayList<>();
+		}
+
+		Path directory = Paths.get(glob.startsWith("/") ? "/" : "");
+		for (int i = 0; i < firstWildcard; i++)
+			if (!parts[i].isEmpty())
+				directory = directory.resolve(parts[i]);
+		String pattern = String.join("/",
+				Arrays.asList(parts).subList(firstWildcard, parts.length));
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+		int depth = pattern.contains("**") ? Integer.MAX_VALUE
+				: parts.length - firstWildcard;
+
+		Path base = directory.toString().isEmpty() ? Paths.get(".") : directory;
+		if (!Files.isDirectory(base))
+			return new ArrayList<>();
+		try (Stream<Path> files = Files.walk(base, depth)) {
+			return files.filter(Files::isRegularFile)
+					.filter(file -> matcher.matches(base.relativize(file)))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * @return The name of the output file of an input file: the output
+	 * 	pattern with its * replaced by the name of the input file without
+	 * 	its extension.
+	 */
+	public static String outputFileName(String outputPattern, Path input) {
+		String name = input.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		if (dot > 0)
+			name = name.substring(0, dot);
+		return outputPattern.replace("*", name);
+	}
+
+	/**
+	 * Reads, filters and writes every input file, several at once.
+	 *
+	 * @param inputs The files to process.
+	 * @param outputPattern The pattern of the output files; see
+	 * 	outputFileName.
+	 * @return How many pictures were processed, how fast, and the metrics
+	 * 	of each stage.
+	 * @throws IllegalArgumentException If two input files would be written
+	 * 	to the same output file; nothing is processed then.
+	 */
+	public Report process(List<Path> inputs, String outputPattern) {
+		checkOutputs(inputs, outputPattern);
+		AtomicInteger failed = new AtomicInteger();
+		long start = System.nanoTime();
+		// every picture being filtered or written may hold pooled rasters
+		RasterPool pool = new RasterPool(computeThreads + queueCapacity
+				+ encodeThreads, false);
+		StagedExecutor<Path> executor = StagedExecutor
+				.<Path, Item>first("decode", decodeThreads, queueCapacity,
+						input -> new Item(input, read(input), null))
+				.then("compute", computeThreads, queueCapacity,
+						item -> compute(item, pool))
+				.then("encode", encodeThreads, queueCapacity, item -> {
+					try {
+						return write(item.picture,
+								outputFileName(outputPattern, item.input));
+					} finally {
+						item.scope.close();
+					}
+				})
+				.start((input, stage, error) -> {
+					failed.incrementAndGet();
+					System.err.println("Cannot " + stage + " " + input + ": " + error);
+				});
+		try {
+			for (Path input : inputs)
+				executor.submit(input);
+			executor.finish();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return new Report(inputs.size() - failed.get(), failed.get(),
+				System.nanoTime() - start, executor.getMetrics());
+	}
+
+	/**
+	 * Throws an IllegalArgumentException naming two input files that would
+	 * 	be written to the same output file, if there are any, so that one
+	 * 	result does not silently replace the other.
+	 */
+	private static void checkOutputs(List<Path> inputs, String outputPattern) {
+		Map<Path, Path> inputOf = new HashMap<>();
+		for (Path input : inputs) {
+			Path output = Paths.get(outputFileName(outputPattern, input))
+					.toAbsolutePath().normalize();
+			Path other = inputOf.put(output, input);
+			if (other != null)
+				throw new IllegalArgumentException(other + " and " + input
+						+ " would both be written to " + output
+						+ "; use an input glob that matches only one of them");
+		}
+	}
+
+	/**
+	 * Filters a picture in a new Scope of the pool provided, so that the
+	 * 	rasters of the pictures made along the way are recycled. The Scope
+	 * 	is closed once the result is written, or if filtering fails.
+	 *
+	 * @return The result, in the Scope.
+	 */
+	private Item compute(Item item, RasterPool pool) {
+		RasterPool.Scope scope = pool.open();
+		try {
+			Picture result = pipeline.apply(scope.adopt(item.picture));
+			return new Item(item.input, result, scope);
+		} catch (Throwable e) {
+			scope.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return The picture in the file provided.
+	 */
+	private static Picture read(Path input) throws IOException {
+		Picture picture = new Picture(1, 1);
+		picture.loadOrFail(input.toString());
+		return picture;
+	}
+
+	/**
+	 * Writes a picture to the file named, creating its directory if needed.
+	 *
+	 * @return The file written.
+	 */
+	private static File write(Picture picture, String output) throws IOException {
+		File outputFile = new File(output).getAbsoluteFile();
+		outputFile.getParentFile().mkdirs();
+		picture.writeOrFail(outputFile.getPath());
+		return outputFile;
+	}
+
+	/**
+	 * A picture on its way through the stages, with the file it came from
+	 * 	and, once filtered, the Scope its rasters come from.
+	 */
+	private static final class Item {
+		final Path input;
+		final Picture picture;
+		final RasterPool.Scope scope;
+
+		Item(Path input, Picture picture, RasterPool.Scope scope) {
+			this.input = input;
+			this.picture = picture;
+			this.scope = scope;
+		}
+	}
+
+	/////////////////////////////// Report ////////////////////////////////////
+
+	/**
+	 * The outcome of a batch: how many pictures were processed, and how fast.
+	 */
+	public static final class Report {
+		private final int processed, failed;
+		private final long nanoseconds;
+		private final List<StagedExecutor.StageMetrics> stages;
+
+		Report(int processed, int failed, long nanoseconds,
+				List<StagedExecutor.StageMetrics> stages) {
+			this.processed = processed;
+			this.failed = failed;
+			this.nanoseconds = nanoseconds;
+			this.stages = stages;
+		}
+
+		/** @return The number of pictures written. */
+		public int getProcessed() { return processed; }
+
+		/** @return The number of pictures that could not be processed. */
+		public int getFailed() { return failed; }
+
+		/** @return The time the whole batch took, in seconds. */
+		public double getSeconds() { return nanoseconds / 1e9; }
+
+		/** @return The number of pictures written per second. */
+		public double getPicturesPerSecond() {
+			return nanoseconds == 0 ? 0 : processed / getSeconds();
+		}
+
+		/** @return The metrics of the decode, compute and encode stages. */
+		public List<StagedExecutor.StageMetrics> getStages() { return stages; }
+
+		public String toString() {
+			StringBuilder builder = new StringBuilder(String.format(
+					"%d pictures in %.2f s (%.1f pictures/s), %d failed",
+					processed, getSeconds(), getPicturesPerSecond(), failed));
+			builder.append('\n').append(StagedExecutor.StageMetrics.HEADER);
+			for (StagedExecutor.StageMetrics stage : stages)
+				builder.append('\n').append(stage);
+			return builder.toString();
+		}
+	}
+
+} // End of BatchProcessor class
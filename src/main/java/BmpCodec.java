@@ -0,0 +1,363 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A class that reads and writes uncompressed BMP files directly to and
+ * 	from the packed int raster of a SimplePicture, without going through
+ * 	ImageIO.
+ *
+ * Files are read a few rows at a time into one reusable buffer, and each
+ * 	row is unpacked straight into the raster, so a file is never held in
+ * 	memory twice. Rows are stored bottom-up unless the height in the
+ * 	header is negative, and each row is padded to a multiple of 4 bytes.
+ * 	Reader and Writer give access to any rows of a file, for pictures too
+ * 	large to be held in memory (see StripProcessor).
+ *
+ * Only the common kinds of BMP are handled here: 24 bits per pixel, and 32
+ * 	bits per pixel whose fourth byte is ignored, both without compression.
+ * 	read returns null for any other kind of file (palettes, compression,
+ * 	or files that are not BMPs at all), so that the caller can fall back on
+ * 	ImageIO. Files are always written with 24 bits per pixel, bottom-up.
+ *
+ */
+public class BmpCodec
+{
+
+	/////////////////////////// Static Variables //////////////////////////////
+
+	/** The size of the file header plus the BITMAPINFOHEADER. */
+	private static final int HEADER_SIZE = 54;
+
+	/** The number of bytes read or written at once, roughly. */
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * @return Whether the file name provided has the extension of BMP files.
+	 */
+	public static boolean isBmp(String fileName) {
+		return fileName.toLowerCase().endsWith(".bmp");
+	}
+
+	/**
+	 * Reads a BMP file.
+	 *
+	 * @param fileName The name of the file.
+	 * @return A TYPE_INT_RGB BufferedImage holding the pixels of the file,
+	 * 	or null if the file is not a kind of BMP this class reads.
+	 * @throws IOException If the file cannot be read, or is truncated.
+	 */
+	public static BufferedImage read(String fileName) throws IOException {
+		try (Reader reader = Reader.open(fileName)) {
+			if (reader == null)
+				return null;
+			int width = reader.getWidth();
+			int height = reader.getHeight();
+			BufferedImage image = new BufferedImage(width, height,
+					BufferedImage.TYPE_INT_RGB);
+			int[] raster = ((DataBufferInt) image.getRaster().getDataBuffer())
+					.getData();
+
+			int rowsPerRead = rowsPerBuffer(reader.rowBytes, height);
+			for (int y = 0; y < height; y += rowsPerRead)
+				reader.readRows(y, Math.min(rowsPerRead, height - y),
+						raster, y * width);
+			return image;
+		}
+	}
+
+	/**
+	 * Writes a picture to a 24-bit BMP file, replacing it if it exists.
+	 *
+	 * @param picture The picture to write.
+	 * @param fileName The name of the file.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static void write(SimplePicture picture, String fileName)
+			throws IOException {
+		int width = picture.getWidth();
+		int height = picture.getHeight();
+		int[] raster = picture.getRasterData();
+		try (Writer writer = Writer.create(fileName, width, height)) {
+			int rowsPerWrite = rowsPerBuffer(writer.rowBytes, height);
+			for (int y = 0; y < height; y += rowsPerWrite)
+				writer.writeRows(y, Math.min(rowsPerWrite, height - y),
+						raster, y * width);
+		}
+	}
+
+	/**
+	 * @return The number of rows of rowBytes bytes that fit in about
+	 * 	BUFFER_BYTES, between 1 and height.
+	 */
+	private static int rowsPerBuffer(int rowBytes, int height) {
+		return Math.max(1, Math.min(height, BUFFER_BYTES / rowBytes));
+	}
+
+	/////////////////////////// Reader and Writer /////////////////////////////
+
+	/**
+	 * Reads the rows of a BMP file in any order, without reading the rest of
+	 * 	the file, for pictures too large to be loaded at once.
+	 */
+	public static final class Reader implements StripProcessor.RowSource {
+		private final FileChannel channel;
+		private final int width, height, bytesPerPixel, rowBytes;
+		private final long pixelOffset;
+		private final boolean topDown;
+		private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+		private Reader(FileChannel channel, int width, int height,
+				int bytesPerPixel, long pixelOffset, boolean topDown) {
+			this.channel = channel;
+			this.width = width;
+			this.height = height;
+			this.bytesPerPixel = bytesPerPixel;
+			this.rowBytes = (width * bytesPerPixel + 3) & ~3;
+			this.pixelOffset = pixelOffset;
+			this.topDown = topDown;
+		}
+
+		/**
+		 * Opens a BMP file and reads its header.
+		 *
+		 * @param fileName The name of the file.
+		 * @return The Reader, or null if the file is not a kind of BMP this
+		 * 	class reads.
+		 * @throws IOException If the file cannot be read, or is truncated.
+		 */
+		public static Reader open(String fileName) throws IOException {
+			FileChannel channel = FileChannel.open(new File(fileName).toPath(),
+					StandardOpenOption.READ);
+			Reader reader = null;
+			try {
+				reader = open(channel, fileName);
+				return reader;
+			} finally {
+				if (reader == null)
+					channel.close();
+			}
+		}
+
+		private static Reader open(FileChannel channel, String fileName)
+				throws IOException {
+			if (channel.size() < HEADER_SIZE)
+				return null;
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, header, 0);
+
+			int bitsPerPixel = header.getShort(28);
+			if (header.get(0) != 'B' || header.get(1) != 'M'
+					|| header.getInt(14) < 40 || header.getInt(30) != 0
+					|| (bitsPerPixel != 24 && bitsPerPixel != 32))
+				return null;
+
+			long pixelOffset = header.getInt(10) & 0xffffffffL;
+			int width = header.getInt(18);
+			int height = header.getInt(22);
+			boolean topDown = height < 0;
+			height = Math.abs(height);
+			if (width <= 0 || height <= 0)
+				return null;
+
+			Reader reader = new Reader(channel, width, height,
+					bitsPerPixel / 8, pixelOffset, topDown);
+			if (channel.size() < pixelOffset + (long) reader.rowBytes * height)
+				throw new IOException(fileName + " is a truncated BMP file.");
+			return reader;
+		}
+
+		/** @return The width of the picture in the file. */
+		public int getWidth() { return width; }
+
+		/** @return The height of the picture in the file. */
+		public int getHeight() { return height; }
+
+		/**
+		 * Reads consecutive rows of the picture, which are also consecutive
+		 * 	in the file, with a single read.
+		 *
+		 * @param y The first row to read.
+		 * @param rows The number of rows to read.
+		 * @param pixels Where to store the rows, as 0x00RRGGBB ints.
+		 * @param offset The index in pixels of the first pixel of row y.
+		 */
+		public void readRows(int y, int rows, int[] pixels, int offset)
+				throws IOException {
+			if (y < 0 || rows < 0 || y + rows > height)
+				throw new ArrayIndexOutOfBoundsException("Cannot read rows "
+						+ y + " to " + (y + rows) + " of " + height);
+			int firstFileRow = topDown ? y : height - y - rows;
+			int size = rows * rowBytes;
+			if (buffer.capacity() < size)
+				buffer = ByteBuffer.allocate(size);
+			buffer.clear();
+			buffer.limit(size);
+			readFully(channel, buffer, pixelOffset + (long) firstFileRow * rowBytes);
+
+			byte[] bytes = buffer.array();
+			for (int r = 0; r < rows; r++) {
+				int fileRow = topDown ? r : rows - 1 - r;
+				unpackRow(bytes, fileRow * rowBytes, bytesPerPixel, pixels,
+						offset + r * width, width);
+			}
+		}
+
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes the rows of a 24-bit BMP file in any order, for pictures too
+	 * 	large to be held at once.
+	 */
+	public static final class Writer implements StripProcessor.RowSink {
+		private final FileChannel channel;
+		private final int width, height, rowBytes;
+		private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+		private Writer(FileChannel channel, int width, int height) {
+			this.channel = channel;
+			this.width = width;
+			this.height = height;
+			this.rowBytes = (width * 3 + 3) & ~3;
+		}
+
+		/**
+		 * Creates (or replaces) a BMP file and writes its header. The rows
+		 * 	are written by writeRows.
+		 *
+		 * @param fileName The name of the file.
+		 * @param width The width of the picture.
+		 * @param height The height of the picture.
+		 * @return The Writer; close it when every row has been written.
+		 * @throws IOException If the file cannot be written.
+		 */
+		public static Writer create(String fileName, int width, int height)
+				throws IOException {
+			FileChannel channel = FileChannel.open(new File(fileName).toPath(),
+					StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			Writer writer = new Writer(channel, width, height);
+			try {
+				writer.writeHeader();
+				return writer;
+			} catch (IOException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		private void writeHeader() throws IOException {
+			long imageSize = (long) rowBytes * height;
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			header.put((byte) 'B').put((byte) 'M')
+					.putInt((int) (HEADER_SIZE + imageSize)).putInt(0)
+					.putInt(HEADER_SIZE)
+					.putInt(40).putInt(width).putInt(height)
+					.putShort((short) 1).putShort((short) 24).putInt(0)
+					.putInt((int) imageSize)
+					.putInt(2835).putInt(2835) // 72 dots per inch
+					.putInt(0).putInt(0);
+			header.flip();
+			writeFully(channel, header, 0);
+		}
+
+		/**
+		 * Writes consecutive rows of the picture, which are also consecutive
+		 * 	in the file, with a single write.
+		 *
+		 * @param y The first row to write.
+		 * @param rows The number of rows to write.
+		 * @param pixels The rows, as 0x00RRGGBB ints.
+		 * @param offset The index in pixels of the first pixel of row y.
+		 */
+		public void writeRows(int y, int rows, int[] pixels, int offset)
+				throws IOException {
+			if (y < 0 || rows < 0 || y + rows > height)
+				throw new ArrayIndexOutOfBoundsException("Cannot write rows "
+						+ y + " to " + (y + rows) + " of " + height);
+			int size = rows * rowBytes;
+			if (buffer.capacity() < size)
+				buffer = ByteBuffer.allocate(size);
+			byte[] bytes = buffer.array();
+			for (int r = 0; r < rows; r++)
+				packRow(pixels, offset + (rows - 1 - r) * width, width,
+						bytes, r * rowBytes);
+			buffer.clear();
+			buffer.limit(size);
+			writeFully(channel, buffer,
+					HEADER_SIZE + (long) (height - y - rows) * rowBytes);
+		}
+
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Unpacks one row of blue, green, red (and unused) bytes into packed
+	 * 	0x00RRGGBB ints.
+	 */
+	private static void unpackRow(byte[] bytes, int offset, int bytesPerPixel,
+			int[] raster, int index, int width) {
+		int end = index + width;
+		for (; index < end; index++, offset += bytesPerPixel) {
+			raster[index] = ((bytes[offset + 2] & 0xff) << 16)
+					| ((bytes[offset + 1] & 0xff) << 8) | (bytes[offset] & 0xff);
+		}
+	}
+
+	/**
+	 * Packs one row of 0x00RRGGBB ints into blue, green, red bytes, padding
+	 * 	the row with zeros up to a multiple of 4 bytes.
+	 */
+	private static void packRow(int[] raster, int index, int width,
+			byte[] bytes, int offset) {
+		int end = index + width;
+		for (; index < end; index++) {
+			int rgb = raster[index];
+			bytes[offset++] = (byte) rgb;
+			bytes[offset++] = (byte) (rgb >> 8);
+			bytes[offset++] = (byte) (rgb >> 16);
+		}
+		while ((offset & 3) != 0)
+			bytes[offset++] = 0;
+	}
+
+	/**
+	 * Reads from the channel, starting at the position provided, until the
+	 * 	buffer is full.
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer,
+			long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0)
+				throw new EOFException("Unexpected end of BMP file");
+			position += read;
+		}
+	}
+
+	/**
+	 * Writes the whole buffer to the channel, starting at the position
+	 * 	provided.
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer,
+			long position) throws IOException {
+		while (buffer.hasRemaining())
+			position += channel.write(buffer, position);
+	}
+
+} // End of BmpCodec class
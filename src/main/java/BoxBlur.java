@@ -0,0 +1,193 @@
+/**
+ * A class that blurs pictures with a box filter: every pixel is set to the
+ * 	average of the pixels in a square of side (2 * radius) + 1 centered on
+ * 	it. Pixels of the square that fall outside of the picture are left out,
+ * 	and the average is taken only of the pixels available, rounding down.
+ *
+ * The square is separable into a row of 2 * radius + 1 pixels followed by
+ * 	a column of 2 * radius + 1 row sums, and both are computed with running
+ * 	sums: moving the window by one pixel adds the pixel entering it and
+ * 	subtracts the one leaving it. The cost per pixel is therefore the same
+ * 	whatever the radius.
+ *
+ */
+public class BoxBlur
+{
+
+	/**
+	 * Blurs a picture into another one of the same size.
+	 *
+	 * @param source The picture to blur; it is not modified.
+	 * @param target The picture to write the result into.
+	 * @param radius The radius of the square; 0 copies the picture.
+	 * @param traversal The PixelTraversal deciding how the work is split.
+	 */
+	public static void blur(SimplePicture source, SimplePicture target,
+			int radius, PixelTraversal traversal) {
+		if (radius < 0)
+			throw new IllegalArgumentException(
+					"The blur radius cannot be negative: " + radius);
+		if (source.getWidth() != target.getWidth()
+				|| source.getHeight() != target.getHeight())
+			throw new IllegalArgumentException(
+					"The source and target pictures must be the same size");
+
+		// A window as large as the picture already covers all of it, and
+		// clamping keeps the column and row arithmetic from overflowing.
+		int clamped = Math.min(radius,
+				Math.max(source.getWidth(), source.getHeight()));
+		traversal.forEachRegion(source.getWidth(), source.getHeight(),
+				(xStart, yStart, xEnd, yEnd) -> blurRegion(source, target,
+						clamped, xStart, yStart, xEnd, yEnd));
+	}
+
+	/**
+	 * Blurs one region of a picture. Only the pixels of the region are
+	 * 	written, so regions can be blurred independently of each other.
+	 */
+	private static void blurRegion(SimplePicture source, SimplePicture target,
+			int radius, int xStart, int yStart, int xEnd, int yEnd) {
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int regionWidth = xEnd - xStart;
+
+		// Source columns needed by the horizontal sums of this region.
+		int readStart = Math.max(0, xStart - radius);
+		int readEnd = Math.min(width, xEnd + radius);
+		int[] sourceRow = new int[readEnd - readStart];
+
+		// The horizontal sums of the rows currently inside the window,
+		// kept in a ring indexed by row number.
+		int ringSize = (int) Math.min(2L * radius + 1, height);
+		int[] ringRed = new int[ringSize * regionWidth];
+		int[] ringGreen = new int[ringSize * regionWidth];
+		int[] ringBlue = new int[ringSize * regionWidth];
+
+		// The sums of the window for each column of the region.
+		long[] sumRed = new long[regionWidth];
+		long[] sumGreen = new long[regionWidth];
+		long[] sumBlue = new long[regionWidth];
+
+		int[] columnCount = new int[regionWidth];
+		for (int i = 0; i < regionWidth; i++)
+			columnCount[i] = windowSize(xStart + i, radius, width);
+		int[] targetRow = new int[regionWidth];
+
+		// Fill the window for the first row of the region.
+		int first = Math.max(0, yStart - radius);
+		int last = Math.min(height - 1, yStart + radius);
+		for (int y = first; y <= last; y++) {
+			int slot = (y % ringSize) * regionWidth;
+			source.getRegion(readStart, y, sourceRow.length, 1, sourceRow, 0);
+			sumRow(sourceRow, readStart, width, radius, xStart, xEnd,
+					ringRed, ringGreen, ringBlue, slot);
+			for (int i = 0; i < regionWidth; i++) {
+				sumRed[i] += ringRed[slot + i];
+				sumGreen[i] += ringGreen[slot + i];
+				sumBlue[i] += ringBlue[slot + i];
+			}
+		}
+
+		for (int y = yStart; y < yEnd; y++) {
+			int rowCount = windowSize(y, radius, height);
+			for (int i = 0; i < regionWidth; i++) {
+				long count = (long) columnCount[i] * rowCount;
+				int red = (int) (sumRed[i] / count);
+				int green = (int) (sumGreen[i] / count);
+				int blue = (int) (sumBlue[i] / count);
+				targetRow[i] = (red << 16) | (green << 8) | blue;
+			}
+			target.setRegion(xStart, y, regionWidth, 1, targetRow, 0);
+
+			// Slide the window down by one row: the leaving row is
+			// subtracted before the entering row takes its slot.
+			int leaving = y - radius;
+			if (leaving >= 0) {
+				int slot = (leaving % ringSize) * regionWidth;
+				for (int i = 0; i < regionWidth; i++) {
+					sumRed[i] -= ringRed[slot + i];
+					sumGreen[i] -= ringGreen[slot + i];
+					sumBlue[i] -= ringBlue[slot + i];
+				}
+			}
+			int entering = y + radius + 1;
+			if (entering < height && y + 1 < yEnd) {
+				int slot = (entering % ringSize) * regionWidth;
+				source.getRegion(readStart, entering, sourceRow.length, 1,
+						sourceRow, 0);
+				sumRow(sourceRow, readStart, width, radius, xStart, xEnd,
+						ringRed, ringGreen, ringBlue, slot);
+				for (int i = 0; i < regionWidth; i++) {
+					sumRed[i] += ringRed[slot + i];
+					sumGreen[i] += ringGreen[slot + i];
+					sumBlue[i] += ringBlue[slot + i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes, for each column x from xStart to xEnd, the sum of each
+	 * 	color component over the pixels from x - radius to x + radius that
+	 * 	are inside the row.
+	 *
+	 * @param row The pixels of the row, starting at column rowStart.
+	 * @param rowStart The column of row[0].
+	 * @param width The width of the whole picture.
+	 * @param radius The radius of the window.
+	 * @param xStart The first column to compute.
+	 * @param xEnd One past the last column to compute.
+	 * @param red Where to store the red sums.
+	 * @param green Where to store the green sums.
+	 * @param blue Where to store the blue sums.
+	 * @param offset The index at which to store the sum of column xStart.
+	 */
+	private static void sumRow(int[] row, int rowStart, int width, int radius,
+			int xStart, int xEnd, int[] red, int[] green, int[] blue,
+			int offset) {
+		int sumRed = 0, sumGreen = 0, sumBlue = 0;
+		int first = Math.max(0, xStart - radius);
+		int last = Math.min(width - 1, xStart + radius);
+		for (int x = first; x <= last; x++) {
+			int rgb = row[x - rowStart];
+			sumRed += (rgb >> 16) & 0xff;
+			sumGreen += (rgb >> 8) & 0xff;
+			sumBlue += rgb & 0xff;
+		}
+
+		for (int x = xStart; x < xEnd; x++) {
+			int i = offset + x - xStart;
+			red[i] = sumRed;
+			green[i] = sumGreen;
+			blue[i] = sumBlue;
+
+			if (x + 1 >= xEnd)
+				break;
+			int entering = x + radius + 1;
+			if (entering < width) {
+				int rgb = row[entering - rowStart];
+				sumRed += (rgb >> 16) & 0xff;
+				sumGreen += (rgb >> 8) & 0xff;
+				sumBlue += rgb & 0xff;
+			}
+			int leaving = x - radius;
+			if (leaving >= 0) {
+				int rgb = row[leaving - rowStart];
+				sumRed -= (rgb >> 16) & 0xff;
+				sumGreen -= (rgb >> 8) & 0xff;
+				sumBlue -= rgb & 0xff;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of positions from position - radius to
+	 * 	position + radius that are between 0 and size - 1.
+	 */
+	private static int windowSize(int position, int radius, int size) {
+		long first = Math.max(0L, (long) position - radius);
+		long last = Math.min(size - 1L, (long) position + radius);
+		return (int) (last - first + 1);
+	}
+
+} // End of BoxBlur class
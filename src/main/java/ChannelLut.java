@@ -0,0 +1,213 @@
+/**
+ * A class that changes the red, green and blue components of pixels each
+ * 	on its own, through a lookup table of 256 entries per channel.
+ *
+ * Any function of one component can be turned into a table once, after
+ * 	which applying it costs one read, three table lookups and one write per
+ * 	pixel, whatever the function: negate, lighten, darken and
+ * 	add[Red,Green,Blue] of Picture all run through a ChannelLut, and so do
+ * 	curves such as gamma, levels and contrast. Two ChannelLuts applied one
+ * 	after the other are the same as the single ChannelLut made by then.
+ *
+ * Every entry of a table is between 0 and 255: functions are clamped when
+ * 	their table is built, so nothing needs to be clamped per pixel.
+ *
+ */
+public class ChannelLut implements FilterPipeline.PointOp
+{
+
+	/////////////////////////// Interfaces ////////////////////////////////////
+
+	/**
+	 * A function of the value of one component.
+	 */
+	public interface Curve {
+		/**
+		 * @param value The value of the component, from 0 to 255.
+		 * @return The new value of the component; values outside of 0 to
+		 * 	255 are clamped.
+		 */
+		int apply(int value);
+	}
+
+	/////////////////////////// Static Variables //////////////////////////////
+
+	/** The ChannelLut leaving every pixel unchanged. */
+	public static final ChannelLut IDENTITY = of(value -> value);
+
+	/** The ChannelLut giving the photonegative of a pixel. */
+	public static final ChannelLut NEGATE = of(value -> 255 - value);
+
+	////////////////////////////// Fields /////////////////////////////////////
+
+	private final int[] red, green, blue;
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	private ChannelLut(int[] red, int[] green, int[] blue) {
+		this.red = red;
+		this.green = green;
+		this.blue = blue;
+	}
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * @return The ChannelLut applying the same curve to every component.
+	 */
+	public static ChannelLut of(Curve curve) {
+		int[] table = table(curve);
+		return new ChannelLut(table, table, table);
+	}
+
+	/**
+	 * @return The ChannelLut applying a curve of its own to each component.
+	 */
+	public static ChannelLut of(Curve red, Curve green, Curve blue) {
+		return new ChannelLut(table(red), table(green), table(blue));
+	}
+
+	/**
+	 * @return The ChannelLut adding the amounts provided to the red, green
+	 * 	and blue components.
+	 */
+	public static ChannelLut add(int red, int green, int blue) {
+		return of(value -> value + red, value -> value + green,
+				value -> value + blue);
+	}
+
+	/**
+	 * Applies a gamma curve: each component v becomes
+	 * 	255 * (v / 255) ^ (1 / gamma), rounded to the nearest integer.
+	 * 	Gammas above 1 lighten the midtones, gammas below 1 darken them.
+	 *
+	 * @param gamma The gamma; must be positive.
+	 * @return The gamma ChannelLut.
+	 */
+	public static ChannelLut gamma(double gamma) {
+		if (!(gamma > 0))
+			throw new IllegalArgumentException("The gamma must be positive: "
+					+ gamma);
+		return of(value -> round(255 * Math.pow(value / 255.0, 1 / gamma)));
+	}
+
+	/**
+	 * Stretches the range of components from black to white over the whole
+	 * 	range from 0 to 255. Components of black or less become 0, and
+	 * 	components of white or more become 255.
+	 *
+	 * @param black The component that becomes 0.
+	 * @param white The component that becomes 255; more than black.
+	 * @return The levels ChannelLut.
+	 */
+	public static ChannelLut levels(int black, int white) {
+		if (white <= black)
+			throw new IllegalArgumentException("The white level (" + white
+					+ ") must be above the black level (" + black + ")");
+		return of(value -> round(
+				(value - (double) black) * 255 / ((double) white - black)));
+	}
+
+	/**
+	 * Scales the distance of each component from the middle gray (128) by
+	 * 	the factor provided, rounding to the nearest integer.
+	 *
+	 * @param factor More than 1 to increase the contrast, between 0 and 1
+	 * 	to reduce it; must not be negative.
+	 * @return The contrast ChannelLut.
+	 */
+	public static ChannelLut contrast(double factor) {
+		if (!(factor >= 0))
+			throw new IllegalArgumentException(
+					"The contrast factor cannot be negative: " + factor);
+		return of(value -> round(128 + (value - 128) * factor));
+	}
+
+	/**
+	 * @return The component nearest to the value provided, clamped between 0
+	 * 	and 255 before it is rounded, so that huge values cannot overflow.
+	 */
+	private static int round(double value) {
+		return (int) Math.round(Math.max(0, Math.min(255, value)));
+	}
+
+	/**
+	 * @return The table of a curve, with every value clamped between 0 and
+	 * 	255.
+	 */
+	private static int[] table(Curve curve) {
+		int[] table = new int[256];
+		for (int value = 0; value < 256; value++)
+			table[value] = Math.max(0, Math.min(255, curve.apply(value)));
+		return table;
+	}
+
+	/**
+	 * @param next The ChannelLut to apply after this one.
+	 * @return The single ChannelLut applying this one, then next.
+	 */
+	public ChannelLut then(ChannelLut next) {
+		return new ChannelLut(compose(red, next.red),
+				compose(green, next.green), compose(blue, next.blue));
+	}
+
+	/**
+	 * @return The table applying first, then second.
+	 */
+	private static int[] compose(int[] first, int[] second) {
+		int[] table = new int[256];
+		for (int value = 0; value < 256; value++)
+			table[value] = second[first[value]];
+		return table;
+	}
+
+	/**
+	 * @param rgb A color, as 0xRRGGBB; higher bits are ignored.
+	 * @return The color with each component changed, as 0xRRGGBB.
+	 */
+	public int apply(int rgb) {
+		return (red[(rgb >> 16) & 0xff] << 16)
+				| (green[(rgb >> 8) & 0xff] << 8) | blue[rgb & 0xff];
+	}
+
+	/**
+	 * Applies this ChannelLut to the raster values of from between start
+	 * 	(inclusive) and end (exclusive), writing them to the same indices of
+	 * 	to, which may be from.
+	 */
+	void apply(int[] from, int[] to, int start, int end) {
+		for (int index = start; index < end; index++) {
+			int rgb = from[index];
+			to[index] = (red[(rgb >> 16) & 0xff] << 16)
+					| (green[(rgb >> 8) & 0xff] << 8) | blue[rgb & 0xff];
+		}
+	}
+
+	/**
+	 * Applies this ChannelLut to every pixel of a picture.
+	 *
+	 * @param source The picture to read; it is not modified unless it is
+	 * 	the target.
+	 * @param target The picture to write the result into; the same size as
+	 * 	the source, or the source itself.
+	 * @param traversal The PixelTraversal deciding how the work is split.
+	 */
+	public void apply(SimplePicture source, SimplePicture target,
+			PixelTraversal traversal) {
+		int width = source.getWidth();
+		if (width != target.getWidth()
+				|| source.getHeight() != target.getHeight())
+			throw new IllegalArgumentException(
+					"The source and target pictures must be the same size");
+
+		int[] from = source.getRasterData();
+		int[] to = target.getRasterData();
+		traversal.forEachRegion(width, source.getHeight(),
+				(xStart, yStart, xEnd, yEnd) -> {
+			for (int y = yStart; y < yEnd; y++)
+				apply(from, to, y * width + xStart, y * width + xEnd);
+		});
+		target.rasterChanged();
+	}
+
+} // End of ChannelLut class
@@ -0,0 +1,130 @@
+/**
+ * The eight ways of rotating and flipping a picture without resampling it:
+ * 	the symmetries of a rectangle, plus the rotations and diagonal flips
+ * 	that turn it into a rectangle of the transposed size.
+ *
+ * Every transform moves pixel (x, y) of a width by height source to
+ * 	(xFromX * x + xFromY * y, yFromX * x + yFromY * y) of the target, once
+ * 	shifted back inside the target, where each coefficient is -1, 0 or 1.
+ * 	In the target raster, stepping one pixel right in the source is a
+ * 	fixed step, and so is stepping one pixel down, so each pixel is copied
+ * 	in a single pass without any coordinate arithmetic.
+ *
+ * The transforms that swap the axes write the target column by column
+ * 	while reading the source row by row. Copying the source one tile at a
+ * 	time keeps the rows of the target being written in the cache, which a
+ * 	row-by-row copy of a large picture would not.
+ *
+ */
+public enum DihedralTransform
+{
+
+	/** Leaves every pixel where it is. */
+	IDENTITY(1, 0, 0, 1),
+	/** Rotates the picture to the right by 90 degrees. */
+	ROTATE_90(0, -1, 1, 0),
+	/** Rotates the picture by 180 degrees. */
+	ROTATE_180(-1, 0, 0, -1),
+	/** Rotates the picture to the right by 270 degrees (to the left by 90). */
+	ROTATE_270(0, 1, -1, 0),
+	/** Flips the picture about a horizontal axis: the top row goes to the
+	 * 	bottom. */
+	FLIP_HORIZONTAL(1, 0, 0, -1),
+	/** Flips the picture about a vertical axis: the left column goes to the
+	 * 	right. */
+	FLIP_VERTICAL(-1, 0, 0, 1),
+	/** Flips the picture about the diagonal from its north-west corner to
+	 * 	its south-east corner. */
+	TRANSPOSE(0, 1, 1, 0),
+	/** Flips the picture about the diagonal from its south-west corner to
+	 * 	its north-east corner. */
+	ANTI_TRANSPOSE(0, -1, -1, 0);
+
+	////////////////////////////// Fields /////////////////////////////////////
+
+	private final int xFromX, xFromY, yFromX, yFromY;
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	private DihedralTransform(int xFromX, int xFromY, int yFromX, int yFromY) {
+		this.xFromX = xFromX;
+		this.xFromY = xFromY;
+		this.yFromX = yFromX;
+		this.yFromY = yFromY;
+	}
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * @return Whether this transform turns a width by height picture into a
+	 * 	height by width one.
+	 */
+	public boolean swapsAxes() {
+		return xFromX == 0;
+	}
+
+	/**
+	 * @return The width of the picture this transform makes out of a
+	 * 	width by height picture.
+	 */
+	public int targetWidth(int width, int height) {
+		return swapsAxes() ? height : width;
+	}
+
+	/**
+	 * @return The height of the picture this transform makes out of a
+	 * 	width by height picture.
+	 */
+	public int targetHeight(int width, int height) {
+		return swapsAxes() ? width : height;
+	}
+
+	/**
+	 * Transforms a picture into another one.
+	 *
+	 * @param source The picture to transform; it is not modified.
+	 * @param target The picture to write the result into; its size must be
+	 * 	targetWidth by targetHeight of the source, and it must not be the
+	 * 	source.
+	 * @param traversal The PixelTraversal deciding how the work is split;
+	 * 	the source is always visited in tiles.
+	 */
+	public void apply(SimplePicture source, SimplePicture target,
+			PixelTraversal traversal) {
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int newWidth = targetWidth(width, height);
+		if (target.getWidth() != newWidth
+				|| target.getHeight() != targetHeight(width, height))
+			throw new IllegalArgumentException("A " + width + "x" + height
+					+ " picture cannot be transformed by " + this + " into a "
+					+ target.getWidth() + "x" + target.getHeight() + " one");
+		if (source == target)
+			throw new IllegalArgumentException(
+					"The source and target pictures must be different");
+
+		int[] from = source.getRasterData();
+		int[] to = target.getRasterData();
+
+		// Where pixel (0, 0) goes, and how far a step right or down in the
+		// source moves in the target raster.
+		int originX = (xFromX < 0 ? width - 1 : 0) + (xFromY < 0 ? height - 1 : 0);
+		int originY = (yFromX < 0 ? width - 1 : 0) + (yFromY < 0 ? height - 1 : 0);
+		int origin = originY * newWidth + originX;
+		int stepX = yFromX * newWidth + xFromX;
+		int stepY = yFromY * newWidth + xFromY;
+
+		traversal.withDefaultTiles().forEachRegion(width, height,
+				(xStart, yStart, xEnd, yEnd) -> {
+			for (int y = yStart; y < yEnd; y++) {
+				int index = y * width + xStart;
+				int end = y * width + xEnd;
+				int newIndex = origin + y * stepY + xStart * stepX;
+				for (; index < end; index++, newIndex += stepX)
+					to[newIndex] = from[index];
+			}
+		});
+		target.rasterChanged();
+	}
+
+} // End of DihedralTransform enum
@@ -0,0 +1,409 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * A class that chains filters of Picture and applies them in as few passes
+ * 	over the pixels as possible.
+ *
+ * Point operations, which compute each pixel from that pixel alone
+ * 	(grayscale, negate, lighten, ...), are fused: consecutive point
+ * 	operations run in a single pass that reads each pixel once and writes
+ * 	it once. Point operations that change each channel on its own (negate,
+ * 	lighten, darken, addRed, ...) are also collapsed, as they are added,
+ * 	into one ChannelLut, so that any run of them costs three table
+ * 	lookups per pixel. Filters that need the neighbours
+ * 	of a pixel (blur, showEdges, energy) and filters that change the size
+ * 	of the picture end a run of point operations and are applied as the
+ * 	Picture methods of the same name.
+ *
+ * A FilterPipeline never changes once built: every method adding a step
+ * 	returns a new FilterPipeline, so a pipeline can be shared between
+ * 	threads and extended in several ways.
+ *
+ * 	FilterPipeline pipeline = new FilterPipeline().grayscale().lighten(20)
+ * 			.addBlue(10).negate();
+ * 	Picture result = pipeline.apply(picture);
+ *
+ */
+public class FilterPipeline
+{
+
+	/////////////////////////// Interfaces ////////////////////////////////////
+
+	/**
+	 * A point operation: computes the new color of a pixel from its
+	 * 	current color alone.
+	 */
+	public interface PointOp {
+		/**
+		 * @param rgb The color of the pixel, as 0xRRGGBB.
+		 * @return The new color of the pixel, as 0xRRGGBB.
+		 */
+		int apply(int rgb);
+	}
+
+	////////////////////////////// Fields /////////////////////////////////////
+
+	/** The steps of this pipeline, with consecutive point operations
+	 * 	already fused into one step. */
+	private final List<Step> steps;
+
+	/** The names of the filters added, in order. */
+	private final List<String> names;
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	/**
+	 * Creates a pipeline without any filter, which copies the picture.
+	 */
+	public FilterPipeline() {
+		this(Collections.emptyList(), Collections.emptyList());
+	}
+
+	private FilterPipeline(List<Step> steps, List<String> names) {
+		this.steps = steps;
+		this.names = names;
+	}
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * @return This pipeline followed by Picture.grayscale().
+	 */
+	public FilterPipeline grayscale() {
+		return point("grayscale", rgb -> {
+			int average = (Pixel.getRed(rgb) + Pixel.getGreen(rgb)
+					+ Pixel.getBlue(rgb)) / 3;
+			return gray(average);
+		});
+	}
+
+	/**
+	 * @return This pipeline followed by Picture.luminosity().
+	 */
+	public FilterPipeline luminosity() {
+		return point("luminosity", rgb -> gray(Picture.luminosityOf(rgb)));
+	}
+
+	/**
+	 * @return This pipeline followed by Picture.negate().
+	 */
+	public FilterPipeline negate() {
+		return point("negate", ChannelLut.NEGATE);
+	}
+
+	/**
+	 * @return This pipeline followed by Picture.lighten(amount).
+	 */
+	public FilterPipeline lighten(int amount) {
+		return point("lighten(" + amount + ")", add(amount, 1, true, true, true));
+	}
+
+	/**
+	 * @return This pipeline followed by Picture.darken(amount).
+	 */
+	public FilterPipeline darken(int amount) {
+		return point("darken(" + amount + ")", add(amount, -1, true, true, true));
+	}
+
+	/**
+	 * @return This pipeline followed by Picture.addRed(amount).
+	 */
+	public FilterPipeline addRed(int amount) {
+		return point("addRed(" + amount + ")", add(amount, 1, true, false, false));
+	}
+
+	/**
+	 * @return This pipeline followed by Picture.addGreen(amount).
+	 */
+	public FilterPipeline addGreen(int amount) {
+		return point("addGreen(" + amount + ")", add(amount, 1, false, true, false));
+	}
+
+	/**
+	 * @return This pipeline followed by Picture.addBlue(amount).
+	 */
+	public FilterPipeline addBlue(int amount) {
+		return point("addBlue(" + amount + ")", add(amount, 1, false, false, true));
+	}
+
+	/**
+	 * @return This pipeline followed by Picture.blur(blurThreshold).
+	 */
+	public FilterPipeline blur(int blurThreshold) {
+		return filter("blur(" + blurThreshold + ")",
+				picture -> picture.blur(blurThreshold), Math.max(0, blurThreshold));
+	}
+
+	/**
+	 * @return This pipeline followed by Picture.showEdges(threshold).
+	 */
+	public FilterPipeline showEdges(int threshold) {
+		return filter("showEdges(" + threshold + ")",
+				picture -> picture.showEdges(threshold), 1);
+	}
+
+	/**
+	 * @return This pipeline followed by Picture.energy().
+	 */
+	public FilterPipeline energy() {
+		return filter("energy", Picture::energy, 1);
+	}
+
+	/**
+	 * Adds a point operation to this pipeline. It is fused with the point
+	 * 	operations around it, and a ChannelLut is also merged with the
+	 * 	ChannelLuts right before or after it.
+	 *
+	 * @param name The name of the operation, used by toString.
+	 * @param op The operation; it must not depend on the position of the
+	 * 	pixel, and may be called from several threads at once.
+	 * @return This pipeline followed by the operation.
+	 */
+	public FilterPipeline point(String name, PointOp op) {
+		List<Step> newSteps = new ArrayList<>(steps);
+		Step last = newSteps.isEmpty() ? null : newSteps.get(newSteps.size() - 1);
+		if (last instanceof PointStep)
+			newSteps.set(newSteps.size() - 1, ((PointStep) last).then(op));
+		else
+			newSteps.add(new PointStep(new PointOp[0]).then(op));
+		return new FilterPipeline(newSteps, append(name));
+	}
+
+	/**
+	 * Adds any filter of Picture to this pipeline, such as a flip or a
+	 * 	carve. It ends the current run of point operations.
+	 *
+	 * @param name The name of the filter, used by toString.
+	 * @param filter The filter; it must not modify the Picture it is given.
+	 * @return This pipeline followed by the filter.
+	 */
+	public FilterPipeline filter(String name, UnaryOperator<Picture> filter) {
+		return filter(name, filter, -1);
+	}
+
+	/**
+	 * Adds a filter of Picture that keeps the size of the picture, and
+	 * 	computes each pixel from the rows at most halo rows above and below
+	 * 	it, such as blur(halo). Unlike other filters, it can be applied to a
+	 * 	picture a strip of rows at a time (see StripProcessor).
+	 *
+	 * @param name The name of the filter, used by toString.
+	 * @param filter The filter; it must not modify the Picture it is given.
+	 * @param halo The number of rows above and below a pixel the filter
+	 * 	reads, or -1 if the filter cannot be applied a strip at a time.
+	 * @return This pipeline followed by the filter.
+	 */
+	public FilterPipeline filter(String name, UnaryOperator<Picture> filter,
+			int halo) {
+		List<Step> newSteps = new ArrayList<>(steps);
+		newSteps.add(new PictureStep(filter, Math.max(-1, halo)));
+		return new FilterPipeline(newSteps, append(name));
+	}
+
+	/**
+	 * @return The names of the filters added so far, followed by name.
+	 */
+	private List<String> append(String name) {
+		List<String> newNames = new ArrayList<>(names);
+		newNames.add(name);
+		return newNames;
+	}
+
+	/**
+	 * Applies every filter of this pipeline to a picture.
+	 *
+	 * @param picture The picture to filter; it is not modified.
+	 * @return A new Picture: the result of applying the filters in order.
+	 * 	It uses the same PixelTraversal as picture.
+	 */
+	public Picture apply(Picture picture) {
+		Picture current = picture;
+		for (Step step : steps)
+			current = step.apply(current, current != picture);
+		return current == picture
+				? new Picture(picture, picture.getRasterScope()) : current;
+	}
+
+	/**
+	 * @return All the filters of this pipeline fused into one point
+	 * 	operation, for instance to apply them to a MappedRaster.
+	 * @throws IllegalStateException If a filter of this pipeline is not a
+	 * 	point operation.
+	 */
+	public PointOp toPointOp() {
+		if (steps.isEmpty())
+			return ChannelLut.IDENTITY;
+		if (steps.size() > 1 || !(steps.get(0) instanceof PointStep))
+			throw new IllegalStateException(this
+					+ " has filters that are not point operations");
+		return (PointStep) steps.get(0);
+	}
+
+	/**
+	 * @return The number of rows above and below a strip of a picture that
+	 * 	apply needs to compute the strip exactly, the sum of the halos of
+	 * 	the filters; or -1 if a filter cannot be applied a strip at a time.
+	 */
+	public int getHalo() {
+		int halo = 0;
+		for (Step step : steps) {
+			if (step.getHalo() < 0)
+				return -1;
+			halo += step.getHalo();
+		}
+		return halo;
+	}
+
+	/**
+	 * @return The number of times apply goes over the pixels of a picture,
+	 * 	counting each run of point operations and each other filter once.
+	 */
+	public int getPassCount() {
+		return steps.size();
+	}
+
+	/**
+	 * @return The filters of this pipeline, in order.
+	 */
+	public String toString() {
+		return "FilterPipeline" + names;
+	}
+
+	/**
+	 * @return The color with the red, green and blue components all set to
+	 * 	value.
+	 */
+	private static int gray(int value) {
+		return (value << 16) | (value << 8) | value;
+	}
+
+	/**
+	 * Helper method for lighten, darken and add[Red,Green,Blue]: adds
+	 * 	sign * amount to the channels selected, as Picture does. Amounts
+	 * 	that are negative or more than 225 leave the picture unchanged.
+	 */
+	private static ChannelLut add(int amount, int sign, boolean red,
+			boolean green, boolean blue) {
+		int added = amount < 0 || amount > 225 ? 0 : sign * amount;
+		return ChannelLut.add(red ? added : 0, green ? added : 0,
+				blue ? added : 0);
+	}
+
+	////////////////////////////// Steps //////////////////////////////////////
+
+	/**
+	 * A step of a pipeline.
+	 */
+	private interface Step {
+		/**
+		 * @param picture The picture to filter.
+		 * @param owned Whether picture was made by this pipeline, in which
+		 * 	case the step may modify it.
+		 * @return The filtered picture.
+		 */
+		Picture apply(Picture picture, boolean owned);
+
+		/**
+		 * @return The number of rows above and below a pixel the step
+		 * 	reads, or -1 if it cannot be applied a strip at a time.
+		 */
+		int getHalo();
+	}
+
+	/**
+	 * A step applying a filter of Picture.
+	 */
+	private static final class PictureStep implements Step {
+		private final UnaryOperator<Picture> filter;
+		private final int halo;
+
+		PictureStep(UnaryOperator<Picture> filter, int halo) {
+			this.filter = filter;
+			this.halo = halo;
+		}
+
+		public Picture apply(Picture picture, boolean owned) {
+			return filter.apply(picture);
+		}
+
+		public int getHalo() {
+			return halo;
+		}
+	}
+
+	/**
+	 * A step applying a run of point operations in a single pass.
+	 */
+	private static final class PointStep implements Step, PointOp {
+		/** The operations, in order; two ChannelLuts never follow each
+		 * 	other, as they are merged when added. */
+		private final PointOp[] ops;
+
+		PointStep(PointOp[] ops) {
+			this.ops = ops;
+		}
+
+		/**
+		 * @return This run followed by the operation provided.
+		 */
+		PointStep then(PointOp op) {
+			int last = ops.length - 1;
+			if (last >= 0 && ops[last] instanceof ChannelLut
+					&& op instanceof ChannelLut) {
+				PointOp[] newOps = ops.clone();
+				newOps[last] = ((ChannelLut) ops[last]).then((ChannelLut) op);
+				return new PointStep(newOps);
+			}
+			PointOp[] newOps = Arrays.copyOf(ops, ops.length + 1);
+			newOps[ops.length] = op;
+			return new PointStep(newOps);
+		}
+
+		public int getHalo() {
+			return 0;
+		}
+
+		public int apply(int rgb) {
+			for (PointOp op : ops)
+				rgb = op.apply(rgb) & 0xffffff;
+			return rgb;
+		}
+
+		public Picture apply(Picture picture, boolean owned) {
+			int width = picture.getWidth();
+			Picture target = picture;
+			if (!owned) {
+				target = new Picture(width, picture.getHeight(),
+						picture.getRasterScope());
+				target.setTraversal(picture.getTraversal());
+				target.copyFilenameFromPicture(picture);
+			}
+			int[] from = picture.getRasterData();
+			int[] to = target.getRasterData();
+
+			picture.getTraversal().forEachRegion(width, picture.getHeight(),
+					(xStart, yStart, xEnd, yEnd) -> {
+				for (int y = yStart; y < yEnd; y++) {
+					int end = y * width + xEnd;
+					if (ops.length == 1 && ops[0] instanceof ChannelLut) {
+						((ChannelLut) ops[0]).apply(from, to, y * width + xStart, end);
+						continue;
+					}
+					for (int index = y * width + xStart; index < end; index++) {
+						int rgb = from[index];
+						for (PointOp op : ops)
+							rgb = op.apply(rgb) & 0xffffff;
+						to[index] = rgb;
+					}
+				}
+			});
+			target.rasterChanged();
+			return target;
+		}
+	}
+
+} // End of FilterPipeline class
@@ -0,0 +1,180 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A class that paints the region of a picture connected to a starting pixel,
+ * 	as the paint bucket of a drawing program does. A pixel belongs to the
+ * 	region if its color is within a threshold of a reference color, and if
+ * 	it touches another pixel of the region on a side or on a corner.
+ *
+ * The region is filled one horizontal span at a time: a span is grown left
+ * 	and right as far as it goes, painted, and the rows above and below it
+ * 	are then scanned for new spans. Spans waiting to be scanned are kept on
+ * 	an explicit stack and the pixels already filled in a BitSet, so the
+ * 	fill takes time proportional to the size of the region and never runs
+ * 	out of call stack, however large the region is.
+ *
+ * Colors are always read from the source picture, which the fill does not
+ * 	modify unless it is also the target.
+ *
+ */
+public class FloodFill
+{
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * Paints the region connected to (x, y) whose colors are within
+	 * 	threshold of the color provided. Nothing is painted if the pixel at
+	 * 	(x, y) is outside of the picture or is not itself within threshold.
+	 *
+	 * @param source The picture to read the colors from.
+	 * @param target The picture to paint; it must be the same size as source,
+	 * 	and can be source itself.
+	 * @param x The x-coordinate of the starting pixel.
+	 * @param y The y-coordinate of the starting pixel.
+	 * @param rgb The color to compare the pixels to.
+	 * @param threshold The largest color distance of a painted pixel.
+	 * @param newRGB The color to paint the region with.
+	 * @return The number of pixels painted.
+	 */
+	public static int fill(SimplePicture source, SimplePicture target,
+			int x, int y, int rgb, int threshold, int newRGB) {
+		int width = source.getWidth();
+		int height = source.getHeight();
+		if (target.getWidth() != width || target.getHeight() != height)
+			throw new IllegalArgumentException(
+					"The source and target pictures must be the same size");
+		if (x < 0 || y < 0 || x >= width || y >= height || threshold < 0)
+			return 0;
+
+		FloodFill fill = new FloodFill(source, target, rgb, threshold, newRGB);
+		if (!fill.matches(x, y))
+			return 0;
+		fill.fillFrom(x, y);
+		return fill.painted;
+	}
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	private final PixelCursor source, target;
+	private final int width, height;
+
+	/** Components of the reference color. */
+	private final int red, green, blue;
+
+	/** The threshold, squared so that no square root is needed. */
+	private final long thresholdSquared;
+
+	private final int newRGB;
+
+	/** The pixels already painted, indexed by y * width + x. */
+	private final BitSet filled;
+
+	/** Spans left to scan, stored as (y, xStart, xEnd) triples. */
+	private int[] spans = new int[3 * 64];
+	private int spanCount;
+
+	private int painted;
+
+	//////////////////////////// Constructors /////////////////////////////////
+
+	private FloodFill(SimplePicture source, SimplePicture target, int rgb,
+			int threshold, int newRGB) {
+		this.source = new PixelCursor(source);
+		this.target = new PixelCursor(target);
+		this.width = source.getWidth();
+		this.height = source.getHeight();
+		this.red = (rgb >> 16) & 0xff;
+		this.green = (rgb >> 8) & 0xff;
+		this.blue = rgb & 0xff;
+		this.thresholdSquared = (long) threshold * threshold;
+		this.newRGB = newRGB;
+		this.filled = new BitSet(width * height);
+	}
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * Fills the region from a starting pixel that is known to match.
+	 */
+	private void fillFrom(int x, int y) {
+		paintSpan(y, x);
+		while (spanCount > 0) {
+			spanCount--;
+			int spanY = spans[3 * spanCount];
+			int xStart = spans[3 * spanCount + 1];
+			int xEnd = spans[3 * spanCount + 2];
+
+			// Pixels touching the span on a corner count as connected too.
+			int scanStart = Math.max(0, xStart - 1);
+			int scanEnd = Math.min(width - 1, xEnd + 1);
+			if (spanY > 0)
+				scanRow(spanY - 1, scanStart, scanEnd);
+			if (spanY < height - 1)
+				scanRow(spanY + 1, scanStart, scanEnd);
+		}
+	}
+
+	/**
+	 * Paints every new span of row y that has a pixel between xStart and
+	 * 	xEnd, inclusive.
+	 */
+	private void scanRow(int y, int xStart, int xEnd) {
+		int x = xStart;
+		while (x <= xEnd) {
+			if (!filled.get(y * width + x) && matches(x, y))
+				x = paintSpan(y, x) + 1;
+			else
+				x++;
+		}
+	}
+
+	/**
+	 * Grows a span of matching pixels left and right from (x, y), paints it
+	 * 	and pushes it on the stack of spans to scan.
+	 *
+	 * @return The x-coordinate of the last pixel of the span.
+	 */
+	private int paintSpan(int y, int x) {
+		int row = y * width;
+		int xStart = x;
+		while (xStart > 0 && !filled.get(row + xStart - 1)
+				&& matches(xStart - 1, y))
+			xStart--;
+		int xEnd = x;
+		while (xEnd < width - 1 && !filled.get(row + xEnd + 1)
+				&& matches(xEnd + 1, y))
+			xEnd++;
+
+		filled.set(row + xStart, row + xEnd + 1);
+		target.moveTo(xStart, y);
+		for (int i = xStart; i <= xEnd; i++) {
+			target.setRGB(newRGB);
+			target.next();
+		}
+		painted += xEnd - xStart + 1;
+
+		if (3 * spanCount + 3 > spans.length)
+			spans = Arrays.copyOf(spans, 2 * spans.length);
+		spans[3 * spanCount] = y;
+		spans[3 * spanCount + 1] = xStart;
+		spans[3 * spanCount + 2] = xEnd;
+		spanCount++;
+		return xEnd;
+	}
+
+	/**
+	 * @return Whether the source color at (x, y) is within the threshold of
+	 * 	the reference color.
+	 */
+	private boolean matches(int x, int y) {
+		source.moveTo(x, y);
+		int redDistance = source.getRed() - red;
+		int greenDistance = source.getGreen() - green;
+		int blueDistance = source.getBlue() - blue;
+		return redDistance * redDistance + greenDistance * greenDistance
+				+ blueDistance * blueDistance <= thresholdSquared;
+	}
+
+} // End of FloodFill class
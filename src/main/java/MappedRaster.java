@@ -0,0 +1,293 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A class that gives access to the pixels of a raw raster file (see
+ * 	RawRaster) through memory mapping, without loading them on the heap.
+ *
+ * The pixels are read and written in place in the file, with the same
+ * 	layout and methods as the raster of a SimplePicture: pixel (x, y) is
+ * 	at index y * getWidth() + x, as 0x00RRGGBB. The operating system pages
+ * 	the file in and out as needed, so a raster much larger than the heap
+ * 	can be processed a few rows at a time (see StripProcessor), and point
+ * 	operations can be applied to the whole file with apply.
+ *
+ * A single mapping cannot cover more than 2GB, so large files are mapped
+ * 	as several chunks of whole rows. Java gives no way to unmap a file:
+ * 	the mappings are released once this MappedRaster is closed and garbage
+ * 	collected.
+ *
+ */
+public class MappedRaster
+		implements StripProcessor.RowSource, StripProcessor.RowSink
+{
+
+	/////////////////////////// Static Variables //////////////////////////////
+
+	/** The largest number of bytes mapped at once. */
+	private static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE;
+
+	/** The number of pixels apply works on at once. */
+	private static final int STRIP_PIXELS = 1 << 18;
+
+	////////////////////////////// Fields /////////////////////////////////////
+
+	private final FileChannel channel;
+	private final int width, height;
+	private final boolean writable;
+
+	/** The mappings of the file, rowsPerChunk rows each, and the same
+	 * 	mappings seen as pixels; null once closed. */
+	private MappedByteBuffer[] mappings;
+	private IntBuffer[] chunks;
+	private final int rowsPerChunk;
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	private MappedRaster(FileChannel channel, int width, int height,
+			boolean writable) throws IOException {
+		this.channel = channel;
+		this.width = width;
+		this.height = height;
+		this.writable = writable;
+
+		long rowBytes = 4L * width;
+		rowsPerChunk = (int) Math.max(1, Math.min(height,
+				MAX_CHUNK_BYTES / Math.max(1, rowBytes)));
+		int chunkCount = (height + rowsPerChunk - 1) / rowsPerChunk;
+		mappings = new MappedByteBuffer[chunkCount];
+		chunks = new IntBuffer[chunkCount];
+		FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE
+				: FileChannel.MapMode.READ_ONLY;
+		for (int i = 0; i < chunkCount; i++) {
+			int rows = Math.min(rowsPerChunk, height - i * rowsPerChunk);
+			mappings[i] = channel.map(mode, RawRaster.HEADER_SIZE
+					+ i * rowsPerChunk * rowBytes, rows * rowBytes);
+			chunks[i] = mappings[i].order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+		}
+	}
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * Maps an existing raw raster file.
+	 *
+	 * @param fileName The name of the file.
+	 * @param writable Whether the pixels may be changed.
+	 * @return The mapped raster; close it when done.
+	 * @throws IOException If the file cannot be opened or is not a raw
+	 * 	raster file.
+	 */
+	public static MappedRaster open(String fileName, boolean writable)
+			throws IOException {
+		FileChannel channel = writable
+				? FileChannel.open(new File(fileName).toPath(),
+						StandardOpenOption.READ, StandardOpenOption.WRITE)
+				: FileChannel.open(new File(fileName).toPath(),
+						StandardOpenOption.READ);
+		try {
+			int[] size = RawRaster.readHeader(channel, fileName);
+			return new MappedRaster(channel, size[0], size[1], writable);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates (or replaces) a raw raster file and maps it. Its pixels are
+	 * 	black until written.
+	 *
+	 * @param fileName The name of the file.
+	 * @param width The width of the raster.
+	 * @param height The height of the raster.
+	 * @return The mapped raster, writable; close it when done.
+	 * @throws IOException If the file cannot be created.
+	 */
+	public static MappedRaster create(String fileName, int width, int height)
+			throws IOException {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Cannot create a " + width
+					+ "x" + height + " raster");
+		FileChannel channel = FileChannel.open(new File(fileName).toPath(),
+				StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			RawRaster.writeHeader(channel, width, height);
+			return new MappedRaster(channel, width, height, true);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return The width of this raster in pixels.
+	 */
+	public int getWidth() { return width; }
+
+	/**
+	 * @return The height of this raster in pixels.
+	 */
+	public int getHeight() { return height; }
+
+	/**
+	 * @return Whether the pixels of this raster may be changed.
+	 */
+	public boolean isWritable() { return writable; }
+
+	/**
+	 * Copies one row of pixels into the array provided.
+	 *
+	 * @param y The row to copy.
+	 * @param row The array to copy into; must hold at least getWidth() ints.
+	 */
+	public void getRow(int y, int[] row) {
+		getRegion(0, y, width, 1, row, 0);
+	}
+
+	/**
+	 * Replaces one row of pixels with the packed RGB values provided.
+	 *
+	 * @param y The row to replace.
+	 * @param row The new values; must hold at least getWidth() ints.
+	 */
+	public void setRow(int y, int[] row) {
+		setRegion(0, y, width, 1, row, 0);
+	}
+
+	/**
+	 * Copies a rectangular region of pixels into the array provided, laid
+	 * 	out as in SimplePicture.getRegion.
+	 *
+	 * @param x The leftmost column of the region.
+	 * @param y The topmost row of the region.
+	 * @param regionWidth The width of the region.
+	 * @param regionHeight The height of the region.
+	 * @param pixels The array to copy into.
+	 * @param offset The index in pixels of the first value copied.
+	 */
+	public void getRegion(int x, int y, int regionWidth, int regionHeight,
+			int[] pixels, int offset) {
+		checkRegion(x, y, regionWidth, regionHeight);
+		for (int j = 0; j < regionHeight; j++)
+			rowBuffer(x, y + j).get(pixels, offset + j * regionWidth,
+					regionWidth);
+	}
+
+	/**
+	 * Replaces a rectangular region of pixels with the packed RGB values
+	 * 	provided, laid out as in SimplePicture.getRegion. The top 8 bits of
+	 * 	the values are ignored.
+	 *
+	 * @param x The leftmost column of the region.
+	 * @param y The topmost row of the region.
+	 * @param regionWidth The width of the region.
+	 * @param regionHeight The height of the region.
+	 * @param pixels The new values.
+	 * @param offset The index in pixels of the first value.
+	 */
+	public void setRegion(int x, int y, int regionWidth, int regionHeight,
+			int[] pixels, int offset) {
+		checkRegion(x, y, regionWidth, regionHeight);
+		checkWritable();
+		int[] row = new int[regionWidth];
+		for (int j = 0; j < regionHeight; j++) {
+			int source = offset + j * regionWidth;
+			for (int i = 0; i < regionWidth; i++)
+				row[i] = pixels[source + i] & SimplePicture.RGB_MASK;
+			rowBuffer(x, y + j).put(row);
+		}
+	}
+
+	/**
+	 * Copies consecutive whole rows into the array provided.
+	 */
+	public void readRows(int y, int rows, int[] pixels, int offset) {
+		getRegion(0, y, width, rows, pixels, offset);
+	}
+
+	/**
+	 * Replaces consecutive whole rows with the values provided.
+	 */
+	public void writeRows(int y, int rows, int[] pixels, int offset) {
+		setRegion(0, y, width, rows, pixels, offset);
+	}
+
+	/**
+	 * Applies a point operation to every pixel of this raster, in place,
+	 * 	a strip of rows at a time.
+	 *
+	 * @param op The operation, such as a ChannelLut or
+	 * 	FilterPipeline.toPointOp().
+	 */
+	public void apply(FilterPipeline.PointOp op) {
+		checkWritable();
+		int rows = Math.max(1, Math.min(rowsPerChunk, STRIP_PIXELS / width));
+		int[] strip = new int[rows * width];
+		for (int y = 0; y < height; y += rows) {
+			int stripRows = Math.min(rows, height - y);
+			getRegion(0, y, width, stripRows, strip, 0);
+			for (int i = 0; i < stripRows * width; i++)
+				strip[i] = op.apply(strip[i]);
+			setRegion(0, y, width, stripRows, strip, 0);
+		}
+	}
+
+	/**
+	 * Makes sure the changes made to this raster are written to the file.
+	 */
+	public void force() {
+		checkOpen();
+		if (writable)
+			for (MappedByteBuffer mapping : mappings)
+				mapping.force();
+	}
+
+	/**
+	 * Closes the file. The pixels cannot be accessed afterwards.
+	 */
+	public void close() throws IOException {
+		mappings = null;
+		chunks = null;
+		channel.close();
+	}
+
+	/**
+	 * @return A buffer positioned on pixel (x, y), with its limit at the
+	 * 	end of row y.
+	 */
+	private IntBuffer rowBuffer(int x, int y) {
+		checkOpen();
+		IntBuffer chunk = chunks[y / rowsPerChunk].duplicate();
+		int rowStart = (y % rowsPerChunk) * width;
+		chunk.limit(rowStart + width);
+		chunk.position(rowStart + x);
+		return chunk;
+	}
+
+	private void checkRegion(int x, int y, int regionWidth, int regionHeight) {
+		if (x < 0 || y < 0 || regionWidth < 0 || regionHeight < 0
+				|| x + regionWidth > width || y + regionHeight > height)
+			throw new ArrayIndexOutOfBoundsException(
+					"Region out of bounds: (" + x + ", " + y + ") "
+					+ regionWidth + "x" + regionHeight + " in a "
+					+ width + "x" + height + " raster");
+	}
+
+	private void checkWritable() {
+		if (!writable)
+			throw new IllegalStateException("This raster is read-only");
+	}
+
+	private void checkOpen() {
+		if (chunks == null)
+			throw new IllegalStateException("This raster is closed");
+	}
+
+} // End of MappedRaster class
@@ -1,5 +1,6 @@
 import java.awt.*;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.lang.Math;
 import java.util.ArrayList;
 // The secret image:
@@ -27,6 +28,21 @@ public class Picture extends SimplePicture
 	public static final int FORWARD_DIAGONAL = 3;
 	public static final int BACKWARD_DIAGONAL = 4;
 
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * The order in which filters visit the pixels of this Picture. Pictures
+	 * 	created by a filter use the same PixelTraversal as the original.
+	 */
+	private PixelTraversal traversal = PixelTraversal.ROW_MAJOR;
+
+	/**
+	 * The luminosity of each pixel, row by row, as unsigned bytes. It is
+	 * 	computed the first time a filter needs it and dropped whenever the
+	 * 	pixels of this Picture change.
+	 */
+	private byte[] luminosityPlane;
+
 
 	//////////////////////////// Constructors /////////////////////////////////
 
@@ -59,13 +75,69 @@ public class Picture extends SimplePicture
 	}
 
 	/**
-	 * Creates a copy of the Picture provided.
+	 * Creates a white Picture whose raster is drawn from the RasterPool
+	 * 	Scope provided (see RasterPool.Scope.picture).
+	 * 
+	 * @param width the width of the desired picture.
+	 * @param height the height of the desired picture.
+	 * @param scope the Scope to draw the raster from, or null.
+	 */
+	Picture(int width, int height, RasterPool.Scope scope) {
+		super(width, height, scope);
+	}
+
+	/**
+	 * Creates a Picture whose pixels are held in the direct buffer provided
+	 * 	(see RawRaster.map).
+	 * 
+	 * @param fileName the name of the file the pixels come from.
+	 * @param width the width of the picture.
+	 * @param height the height of the picture.
+	 * @param pixels a direct buffer of width * height ints.
+	 */
+	Picture(String fileName, int width, int height, ByteBuffer pixels) {
+		super(fileName, width, height, pixels);
+	}
+
+	/**
+	 * Creates a copy of the Picture provided. The copy is not pooled, even
+	 * 	if pictureToCopy is, and it is off the heap if pictureToCopy is.
 	 * 
 	 * @param pictureToCopy Picture to be copied.
+	 * @throws IllegalStateException If the pixels of pictureToCopy were
+	 * 	released.
 	 */
 	public Picture(Picture pictureToCopy) {
 		// Let the parent class do the copying.
 		super(pictureToCopy);
+		copyTraversalAndLuminosity(pictureToCopy);
+	}
+
+	/**
+	 * Creates a copy of the Picture provided whose raster is drawn from the
+	 * 	RasterPool Scope provided, for a filter to write into. The copy is
+	 * 	on the heap.
+	 * 
+	 * @param pictureToCopy Picture to be copied.
+	 * @param scope the Scope to draw the raster from, or null.
+	 */
+	Picture(Picture pictureToCopy, RasterPool.Scope scope) {
+		// Let the parent class do the copying.
+		super(pictureToCopy, scope);
+		copyTraversalAndLuminosity(pictureToCopy);
+	}
+
+	/**
+	 * Helper method for the copy constructors: uses the same PixelTraversal
+	 * 	as the Picture copied, and its luminosity plane, if it has one.
+	 */
+	private void copyTraversalAndLuminosity(Picture pictureToCopy) {
+		this.traversal = pictureToCopy.traversal;
+		// the copy has the same pixels, so it can share the luminosity plane
+		if (pictureToCopy.luminosityPlane != null) {
+			this.luminosityPlane = pictureToCopy.luminosityPlane;
+			derivedDataCached();
+		}
 	}
 
 	/**
@@ -104,6 +176,58 @@ public class Picture extends SimplePicture
 		" height = " + this.getHeight() + ", width = " + this.getWidth();
 		return output;
 	}
+	/**
+	 * @return The PixelTraversal used by the filters of this Picture.
+	 */
+	public PixelTraversal getTraversal() { return traversal; }
+
+	/**
+	 * Sets the order in which the filters of this Picture visit its pixels.
+	 * 	Pictures created by those filters inherit the same PixelTraversal.
+	 * 
+	 * @param traversal The PixelTraversal to use.
+	 */
+	public void setTraversal(PixelTraversal traversal) {
+		this.traversal = traversal;
+	}
+
+	/**
+	 * Makes the filters of this Picture (and of the Pictures they create)
+	 * 	run on the given number of threads, each working on its own bands of
+	 * 	rows. The results are exactly the same as with a single thread.
+	 * 
+	 * @param parallelism The number of threads to use; 1 for none.
+	 */
+	public void setParallelism(int parallelism) {
+		this.traversal = traversal.withParallelism(parallelism);
+	}
+
+	/**
+	 * Helper method to create a blank (white) Picture for a filter to write
+	 * 	into. The new Picture uses the same PixelTraversal as this one, and
+	 * 	draws its raster from the same RasterPool Scope, if any.
+	 * 
+	 * @param width the width of the new Picture
+	 * @param height the height of the new Picture
+	 * @return A new white Picture of the given size
+	 */
+	private Picture blankPicture(int width, int height) {
+		Picture newPicture = new Picture(width, height, getRasterScope());
+		newPicture.traversal = this.traversal;
+		return newPicture;
+	}
+
+	/**
+	 * Helper method to copy this Picture for a filter to write into. Like
+	 * 	blankPicture, the copy draws its raster from the same RasterPool
+	 * 	Scope as this Picture, if any.
+	 * 
+	 * @return A new Picture with the same pixels and PixelTraversal
+	 */
+	private Picture filterCopy() {
+		return new Picture(this, getRasterScope());
+	}
+
 	/**
 	 * Equals method for two Picture objects. 
 	 * 
@@ -116,23 +240,19 @@ public class Picture extends SimplePicture
 			return false;
 		}
 
-		Picture p = (Picture) obj;
-		// Check that the two pictures have the same dimensions.
-		if ((p.getWidth() != this.getWidth()) ||
-				(p.getHeight() != this.getHeight())) {
-			return false;
-		}
-
-		// Check each pixel.
-		for (int x = 0; x < this.getWidth(); x++) {
-			for(int y = 0; y < this.getHeight(); y++) {
-				if (!this.getPixel(x, y).equals(p.getPixel(x, y))) {
-					return false;
-				}
-			}
-		}
+		// Compare the rasters, stopping at the first difference.
+		return hasSamePixels((Picture) obj);
+	}
 
-		return true;
+	/**
+	 * Hash code method consistent with equals: Pictures with the same
+	 * 	pixels have the same hash code, taken from their digest.
+	 * 
+	 * @return The hash code of the pixels of this Picture.
+	 */
+	public int hashCode() {
+		long digest = digest();
+		return (int) (digest ^ (digest >>> 32));
 	}
 
 	/**
@@ -151,11 +271,12 @@ public class Picture extends SimplePicture
 	public void printLuminosity(){
 		int pictureHeight = this.getHeight();
 		int pictureWidth = this.getWidth();
+		byte[] luminosity = this.getLuminosityPlane();
 		System.out.println("Luminosity:");
 		for(int y = 0; y < pictureHeight; y++) {
 			System.out.print("[");
 			for(int x = 0; x < pictureWidth; x++) {
-				System.out.print(this.luminosityOfPixel(x, y) + "\t");
+				System.out.print((luminosity[y * pictureWidth + x] & 0xff) + "\t");
 			}
 			System.out.println("]");
 		}		
@@ -166,11 +287,12 @@ public class Picture extends SimplePicture
 	public void printEnergy(){
 		int pictureHeight = this.getHeight();
 		int pictureWidth = this.getWidth();
+		byte[] luminosity = this.getLuminosityPlane();
 		System.out.println("Energy:");
 		for(int y = 0; y < pictureHeight; y++) {
 			System.out.print("[");
 			for(int x = 0; x < pictureWidth; x++) {
-				System.out.print(this.getEnergy(x, y) + "\t");
+				System.out.print(this.getEnergy(luminosity, x, y) + "\t");
 			}
 			System.out.println("]");
 		}		
@@ -195,25 +317,52 @@ public class Picture extends SimplePicture
 	 * This method can be used like the other Picture methods, to create a
 	 * Picture that shows what Pixels are different between two Picture objects.
 	 * 
+	 * See PictureDiff for comparisons with a tolerance, statistics and
+	 * the regions that changed.
+	 * 
 	 * @param picture2 is a Picture to compare the current Picture to
 	 * @return returns a new Picture with red pixels indicating differences between 
 	 * 			the two Pictures
 	 */
 	public Picture showDifferences(Picture picture2){
-		Picture newPicture = new Picture(this);
+		if (picture2.getWidth() < this.getWidth() || picture2.getHeight() < this.getHeight()) {
+			throw new ArrayIndexOutOfBoundsException("Coordinate out of bounds!");
+		}
+		return new PictureDiff().withTraversal(traversal)
+				.withOutput(PictureDiff.Output.HIGHLIGHT)
+				.compare(this, picture2).getOutput();
+	}
 
+	/**
+	 * Marks in red, in this Picture, the pixels that differ from picture2,
+	 * as showDifferences does, without making a copy.
+	 * 
+	 * @param picture2 is a Picture to compare the current Picture to
+	 * @return This Picture
+	 */
+	public Picture showDifferencesInPlace(Picture picture2){
 		int pictureHeight = this.getHeight();
 		int pictureWidth = this.getWidth();
-		Color red = new Color(255, 0, 0);
-		for(int x = 0; x < pictureWidth; x++) {
-			for(int y = 0; y < pictureHeight; y++) {
-				if (!this.getPixel(x, y).equals(picture2.getPixel(x, y))) {
-					Pixel p = newPicture.getPixel(x, y);
-					p.setColor(red);
+		if (picture2.getWidth() < pictureWidth || picture2.getHeight() < pictureHeight) {
+			throw new ArrayIndexOutOfBoundsException("Coordinate out of bounds!");
+		}
+
+		traversal.forEachRegion(pictureWidth, pictureHeight, (xStart, yStart, xEnd, yEnd) -> {
+			PixelCursor pixel = new PixelCursor(this);
+			PixelCursor otherPixel = new PixelCursor(picture2);
+			for (int y = yStart; y < yEnd; y++) {
+				pixel.moveTo(xStart, y);
+				otherPixel.moveTo(xStart, y);
+				for (int x = xStart; x < xEnd; x++) {
+					if (pixel.getRGB() != otherPixel.getRGB()) {
+						pixel.setRGB(255, 0, 0);
+					}
+					pixel.next();
+					otherPixel.next();
 				}
 			}
-		}
-		return newPicture;
+		});
+		return this;
 	}
 
 
@@ -222,39 +371,43 @@ public class Picture extends SimplePicture
 	 * Each of the methods below is constructive: in other words, each of the
 	 * methods below generates a new Picture, without permanently modifying the
 	 * original Picture.
+	 *
+	 * The filters that keep the size of the Picture also have an InPlace
+	 * version that modifies this Picture and returns it, so that a chain of
+	 * filters only needs one copy: new Picture(pic).negateInPlace().lightenInPlace(20)
 	 */
 
 	/**
 	 * Returns a new Picture, which is the gray version of the current Picture (this)
 	 * 
 	 * This is an example where all of the pixel-processing occurs within
-	 * the nested for loops (over the columns, x, and rows, y).
+	 * the nested for loops (over the rows, y, and then the columns, x, of
+	 * each region handed out by the PixelTraversal).
 	 * 
 	 * @return A new Picture that is the grayscale version of this Picture.
 	 */
 	public Picture grayscale2() {
-		Picture newPicture = new Picture(this);
+		Picture newPicture = filterCopy();
 
 		int pictureHeight = this.getHeight();
 		int pictureWidth = this.getWidth();
 
-		for (int x = 0; x < pictureWidth; x++) {
-			for (int y = 0; y < pictureHeight; y++) {
-				
-				Pixel currentPixel = newPicture.getPixel(x, y);
-				
-				Color c = currentPixel.getColor();
-				int redComponent = c.getRed();
-				int greenComponent = c.getGreen();
-				int blueComponent = c.getBlue();
-
-				int average = (redComponent + greenComponent + blueComponent) / 3;
-
-				currentPixel.setRed(average);
-				currentPixel.setGreen(average);
-				currentPixel.setBlue(average);
+		traversal.forEachRegion(pictureWidth, pictureHeight, (xStart, yStart, xEnd, yEnd) -> {
+			PixelCursor currentPixel = new PixelCursor(newPicture);
+			for (int y = yStart; y < yEnd; y++) {
+				currentPixel.moveTo(xStart, y);
+				for (int x = xStart; x < xEnd; x++) {
+					int redComponent = currentPixel.getRed();
+					int greenComponent = currentPixel.getGreen();
+					int blueComponent = currentPixel.getBlue();
+
+					int average = (redComponent + greenComponent + blueComponent) / 3;
+
+					currentPixel.setRGB(average, average, average);
+					currentPixel.next();
+				}
 			}
-		}
+		});
 		return newPicture;
 	}
 	
@@ -273,40 +426,49 @@ public class Picture extends SimplePicture
 	 * @return A new Picture that is the grayscale version of this Picture.
 	 */
 	public Picture grayscale() {
-		Picture newPicture = new Picture(this);
+		return filterCopy().grayscaleInPlace();
+	}
 
+	/**
+	 * Converts this Picture into grayscale, as grayscale() does, without
+	 * making a copy.
+	 * 
+	 * @return This Picture
+	 */
+	public Picture grayscaleInPlace() {
 		int pictureHeight = this.getHeight();
 		int pictureWidth = this.getWidth();
 
-		for(int x = 0; x < pictureWidth; x++) {
-			for(int y = 0; y < pictureHeight; y++) {
-				newPicture.setPixelToGray(x, y);
+		traversal.forEachRegion(pictureWidth, pictureHeight, (xStart, yStart, xEnd, yEnd) -> {
+			PixelCursor currentPixel = new PixelCursor(this);
+			for (int y = yStart; y < yEnd; y++) {
+				currentPixel.moveTo(xStart, y);
+				for (int x = xStart; x < xEnd; x++) {
+					setPixelToGray(currentPixel);
+					currentPixel.next();
+				}
 			}
-		}
-		return newPicture;
+		});
+		return this;
 	}
 
 	/**
-	 * Helper method for grayscale() to set a pixel at (x, y) to be gray.
+	 * Helper method for grayscale() to set the pixel under a cursor to be gray.
 	 * 
-	 * @param x The x-coordinate of the pixel to be set to gray.
-	 * @param y The y-coordinate of the pixel to be set to gray.
+	 * @param currentPixel The cursor on the pixel to be set to gray.
 	 */
-	private void setPixelToGray(int x, int y) {
-		Pixel currentPixel = this.getPixel(x, y);
-		int average = Picture.averageOfRGB(currentPixel.getColor());
-		currentPixel.setRed(average);
-		currentPixel.setGreen(average);
-		currentPixel.setBlue(average);		
+	private static void setPixelToGray(PixelCursor currentPixel) {
+		int average = Picture.averageOfRGB(currentPixel);
+		currentPixel.setRGB(average, average, average);
 	}
 	/**
 	 * Helper method for grayscale() to calculate the
 	 * average value of red, green and blue.
 	 *
-	 * @param c is the Color to be averaged
-	 * @return The average of the red, green and blue values of this Color
+	 * @param c is the cursor on the pixel to be averaged
+	 * @return The average of the red, green and blue values of that pixel
 	 */
-	private static int averageOfRGB(Color c) {
+	private static int averageOfRGB(PixelCursor c) {
 		int redComponent = c.getRed();
 		int greenComponent = c.getGreen();
 		int blueComponent = c.getBlue();
@@ -331,52 +493,39 @@ public class Picture extends SimplePicture
 	 * @return A new Picture that is the photonegative version of this Picture. 
 	 */
 	public Picture negate() {
-		Picture newPicture = new Picture(this);
-		int height = this.getHeight();
-		int width = this.getWidth();
-
-		//loop through each pixel
-		for(int i = 0; i < width; i++) {
-			for(int j = 0; j < height; j++) {
-				Pixel pixel = this.getPixel(i, j);//get one pixel object
-				int newRed = 255 - pixel.getRed(); //calculate new RGB
-				int newGreen = 255 - pixel.getGreen();
-				int newBlue = 255 - pixel.getBlue();
-				Pixel newPixel = newPicture.getPixel(i, j);
-				newPixel.setRed(newRed);//update the RGB of the pixel
-				newPixel.setBlue(newBlue);
-				newPixel.setGreen(newGreen);
-			}
-		}
-		return newPicture;
+		return filterCopy().negateInPlace();
+	}
 
+	/**
+	 * Converts this Picture into its photonegative version, as negate()
+	 * does, without making a copy.
+	 * 
+	 * @return This Picture
+	 */
+	public Picture negateInPlace() {
+		//every component c becomes 255 - c, looked up in a table
+		ChannelLut.NEGATE.apply(this, this, traversal);
+		return this;
 	}
 
 	/**
-	 lighten and darken helper method
+	 lighten and darken helper method: adds amount (from -225 to 225) to
+	 each RGB color
 	 */
 	public Picture darkenLightHelper(int amount){
-		Picture newPicture = new Picture(this);
-
-		int pictureHeight = this.getHeight();
-		int pictureWidth = this.getWidth();
+		if(amount>225 || amount<-225) return this;
+		return filterCopy().darkenLightInPlace(amount);
+	}
 
-		if(amount>225 || amount<0) return this;
+	/**
+	 lighten and darken in place helper method
+	 */
+	private Picture darkenLightInPlace(int amount){
+		if(amount>225 || amount<-225) return this;
 
-		//loop through each pixel
-		for(int x = 0; x < pictureWidth; x++) {
-			for(int y = 0; y < pictureHeight; y++) {
-				Pixel pixel = this.getPixel(x, y);//get one pixel
-				int newRed = pixel.getRed() + amount; //add amount to each RGB color
-				int newGreen = pixel.getGreen() + amount;
-				int newBlue = pixel.getBlue() + amount;
-				Pixel newPixel = newPicture.getPixel(x, y);//a pixel object that is from newPicture
-				newPixel.setRed(newRed);//update RGB
-				newPixel.setGreen(newGreen);
-				newPixel.setBlue(newBlue);
-			}
-		}
-		return newPicture;
+		//add amount to each RGB color, clamped by the table
+		ChannelLut.add(amount, amount, amount).apply(this, this, traversal);
+		return this;
 	}
 	//////////////////////////// Lighten /////////////////////////////////
 	
@@ -389,9 +538,20 @@ public class Picture extends SimplePicture
 	 *         by the lightenAmount.
 	 */
 	public Picture lighten(int lightenAmount) {
+		if(lightenAmount<0) return this;
 		return darkenLightHelper(lightenAmount);
 	}
 
+	/**
+	 * Makes this Picture lighter, as lighten does, without making a copy.
+	 * 
+	 * @return This Picture
+	 */
+	public Picture lightenInPlace(int lightenAmount) {
+		if(lightenAmount<0) return this;
+		return darkenLightInPlace(lightenAmount);
+	}
+
 	//////////////////////////// Darken /////////////////////////////////
 
 	/**
@@ -404,6 +564,7 @@ public class Picture extends SimplePicture
 	 */
 
 	public Picture darken(int darkenAmount) {
+		if(darkenAmount<0) return this;
 		//negative of amount because it is darken
 		return darkenLightHelper(darkenAmount*-1);
 		// NOTE - This is REALLY similar to lighten, could you write a helper
@@ -411,6 +572,16 @@ public class Picture extends SimplePicture
 
 	}
 
+	/**
+	 * Makes this Picture darker, as darken does, without making a copy.
+	 * 
+	 * @return This Picture
+	 */
+	public Picture darkenInPlace(int darkenAmount) {
+		if(darkenAmount<0) return this;
+		return darkenLightInPlace(darkenAmount*-1);
+	}
+
 	//////////////////////////// Add[Blue,Green,Red] /////////////////////////////////
 	/**
 	 add colours helper method
@@ -419,30 +590,29 @@ public class Picture extends SimplePicture
 	 * green=3;
 	 */
 	public Picture changeColourHelper(int amount, int colour){
-		Picture newPicture = new Picture(this);
-		int pictureHeight = this.getHeight();
-		int pictureWidth = this.getWidth();
+		// check the amount is <225
+		if(amount>225 || amount<0) return this;
+		return filterCopy().changeColourInPlace(amount, colour);
+	}
 
+	/**
+	 add colours in place helper method, with colour as in changeColourHelper
+	 */
+	private Picture changeColourInPlace(int amount, int colour){
 		// check the amount is <225
 		if(amount>225 || amount<0) return this;
 
-		//loop through each pixel
-		for(int x = 0; x < pictureWidth; x++) {
-			for(int y = 0; y < pictureHeight; y++) {
-				Pixel pixel = this.getPixel(x, y);
-				int newColor=0;
-				if(colour==1){ //check the color
-					 newColor = pixel.getRed() + amount;
-				}else if (colour==2){ // if the color is blue
-					 newColor = pixel.getBlue() + amount;
-				}else{ //green
-					 newColor = pixel.getGreen() + amount;
-				}
-				Pixel newPixel = newPicture.getPixel(x, y); //get the pixel from new Picture
-				newPixel.setBlue(newColor); //update color to the pixel
-			}
+		//add amount to the selected color only, clamped by the table
+		ChannelLut lut;
+		if(colour==1){ //check the color
+			lut = ChannelLut.add(amount, 0, 0);
+		}else if (colour==2){ // if the color is blue
+			lut = ChannelLut.add(0, 0, amount);
+		}else{ //green
+			lut = ChannelLut.add(0, amount, 0);
 		}
-		return newPicture;
+		lut.apply(this, this, traversal);
+		return this;
 	}
 	/**
 	 * Creates an image where the blue value has been increased by amount.The range of
@@ -455,6 +625,16 @@ public class Picture extends SimplePicture
 	public Picture addBlue(int amount) {
 		return changeColourHelper(amount,2);
 	}
+
+	/**
+	 * Increases the blue value of this Picture by amount, as addBlue does,
+	 * without making a copy.
+	 * 
+	 * @return This Picture
+	 */
+	public Picture addBlueInPlace(int amount) {
+		return changeColourInPlace(amount,2);
+	}
 	
 	/**
 	 * Creates an image where the red value has been increased by amount. The range of
@@ -467,6 +647,16 @@ public class Picture extends SimplePicture
 	public Picture addRed(int amount) {
 		return changeColourHelper(amount,1);
 	}
+
+	/**
+	 * Increases the red value of this Picture by amount, as addRed does,
+	 * without making a copy.
+	 * 
+	 * @return This Picture
+	 */
+	public Picture addRedInPlace(int amount) {
+		return changeColourInPlace(amount,1);
+	}
 	
 	/**
 	 * Creates an image where the green value has been increased by amount. The range of
@@ -479,7 +669,43 @@ public class Picture extends SimplePicture
 	public Picture addGreen(int amount) {
 		return changeColourHelper(amount,3);
 	}
+
+	/**
+	 * Increases the green value of this Picture by amount, as addGreen does,
+	 * without making a copy.
+	 * 
+	 * @return This Picture
+	 */
+	public Picture addGreenInPlace(int amount) {
+		return changeColourInPlace(amount,3);
+	}
 	
+	//////////////////////////// Curves /////////////////////////////////
+
+	/**
+	 * Creates an image where the red, green and blue values of every pixel
+	 * are changed by the lookup tables provided, such as a gamma, levels or
+	 * contrast curve. The alpha value should not be changed.
+	 * 
+	 * @param lut the tables to change each color value by
+	 * @return A new Picture with every color value changed by lut.
+	 */
+	public Picture adjust(ChannelLut lut) {
+		return filterCopy().adjustInPlace(lut);
+	}
+
+	/**
+	 * Changes the color values of this Picture by the lookup tables
+	 * provided, as adjust does, without making a copy.
+	 * 
+	 * @param lut the tables to change each color value by
+	 * @return This Picture
+	 */
+	public Picture adjustInPlace(ChannelLut lut) {
+		lut.apply(this, this, traversal);
+		return this;
+	}
+
 	//////////////////////////// Rotate Right /////////////////////////////////
 
 	/**
@@ -490,21 +716,7 @@ public class Picture extends SimplePicture
 	 * @return a new Picture rotated right by 90 degrees
 	 */
 	public Picture rotateRight() {
-		int Height = this.getHeight();
-		int Width = this.getWidth();
-		int newWidth = Height;
-		int newHeight = Width;
-		Picture newPicture = new Picture(newWidth, newHeight);
-		//loop through each pixel
-		for(int i = 0; i < Width; i++) {
-			for(int j = 0; j < Height; j++) {
-				Pixel pixel = this.getPixel(i, j);
-				Pixel newPixel = newPicture.getPixel(Height - 1 - j, i); //when rotated, the pixel of the new picture should be (Height - 1 - j, i) pixel of the original picture
-				newPixel.setColor(pixel.getColor());//update the pixel
-			}
-
-		}
-		return newPicture;
+		return transform(DihedralTransform.ROTATE_90);
 	}
 
 	//////////////////////////// Seam Carving Section /////////////////////////////////
@@ -521,37 +733,87 @@ public class Picture extends SimplePicture
 	 * @return A new Picture that is the luminosity version of this Picture.
 	 */
 	public Picture luminosity(){
-		Picture newPicture = new Picture(this);
+		return filterCopy().luminosityInPlace();
+	}
+
+	/**
+	 * Converts this Picture into its luminosity version, as luminosity()
+	 * does, without making a copy.
+	 * 
+	 * @return This Picture
+	 */
+	public Picture luminosityInPlace(){
 		int height = this.getHeight();
 		int width = this.getWidth();
-
-		//loop through each pixel
-		for(int i = 0; i < width; i++) {
-			for(int j = 0; j < height; j++){
-				int newLuminosity = luminosityOfPixel(i, j); //calculate luminosity of that pixel
-				Pixel newPixel = newPicture.getPixel(i, j);
-				newPixel.setBlue(newLuminosity); // update RGB of the pixel
-				newPixel.setRed(newLuminosity);
-				newPixel.setGreen(newLuminosity);
+		byte[] luminosity = this.getLuminosityPlane();
+
+		//loop through each pixel, row by row
+		traversal.forEachRegion(width, height, (xStart, yStart, xEnd, yEnd) -> {
+			PixelCursor pixel = new PixelCursor(this);
+			for (int y = yStart; y < yEnd; y++) {
+				pixel.moveTo(xStart, y);
+				int index = y * width + xStart;
+				for (int x = xStart; x < xEnd; x++) {
+					int newLuminosity = luminosity[index++] & 0xff; //luminosity of that pixel
+					pixel.setRGB(newLuminosity, newLuminosity, newLuminosity); // update RGB of the pixel
+					pixel.next();
+				}
 			}
-		}
-		return newPicture;
+		});
+		return this;
 
 	}
 	
 	
 	/**
-	 * Helper method for luminosity() to calculate the
-	 * luminosity of a pixel at (x,y).
+	 * Helper method that returns the luminosity of every pixel, row by
+	 * row, so that luminosity(), energy() and computeSeam() compute it only
+	 * once. The plane is kept until the pixels of this Picture change.
 	 *
-	 * @param x  the x-coordinate of the pixel
-	 * @param y  the y-coordinate of the pixel
-	 * @return The luminosity of that pixel
+	 * @return The luminosity of pixel (x, y) at index y * getWidth() + x,
+	 * as an unsigned byte
 	 */
-	private int luminosityOfPixel(int x, int y) {
-		Pixel pixel = this.getPixel(x, y);
+	private byte[] getLuminosityPlane() {
+		byte[] plane = luminosityPlane;
+		if (plane == null) {
+			int width = this.getWidth();
+			byte[] newPlane = new byte[width * this.getHeight()];
+			traversal.forEachRegion(width, this.getHeight(), (xStart, yStart, xEnd, yEnd) -> {
+				PixelCursor pixel = new PixelCursor(this);
+				for (int y = yStart; y < yEnd; y++) {
+					pixel.moveTo(xStart, y);
+					int index = y * width + xStart;
+					for (int x = xStart; x < xEnd; x++) {
+						newPlane[index++] = (byte) luminosityOf(pixel.getRGB());
+						pixel.next();
+					}
+				}
+			});
+			plane = newPlane;
+			luminosityPlane = plane;
+			derivedDataCached();
+		}
+		return plane;
+	}
+
+	/**
+	 * Drops the luminosity plane, and the digest, when the pixels of this
+	 * 	Picture change.
+	 */
+	protected void dropDerivedData() {
+		super.dropDerivedData();
+		luminosityPlane = null;
+	}
+
+	/**
+	 * Helper method to calculate the luminosity of a packed RGB color.
+	 *
+	 * @param rgb the color, with red, green and blue taking 8 bits each
+	 * @return The luminosity of that color
+	 */
+	static int luminosityOf(int rgb) {
 		//calculate luminosity using the formula
-		int luminosity = (int)(0.21 * pixel.getRed() + 0.72 * pixel.getGreen() + 0.07 * pixel.getBlue());
+		int luminosity = (int)(0.21 * Pixel.getRed(rgb) + 0.72 * Pixel.getGreen(rgb) + 0.07 * Pixel.getBlue(rgb));
 		return luminosity;
 	}
 
@@ -563,47 +825,45 @@ public class Picture extends SimplePicture
 	 * @return A new Picture that is the energy version of this Picture.
 	 */
 	public Picture energy(){
-		Picture newPicture = new Picture(this);
+		return filterCopy().energyInPlace();
+	}
+
+	/**
+	 * Converts this Picture into its energy version, as energy() does,
+	 * without making a copy. The energy only depends on the luminosity
+	 * plane, which is computed before any pixel changes.
+	 * 
+	 * @return This Picture
+	 */
+	public Picture energyInPlace(){
 		int height = this.getHeight();
 		int width = this.getWidth();
-		for(int i = 0; i < width; i++) {//loop through all pixels
-			for(int j = 0; j < height; j++){
-				int newEnergy = getEnergy(i, j); //calculate energy of that pixel
-				Pixel newPixel = newPicture.getPixel(i, j);
-				newPixel.setGreen(newEnergy); //update RGB
-				newPixel.setBlue(newEnergy);
-				newPixel.setRed(newEnergy);
+		byte[] luminosity = this.getLuminosityPlane();
+		traversal.forEachRegion(width, height, (xStart, yStart, xEnd, yEnd) -> {
+			PixelCursor pixel = new PixelCursor(this);
+			for (int y = yStart; y < yEnd; y++) {//loop through all pixels, row by row
+				pixel.moveTo(xStart, y);
+				for (int x = xStart; x < xEnd; x++) {
+					int newEnergy = getEnergy(luminosity, x, y); //calculate energy of that pixel
+					pixel.setRGB(newEnergy, newEnergy, newEnergy); //update RGB
+					pixel.next();
+				}
 			}
-		}
-		return newPicture;
+		});
+		return this;
 	}
 	
 	/**
 	 * Helper method for energy() to calculate the
 	 * energy of a Pixel.
 	 *
+	 * @param luminosity is the luminosity plane of this Picture
 	 * @param x is the x value of the Pixel to be evaluated
 	 * @param y is the y value of the Pixel to be evaluated
 	 * @return The energy of this Pixel
 	 */
-	private int getEnergy(int x, int y) {
-		int energy = 0;
-		int height = this.getHeight();
-		int width = this.getWidth();
-
-		if ( x + 1 > width - 1 && y + 1 > height - 1) { //if the pixel is at lower right corner
-			energy = Math.abs(luminosityOfPixel(x, y) - luminosityOfPixel(x - 1, y)) + Math.abs(luminosityOfPixel(x, y) - luminosityOfPixel(x, y - 1));
-		}
-		else if ( x + 1 > width - 1) { //if the pixel is on the right column
-			energy = Math.abs(luminosityOfPixel(x, y) - luminosityOfPixel(x - 1, y)) + Math.abs(luminosityOfPixel(x, y + 1) - luminosityOfPixel(x, y));
-		}
-		else if ( y + 1 > height - 1) { //if the pixel is on the last row
-			energy = Math.abs(luminosityOfPixel(x + 1, y) - luminosityOfPixel(x, y)) + Math.abs(luminosityOfPixel(x, y) - luminosityOfPixel(x, y - 1));
-		}
-		else { //at the centre
-			energy = Math.abs(luminosityOfPixel(x + 1, y) - luminosityOfPixel(x, y)) + Math.abs(luminosityOfPixel(x, y + 1) - luminosityOfPixel(x, y));
-		}
-		return energy;
+	private int getEnergy(byte[] luminosity, int x, int y) {
+		return SeamSolver.energy(luminosity, this.getWidth(), this.getHeight(), x, y);
 	}
 
 
@@ -615,79 +875,12 @@ public class Picture extends SimplePicture
 	 * row to the bottom row.
 	 * 
 	 * See the course assignment for additional details.
+	 *
+	 * The seam is found by SeamSolver, which keeps two rows of costs and one
+	 * byte per pixel pointing to the previous pixel of each seam.
 	 */
-	@SuppressWarnings("unused")
 	public int[] computeSeam() {
-
-		// Initialize variables
-		int height = this.getHeight();
-		int width = this.getWidth();
-		int[][] energyTable = new int[height][width];
-		int[][] costTable = new int[height][width];
-		int[][] parent = new int[height][width];
-
-		// Fill energy table
-		for(int i = 0; i < width; i++)
-			for(int j = 0; j < height; j++)
-				energyTable[j][i] = getEnergy(i, j);
-
-		// Fill cost table and parent table
-		for(int i = 0; i < width; i++) costTable[0][i] = energyTable[0][i];
-		for(int i = 0; i < width; i++) parent[0][i] = 1;
-		int parentNum = 0;
-		for (int y = 1; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				if (x - 1 < 0) {
-					costTable[y][x] = energyTable[y][x] + Math.min(costTable[y-1][x], costTable[y-1][x+1]);
-					if (costTable[y-1][x] == costTable[y-1][x+1] || costTable[y-1][x] < costTable[y-1][x+1]) {
-						parentNum = x;
-					} else {
-						parentNum = x + 1;
-					}
-					parent[y][x] = parentNum;
-				} else if (x + 1 > width - 1) {
-					costTable[y][x] = energyTable[y][x] + Math.min(costTable[y-1][x-1], costTable[y-1][x]);
-					if (costTable[y-1][x-1] == costTable[y-1][x] || costTable[y-1][x] < costTable[y-1][x-1]) {
-						parentNum = x;
-					} else {
-						parentNum = x - 1;
-					}
-					parent[y][x] = parentNum;
-				} else {
-					// Compute minimum and update cost and parent tables
-					int minimum = Math.min(Math.min(costTable[y-1][x-1], costTable[y-1][x]), costTable[y-1][x+1]);
-					costTable[y][x] = energyTable[y][x] + minimum;
-					if (costTable[y-1][x] == minimum) {
-						parentNum = x;
-					} else if (costTable[y-1][x-1] == minimum) {
-						parentNum = x - 1;
-					} else {
-						parentNum = x + 1;
-					}
-					parent[y][x] = parentNum;
-				}
-			}
-		}
-
-		// Find the minimum cost seam
-		int currMin = costTable[height-1][0];
-		int currX = 0;
-		for (int x = 1; x < width; x++) {
-			if (currMin > costTable[height-1][x]) {
-				currMin = costTable[height-1][x];
-				currX = x;
-			}
-		}
-
-		// Backtrack to find the seam
-		int[] seam = new int[height];
-		seam[height-1] = currX;
-		seam[height-2] = parent[height-1][currX];
-		for (int i = height-3; i >= 0; i--) {
-			seam[i] = parent[i+1][seam[i+1]];
-		}
-
-		return seam;
+		return SeamSolver.computeSeam(this.getLuminosityPlane(), this.getWidth(), this.getHeight());
 	}
 
 	//////////////////////////// Show Seam /////////////////////////////////
@@ -699,24 +892,26 @@ public class Picture extends SimplePicture
 	 * @return a new Picture
 	 */
 	public Picture showSeam(){
+		return filterCopy().showSeamInPlace();
+	}
 
-		Picture newPicture = new Picture(this);
-		Color red = new Color(255, 0, 0);
+	/**
+	 * Shows the lowest cost seam of this Picture in red, as showSeam() does,
+	 * without making a copy.
+	 * 
+	 * @return This Picture
+	 */
+	public Picture showSeamInPlace(){
+		PixelCursor pixel = new PixelCursor(this);
 		int height = this.getHeight();
-		int width = this.getWidth();
 		int[] seam = this.computeSeam();
 
-		//loop through each pixel
+		//each row has exactly one pixel in the seam
 		for (int i = 0; i < height; i++) {
-			for (int j = 0; j < width; j++) {
-				if ( seam[i]==j) { //if the pixel is in the seam
-					Pixel pixel = this.getPixel(j, i);
-					Pixel newPixel = newPicture.getPixel(j, i);
-					newPixel.setColor(red); // update to red
-				}
-			}
+			pixel.moveTo(seam[i], i);
+			pixel.setRGB(255, 0, 0); // update to red
 		}
-		return newPicture;
+		return this;
 	}
 	
 	//////////////////////////// Carving (2 methods) /////////////////////////////////
@@ -727,58 +922,19 @@ public class Picture extends SimplePicture
 	 * but have a width that is one smaller than the original.
 	 */
 	public Picture carve(){
-
-
-		// Initialize variables and create new picture object
 		int width = this.getWidth();
 		int height = this.getHeight();
-		int newWidth = width - 1;
-		int newHeight = height;
-		Picture newPicture = new Picture(newWidth, newHeight);
+		Picture newPicture = blankPicture(width - 1, height);
 
-		// Compute seam and initialize seamFound flag
+		// Compute seam
 		int[] seam = this.computeSeam();
-		boolean seamFound=false;
-
-		// Loop through each column in the image
-		for (int i = 0; i < newWidth; i++) {
-			seamFound = false;
-			// Loop through each row in the image
-			for (int j = 0; j < newHeight - 1; j++) {
-				// If we have found the seam, skip this pixel and shift the index by 1
-				if (j == seam[i]) {
-					Pixel pixel = this.getPixel(j + 1, i);
-					Pixel newPixel = newPicture.getPixel(j, i);
-					newPixel.setColor(pixel.getColor());
-					j += 1;
-					seamFound = true;
-				}
-				// If we have already the seam, shift the pixel to the left by one
-				else if (seamFound == true) {
-					Pixel pixel = this.getPixel(j, i);
-					Pixel newPixel = newPicture.getPixel(j-1, i);
-					newPixel.setColor(pixel.getColor());
-				}
-				// Otherwise, copy the pixel to the new picture
-				else {
-					Pixel pixel = this.getPixel(j, i);
-					Pixel newPixel = newPicture.getPixel(j, i);
-					newPixel.setColor(pixel.getColor());
-				}
-			}
-		}
 
-		// Copy the last column of pixels to the new picture
+		// Copy each row, leaving out the pixel of the seam
+		int[] row = new int[width];
 		for (int y = 0; y < height; y++) {
-			if (width - 1 == seam[y]) {
-				Pixel pixel = this.getPixel(width-2, y);
-				Pixel newPixel = newPicture.getPixel(newWidth-1, y);
-				newPixel.setColor(pixel.getColor());
-			} else {
-				Pixel pixel = this.getPixel(width-1, y);
-				Pixel newPixel  = newPicture.getPixel(newWidth-1, y);
-				newPixel.setColor(pixel.getColor());
-			}
+			this.getRow(y, row);
+			System.arraycopy(row, seam[y] + 1, row, seam[y], width - 1 - seam[y]);
+			newPicture.setRegion(0, y, width - 1, 1, row, 0);
 		}
 
 		// Return the new picture
@@ -795,6 +951,10 @@ public class Picture extends SimplePicture
 	 *
 	 * @param numSeams is the number of times that carve should be called
 	 * @return a new picture with numSeams removed
+	 *
+	 * The seams are removed by a single SeamCarver, which only recomputes
+	 * 	the energies and costs near each removed seam. The result is the same
+	 * 	as calling carve numSeams times.
 	 */
 	public Picture carveMany(int numSeams){
 		int pictureWidth = this.getWidth();
@@ -806,12 +966,199 @@ public class Picture extends SimplePicture
 			return this;
 		}
 
-		//carve() numSeams times
+		//carving no seams gives back this Picture, as carve() was never called
+		if (numSeams <= 0)
+			return newPicture;
+
+		//remove numSeams seams from a single copy of the pixels
+		SeamCarver carver = new SeamCarver(this);
+		carver.removeSeams(numSeams);
+		newPicture = blankPicture(carver.getWidth(), carver.getHeight());
+		carver.copyTo(newPicture);
+		return newPicture;
+
+	}
+
+	//////////////////////////// Horizontal Seams /////////////////////////////////
+
+	/**
+	 * Returns an int array with the y-coordinates (rows) of the lowest-energy
+	 * seam running from the left column to the right column. This is the seam
+	 * computeSeam would find on this Picture flipped along its backward
+	 * diagonal, but it is found without flipping anything.
+	 */
+	public int[] computeHorizontalSeam() {
+		return SeamSolver.computeHorizontalSeam(this.getLuminosityPlane(), this.getWidth(), this.getHeight());
+	}
+
+	/**
+	 * Returns a new picture, where the seam identified by calling
+	 * computeHorizontalSeam() is removed. The resulting image is the same
+	 * width as the original but has a height that is one smaller.
+	 */
+	public Picture carveHorizontal(){
+		int width = this.getWidth();
+		int height = this.getHeight();
+		Picture newPicture = blankPicture(width, height - 1);
+
+		// Compute seam
+		int[] seam = this.computeHorizontalSeam();
+
+		// Build each row from the row at the same place above the seam, and
+		// from the row below it under the seam
+		int[] row = new int[width];
+		int[] below = new int[width];
+		this.getRow(0, row);
+		for (int y = 0; y < height - 1; y++) {
+			this.getRow(y + 1, below);
+			for (int x = 0; x < width; x++) {
+				if (y >= seam[x])
+					row[x] = below[x];
+			}
+			newPicture.setRow(y, row);
+			int[] swap = row;
+			row = below;
+			below = swap;
+		}
+
+		// Return the new picture
+		return newPicture;
+	}
+
+	/**
+	 * Returns a new Picture of the size provided, made by removing
+	 * vertical and horizontal seams from this Picture. The order in which
+	 * the seams are removed is chosen with a TransportMap, so that the
+	 * total energy of the seams removed is as low as possible, and the seams
+	 * are then removed by a single SeamCarver.
+	 *
+	 * If the size provided is larger than this Picture, or too small to
+	 * remove seams from, an error is printed using System.err and this
+	 * Picture is returned.
+	 *
+	 * @param targetWidth the width of the new Picture
+	 * @param targetHeight the height of the new Picture
+	 * @return a new Picture of size targetWidth by targetHeight
+	 */
+	public Picture retarget(int targetWidth, int targetHeight) {
+		int width = this.getWidth();
+		int height = this.getHeight();
+		int rows = height - targetHeight;
+		int columns = width - targetWidth;
+
+		//check if the target size is valid: vertical seams need at least two
+		//rows to run through, and horizontal seams two columns
+		if (targetWidth < 1 || targetHeight < 1 || rows < 0 || columns < 0
+				|| (columns > 0 && targetHeight < 2) || (rows > 0 && targetWidth < 2)) {
+			System.err.println("Cannot retarget image of size " + width + "x" + height + " to " + targetWidth + "x" + targetHeight);
+			return this;
+		}
+
+		//remove the seams in the order chosen by the transport map
+		boolean[] order = TransportMap.removalOrder(this.getLuminosityPlane(), width, height, rows, columns);
+		SeamCarver carver = new SeamCarver(this);
+		for (boolean horizontal : order) {
+			if (horizontal)
+				carver.removeHorizontalSeam();
+			else
+				carver.removeSeam();
+		}
+		Picture newPicture = blankPicture(targetWidth, targetHeight);
+		carver.copyTo(newPicture);
+		return newPicture;
+	}
+
+	//////////////////////////// Seam Insertion /////////////////////////////////
+
+	/**
+	 * Returns a new Picture that is numSeams pixels wider than this one. The
+	 * numSeams seams that carveMany would remove are found first, and each
+	 * of them is then doubled: a pixel of the seam is followed by a new pixel
+	 * with the average color of it and its right neighbour (its left
+	 * neighbour on the right edge). Doubling the seams removal would pick
+	 * first, rather than the lowest-energy seam numSeams times, keeps the
+	 * new pixels from piling up in one place.
+	 *
+	 * At most half the width is added at a time; larger numbers of seams
+	 * are inserted in several steps, each working on the result of the one
+	 * before.
+	 *
+	 * If numSeams is negative, or this Picture is too small to find seams
+	 * in, an error is printed using System.err and this Picture is returned.
+	 *
+	 * @param numSeams the number of seams to insert
+	 * @return a new Picture with numSeams more columns
+	 */
+	public Picture widen(int numSeams) {
+		int width = this.getWidth();
+		int height = this.getHeight();
+
+		//check if numSeams is valid
+		if (numSeams < 0 || (numSeams > 0 && (width < 2 || height < 2))) {
+			System.err.println("Cannot call widen with argument " + numSeams + " on image of size " + width + "x" + height);
+			return this;
+		}
+
+		//inserting no seams gives back this Picture, as carveMany(0) does
+		Picture newPicture = this;
+		while (numSeams > 0) {
+			int step = Math.min(numSeams, Math.max(1, newPicture.getWidth() / 2));
+			newPicture = newPicture.insertSeams(step);
+			numSeams -= step;
+		}
+		return newPicture;
+	}
+
+	/**
+	 * Helper method for widen() that doubles the numSeams seams carveMany
+	 * would remove, in a single step.
+	 *
+	 * @param numSeams the number of seams to insert; less than the width
+	 * @return a new Picture with numSeams more columns
+	 */
+	private Picture insertSeams(int numSeams) {
+		int width = this.getWidth();
+		int height = this.getHeight();
+
+		//remove the seams from a SeamCarver, marking where their pixels came from
+		boolean[] doubled = new boolean[width * height];
+		SeamCarver carver = new SeamCarver(this);
+		carver.trackOrigins();
 		for (int i = 0; i < numSeams; i++) {
-			newPicture = newPicture.carve();
+			int[] seam = carver.findSeam();
+			for (int y = 0; y < height; y++)
+				doubled[carver.getOrigin(seam[y], y)] = true;
+			carver.removeSeam();
+		}
+
+		//copy each row, following every marked pixel with an averaged one
+		Picture newPicture = blankPicture(width + numSeams, height);
+		int[] row = new int[width];
+		int[] newRow = new int[width + numSeams];
+		for (int y = 0; y < height; y++) {
+			this.getRow(y, row);
+			int newX = 0;
+			for (int x = 0; x < width; x++) {
+				newRow[newX++] = row[x];
+				if (doubled[y * width + x]) {
+					int neighbour = row[x + 1 < width ? x + 1 : x - 1];
+					newRow[newX++] = averageOf(row[x], neighbour);
+				}
+			}
+			newPicture.setRow(y, newRow);
 		}
 		return newPicture;
+	}
 
+	/**
+	 * Helper method to average two packed RGB colors, one component at a
+	 * time, rounding down.
+	 */
+	private static int averageOf(int rgb1, int rgb2) {
+		int red = (Pixel.getRed(rgb1) + Pixel.getRed(rgb2)) / 2;
+		int green = (Pixel.getGreen(rgb1) + Pixel.getGreen(rgb2)) / 2;
+		int blue = (Pixel.getBlue(rgb1) + Pixel.getBlue(rgb2)) / 2;
+		return (red << 16) | (green << 8) | blue;
 	}
 
 	
@@ -838,69 +1185,82 @@ public class Picture extends SimplePicture
 		//initialize the size of the new picture
 		int newHeight = Math.min(this.getHeight(), background.getHeight());
 		int newWidth = Math.min(this.getWidth(), background.getWidth());
-		Picture newPicture = new Picture(newWidth, newHeight);
+		Picture newPicture = blankPicture(newWidth, newHeight);
+		newPicture.copyPicture(this);
 		//get color of the selected pixel
-		Pixel pixel = this.getPixel(x, y);
-		Color color = pixel.getColor();
-
-		//update all pixels
-		for (int i = 0; i < newWidth; i++) {
-			for (int j = 0; j < newHeight; j++) {
-				Pixel curPixel = this.getPixel(i, j);
-				Color curColor = curPixel.getColor();
-				Pixel backPixel = background.getPixel(i, j);
-				Color backColor = backPixel.getColor();
-				newPicture.setPixelToChromaKey(i, j, threshold, color, curColor, backColor);
+		return newPicture.chromaKeyInPlace(this.getBasicPixel(x, y), background, threshold);
+	}
+
+	/**
+	 * Replaces, in this Picture, the pixels which differ from the currently
+	 * selected pixel within the provided threshold with the corresponding
+	 * pixels in the background picture, as chromaKey does, without making a
+	 * copy. Pixels which have no corresponding pixel in the background are
+	 * left unchanged.
+	 * 
+	 * @param  x-coordinate of the pixel currently selected.
+	 * @param  y-coordinate of the pixel currently selected.
+	 * @param background Picture to use as the background.
+	 * @param threshold Threshold within which to replace pixels.
+	 * @return This Picture
+	 */
+	public Picture chromaKeyInPlace(int x, int y, Picture background, int threshold) {
+		return chromaKeyInPlace(this.getBasicPixel(x, y), background, threshold);
+	}
+
+	/**
+	 * Helper method for chromaKey() and chromaKeyInPlace(), keying on the
+	 * color provided.
+	 */
+	private Picture chromaKeyInPlace(int color, Picture background, int threshold) {
+		int newHeight = Math.min(this.getHeight(), background.getHeight());
+		int newWidth = Math.min(this.getWidth(), background.getWidth());
+		int keyRed = Pixel.getRed(color);
+		int keyGreen = Pixel.getGreen(color);
+		int keyBlue = Pixel.getBlue(color);
+
+		//update all pixels, row by row
+		traversal.forEachRegion(newWidth, newHeight, (xStart, yStart, xEnd, yEnd) -> {
+			PixelCursor curPixel = new PixelCursor(this);
+			PixelCursor backPixel = new PixelCursor(background);
+			for (int j = yStart; j < yEnd; j++) {
+				curPixel.moveTo(xStart, j);
+				backPixel.moveTo(xStart, j);
+				for (int i = xStart; i < xEnd; i++) {
+					setPixelToChromaKey(curPixel, threshold, keyRed, keyGreen, keyBlue, backPixel);
+					curPixel.next();
+					backPixel.next();
+				}
 			}
-		}
-		return newPicture;
+		});
+		return this;
 	}
 
 	/**
 	 * Helper method for chromaKey(). Update the pixel to either original color
 	 * or background color according to the threshold value
 	 */
-	private void setPixelToChromaKey(int x, int y, int threshold, Color color, Color originalColor, Color backColor) {
-		Pixel currentPixel = this.getPixel(x, y);
-		double distance = currentPixel.colorDistance(color, originalColor);
+	private static void setPixelToChromaKey(PixelCursor currentPixel, int threshold, int keyRed, int keyGreen, int keyBlue,
+			PixelCursor backPixel) {
+		double distance = currentPixel.colorDistance(keyRed, keyGreen, keyBlue);
 		//set the pixel same as backgroun color if the color distance is smaller than threshold balue
-		if ((int) distance <= threshold) {
-			currentPixel.setColor(backColor);
-		} else {
-			currentPixel.setColor(originalColor);
+		if (distance <= threshold) {
+			currentPixel.setRGB(backPixel.getRGB());
 		}
 	}
 
 
 	//////////////////////////// Flip /////////////////////////////////
 	/**
-	 helper methods for flip:
-	 * 1)rotate by rotations number of times;
-	 * 2)filp this picture vertically.
+	 * helper method for rotateRight and flip: returns a new Picture made of
+	 * the pixels of this one moved by the transform provided, in one pass.
 	 */
-	private Picture rotate(int rotations) {
-		Picture newPicture = new Picture(this);
-
-		//rotate the picture by rotations times.
-		while (rotations > 0) {
-			newPicture = newPicture.rotateRight();
-			rotations --;
-		}
-		return newPicture;
-	}
-	private Picture flipVertical() {
-		Picture newPicture = new Picture(this);
-		int height = this.getHeight();
+	private Picture transform(DihedralTransform transform) {
 		int width = this.getWidth();
-
-		//update each pixel
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				Pixel pixel = this.getPixel(x, y);
-				Pixel newPixel = newPicture.getPixel(x,  height - 1 - y);
-				newPixel.setColor(pixel.getColor());
-			}
-		}
+		int height = this.getHeight();
+		Picture newPicture = blankPicture(transform.targetWidth(width, height),
+				transform.targetHeight(width, height));
+		transform.apply(this, newPicture, traversal);
 		return newPicture;
 	}
 
@@ -931,19 +1291,15 @@ public class Picture extends SimplePicture
 	 */
 	public Picture flip(int axis) {
 
-		// Get the dimensions of the picture
-		int width = this.getWidth();
-		int height = this.getHeight();
-
 		// Check the value of the axis parameter and flip the picture accordingly
 		if(axis==Picture.HORIZONTAL) {
-			return this.rotate(1).flipVertical().rotate(3);
+			return transform(DihedralTransform.FLIP_HORIZONTAL);
 		}else if(axis==Picture.VERTICAL){
-			return this.flipVertical();
+			return transform(DihedralTransform.FLIP_VERTICAL);
 		}else if(axis==Picture.FORWARD_DIAGONAL) {
-			return this.rotate(1).rotate(1).flipVertical().rotate(3);
+			return transform(DihedralTransform.ANTI_TRANSPOSE);
 		}else if(axis==Picture.BACKWARD_DIAGONAL)  {
-			return this.rotate(3).rotate(1).flipVertical().rotate(3);
+			return transform(DihedralTransform.TRANSPOSE);
 		}else {
 			System.err.println("Invalid flip request");
 			return this;
@@ -952,22 +1308,25 @@ public class Picture extends SimplePicture
 	}
 
 	//////////////////////////// Show Edges /////////////////////////////////
-	/** helper methods for show edges: set pixels to white or black
-	 * given the x and y coordinates of a pixel
+	/** helper methods for show edges: set the pixel under a cursor
+	 * to white or black
 	 */
-	private void setPixelToWhite(int x, int y) {
-		Pixel pixel = this.getPixel(x, y);
-		pixel.setRed(255);
-		pixel.setGreen(255);
-		pixel.setBlue(255);
+	private static void setPixelToWhite(PixelCursor pixel) {
+		pixel.setRGB(255, 255, 255);
 	}
 	//adjusts a pixel to 255 alpha, all black
-	private void setPixelToBlack (int x, int y) {
-		Pixel pixel = this.getPixel(x,y);
-		pixel.setRed(0);
-		pixel.setGreen(0);
-		pixel.setBlue(0);
-
+	private static void setPixelToBlack(PixelCursor pixel) {
+		pixel.setRGB(0, 0, 0);
+	}
+	/**
+	 * helper method for show edges: whether the color distance between the
+	 * pixel under a cursor and the given color is larger than the threshold.
+	 * The distance is rounded down to a whole number first, as the expected
+	 * edge pictures were made; unlike chromaKey, which compares the exact
+	 * distance.
+	 */
+	private static boolean isEdge(PixelCursor neighbour, int red, int green, int blue, int threshold) {
+		return (int) neighbour.colorDistance(red, green, blue) > threshold;
 	}
 	/**
 	 * @param threshold
@@ -991,39 +1350,37 @@ public class Picture extends SimplePicture
 		//initialize all variables
 		int width = this.getWidth();
 		int height = this.getHeight();
-		Picture newPicture = new Picture(width, height);
-
-		//check all pixels
-		for (int x = 0; x <width; x++) {
-			for (int y = 0; y <height; y++) {
-				Pixel curPixel = this.getPixel(x,y);
-				if(x > 0 && y > 0){ // if it has both up and right pixels
-					Pixel up = this.getPixel(x-1,y);
-					Pixel left = this.getPixel(x,y-1);
-					if(up.colorDistance(curPixel.getColor())<=threshold && left.colorDistance(curPixel.getColor())<=threshold){
-						newPicture.setPixelToWhite(x,y);
-					}else{
-						newPicture.setPixelToBlack(x,y);
+		Picture newPicture = blankPicture(width, height);
+
+		//check all pixels, row by row
+		traversal.forEachRegion(width, height, (xStart, yStart, xEnd, yEnd) -> {
+			PixelCursor curPixel = new PixelCursor(this);
+			PixelCursor neighbour = new PixelCursor(this);
+			PixelCursor newPixel = new PixelCursor(newPicture);
+			for (int y = yStart; y < yEnd; y++) {
+				curPixel.moveTo(xStart, y);
+				newPixel.moveTo(xStart, y);
+				for (int x = xStart; x < xEnd; x++) {
+					int red = curPixel.getRed();
+					int green = curPixel.getGreen();
+					int blue = curPixel.getBlue();
+					boolean edge = false;
+					if (x > 0) { // compare with the pixel to the left
+						edge = isEdge(neighbour.moveTo(x - 1, y), red, green, blue, threshold);
 					}
-				}else if (x>0){ // only up pixels
-					Pixel up = this.getPixel(x-1,y);
-					if(up.colorDistance(curPixel.getColor())<=threshold){
-						newPicture.setPixelToWhite(x,y);
-					}else{
-						newPicture.setPixelToBlack(x,y);
+					if (y > 0 && !edge) { // compare with the pixel to the north
+						edge = isEdge(neighbour.moveTo(x, y - 1), red, green, blue, threshold);
 					}
-				}else if (y>0) { // only left pixels
-					Pixel up = this.getPixel(x, y - 1);
-					if (up.colorDistance(curPixel.getColor()) <= threshold) {
-						newPicture.setPixelToWhite(x, y);
-					} else {
-						setPixelToBlack(x, y);
+					if (edge) {
+						setPixelToBlack(newPixel);
+					} else { // also covers (0, 0), which has no reference pixels
+						setPixelToWhite(newPixel);
 					}
-				}else{ // no reference pixels
-					newPicture.setPixelToWhite(x, y);
+					curPixel.next();
+					newPixel.next();
 				}
 			}
-		}
+		});
 
 		return newPicture;
 	}
@@ -1096,19 +1453,23 @@ public class Picture extends SimplePicture
 	 * 
 	 * @return A new Picture that is the blurred version of this Picture, using
 	 *         a blurring square of size (2 * threshold) + 1.
+	 *
+	 * The averages are computed by BoxBlur with running sums, so the time
+	 * 	taken does not depend on blurThreshold. The result is the same as
+	 * 	calling getBlurColor on every pixel.
 	 */
 	public Picture blur(int blurThreshold) {
 		int width = this.getWidth();
 		int height = this.getHeight();
-		Picture newPicture = new Picture(width, height);
+		Picture newPicture = blankPicture(width, height);
 
-		//update each pixels
-		for(int x=0; x<this.getWidth(); x++){
-			for(int y=0; y<this.getHeight(); y++) {
-				Pixel pixel = newPicture.getPixel(x,y);
-				pixel.setColor(getBlurColor(this, x, y, blurThreshold));
-			}
+		//a negative square holds no pixels, which leaves every pixel black
+		if (blurThreshold < 0) {
+			newPicture.setAllPixelsToAColor(Color.black);
+			return newPicture;
 		}
+
+		BoxBlur.blur(this, newPicture, blurThreshold, traversal);
 		return newPicture;
 	}
 
@@ -1126,40 +1487,32 @@ public class Picture extends SimplePicture
 	 * 	the new color provided. 
 	 */
 	public Picture paintBucket(int x, int y, int threshold, Color newColor) {
-		Picture paintedPicture = new Picture(this);
-		Pixel Pixel = paintedPicture.getPixel(x, y);
-		Color Color = Pixel.getColor();
-		Pixel.setColor(newColor);
-
-		//paint connected pixels (up,down,left,right,four corners)
-		paintedPicture.paintPixels(x + 1, y, threshold, Color, newColor);
-		paintedPicture.paintPixels(x - 1, y, threshold, Color, newColor);
-		paintedPicture.paintPixels(x, y + 1, threshold, Color, newColor);
-		paintedPicture.paintPixels(x, y - 1, threshold, Color, newColor);
-		paintedPicture.paintPixels(x + 1, y + 1, threshold, Color, newColor);
-		paintedPicture.paintPixels(x + 1, y - 1, threshold, Color, newColor);
-		paintedPicture.paintPixels(x - 1, y + 1, threshold, Color, newColor);
-		paintedPicture.paintPixels(x - 1, y - 1, threshold, Color, newColor);
+		Picture paintedPicture = filterCopy();
+		int color = this.getBasicPixel(x, y);
+
+		//paint connected pixels (up,down,left,right,four corners), comparing
+		//the original colors to the color of the selected pixel
+		FloodFill.fill(this, paintedPicture, x, y, color, threshold,
+				newColor.getRGB());
+		paintedPicture.setBasicPixel(x, y, newColor.getRGB());
 
 		return paintedPicture;
 	}
 
+	/**
+	 * Paints the pixels connected to (x, y), including (x, y) itself, whose
+	 * 	colors are within threshold of the color provided. Nothing is painted
+	 * 	if (x, y) is outside of this Picture or not within threshold.
+	 *
+	 * @param x x-coordinate of the first pixel to paint.
+	 * @param y y-coordinate of the first pixel to paint.
+	 * @param threshold Threshold within which to paint pixels.
+	 * @param Color Color to compare the pixels to.
+	 * @param newColor New color to color pixels.
+	 */
 	public void paintPixels(int x, int y, int threshold, Color Color, Color newColor){
-		if(x < 0 || y < 0 || x >= this.getWidth() || y >= this.getHeight()) return;
-		Pixel currentPixel = this.getPixel(x, y);
-
-		//recursively paint the neighbourhood pixels
-		if(currentPixel.colorDistance(Color) > 0 && currentPixel.colorDistance(Color) <= threshold){
-			currentPixel.setColor(newColor);
-			this.paintPixels(x + 1, y, threshold, Color, newColor);
-			this.paintPixels(x - 1, y, threshold, Color, newColor);
-			this.paintPixels(x, y + 1, threshold, Color, newColor);
-			this.paintPixels(x, y - 1, threshold, Color, newColor);
-			this.paintPixels(x + 1, y + 1, threshold, Color, newColor);
-			this.paintPixels(x + 1, y - 1, threshold, Color, newColor);
-			this.paintPixels(x - 1, y + 1, threshold, Color, newColor);
-			this.paintPixels(x - 1, y - 1, threshold, Color, newColor);
-		}
+		FloodFill.fill(this, this, x, y, Color.getRGB(), threshold,
+				newColor.getRGB());
 	}
 
 	//////////////////////////////// Main Method //////////////////////////////////
@@ -0,0 +1,361 @@
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class that compares two pictures pixel by pixel, for visual regression
+ * 	tests of filter output: it counts the pixels that changed by more than a
+ * 	tolerance, measures how much they changed, and finds the rectangles
+ * 	around the regions that changed.
+ *
+ * A pixel has changed if one of its channels (red, green or blue) differs by
+ * 	more than the tolerance between the two pictures; with a tolerance of 0,
+ * 	every difference counts, as in Picture.showDifferences. Changed pixels
+ * 	that touch on a side or on a corner make up a region, and each region
+ * 	is reported as its bounding box.
+ *
+ * The pictures are compared a band of rows at a time, on as many threads as
+ * 	the PixelTraversal of the PictureDiff says, reading each row with
+ * 	SimplePicture.getRow so that neither picture is modified or moved on the
+ * 	heap. No picture is made unless an Output other than NONE is asked for.
+ *
+ * 	PictureDiff.Result result = new PictureDiff()
+ * 			.withTolerance(2)
+ * 			.withTraversal(PixelTraversal.parallel(4))
+ * 			.compare(expected, actual);
+ * 	if (!result.isIdentical())
+ * 		System.out.println(result + " in " + result.getRegions());
+ *
+ */
+public class PictureDiff
+{
+
+	/**
+	 * What picture a comparison makes, if any.
+	 */
+	public enum Output {
+		/** No picture; only the statistics and regions are computed. */
+		NONE,
+		/** The absolute difference of each channel, at every pixel. */
+		DIFFERENCE,
+		/** A copy of the first picture with the changed pixels in red. */
+		HIGHLIGHT
+	}
+
+	/////////////////////////// Static Variables //////////////////////////////
+
+	/** The color of changed pixels in a HIGHLIGHT picture. */
+	private static final int HIGHLIGHT_RGB = 0xff0000;
+
+	////////////////////////////// Fields /////////////////////////////////////
+
+	private final int tolerance;
+	private final PixelTraversal traversal;
+	private final Output output;
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	/**
+	 * Creates a PictureDiff counting every difference as a change, on the
+	 * 	calling thread, without making a picture.
+	 */
+	public PictureDiff() {
+		this(0, PixelTraversal.ROW_MAJOR, Output.NONE);
+	}
+
+	private PictureDiff(int tolerance, PixelTraversal traversal,
+			Output output) {
+		this.tolerance = tolerance;
+		// bands must be made of whole rows for the regions to be found
+		this.traversal = traversal.withTileSize(0, 0);
+		this.output = output;
+	}
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * @param tolerance The largest difference of a channel that does not
+	 * 	count as a change, from 0 to 255.
+	 * @return A PictureDiff like this one, with the tolerance provided.
+	 */
+	public PictureDiff withTolerance(int tolerance) {
+		if (tolerance < 0 || tolerance > 255)
+			throw new IllegalArgumentException(
+					"The tolerance must be between 0 and 255: " + tolerance);
+		return new PictureDiff(tolerance, traversal, output);
+	}
+
+	/**
+	 * @param traversal The PixelTraversal whose parallelism the comparison
+	 * 	uses; its tiles are ignored.
+	 * @return A PictureDiff like this one, with the traversal provided.
+	 */
+	public PictureDiff withTraversal(PixelTraversal traversal) {
+		return new PictureDiff(tolerance, traversal, output);
+	}
+
+	/**
+	 * @param output The picture comparisons make.
+	 * @return A PictureDiff like this one, with the output provided.
+	 */
+	public PictureDiff withOutput(Output output) {
+		return new PictureDiff(tolerance, traversal, output);
+	}
+
+	/**
+	 * Compares a picture with the top left corner of another one.
+	 *
+	 * @param picture The picture to compare; the output picture, if any, is
+	 * 	the same size.
+	 * @param picture2 The picture to compare it to, at least as large.
+	 * @return The statistics, regions and output picture of the comparison.
+	 * @throws IllegalArgumentException If picture2 is smaller than picture.
+	 */
+	public Result compare(Picture picture, Picture picture2) {
+		int width = picture.getWidth();
+		int height = picture.getHeight();
+		if (picture2.getWidth() < width || picture2.getHeight() < height)
+			throw new IllegalArgumentException("Cannot compare a " + width
+					+ "x" + height + " picture to a smaller one");
+
+		Picture outputPicture = null;
+		int[] outputPixels = null;
+		if (output == Output.HIGHLIGHT) {
+			outputPicture = new Picture(picture, picture.getRasterScope());
+		} else if (output == Output.DIFFERENCE) {
+			outputPicture = new Picture(width, height, picture.getRasterScope());
+			outputPicture.setTraversal(picture.getTraversal());
+		}
+		if (outputPicture != null)
+			outputPixels = outputPicture.getRasterData();
+		int[] pixels = outputPixels;
+
+		Result result = new Result(width * (long) height);
+		int[][] runs = new int[height][];
+		traversal.forEachRegion(width, height, (xStart, yStart, xEnd, yEnd) -> {
+			int[] row = new int[width];
+			int[] row2 = new int[width];
+			int[] rowRuns = new int[8];
+			long changed = 0, squaredError = 0;
+			int maxDelta = 0;
+			for (int y = yStart; y < yEnd; y++) {
+				picture.getRow(y, row);
+				picture2.getRegion(0, y, width, 1, row2, 0);
+				int runCount = 0;
+				int runStart = -1;
+				for (int x = 0; x < width; x++) {
+					int rgb = row[x], rgb2 = row2[x];
+					int red = Math.abs((rgb >> 16 & 0xff) - (rgb2 >> 16 & 0xff));
+					int green = Math.abs((rgb >> 8 & 0xff) - (rgb2 >> 8 & 0xff));
+					int blue = Math.abs((rgb & 0xff) - (rgb2 & 0xff));
+					int delta = Math.max(red, Math.max(green, blue));
+					squaredError += red * red + green * green + blue * blue;
+					if (delta > maxDelta)
+						maxDelta = delta;
+					if (pixels != null && output == Output.DIFFERENCE)
+						pixels[y * width + x] = red << 16 | green << 8 | blue;
+
+					if (delta > tolerance) {
+						changed++;
+						if (pixels != null && output == Output.HIGHLIGHT)
+							pixels[y * width + x] = HIGHLIGHT_RGB;
+						if (runStart < 0)
+							runStart = x;
+					} else if (runStart >= 0) {
+						rowRuns = addRun(rowRuns, runCount++, runStart, x);
+						runStart = -1;
+					}
+				}
+				if (runStart >= 0)
+					rowRuns = addRun(rowRuns, runCount++, runStart, width);
+				if (runCount > 0)
+					runs[y] = Arrays.copyOf(rowRuns, 2 * runCount);
+			}
+			result.add(changed, maxDelta, squaredError);
+		});
+
+		if (outputPicture != null)
+			outputPicture.rasterChanged();
+		result.output = outputPicture;
+		result.regions = findRegions(runs);
+		return result;
+	}
+
+	/**
+	 * Stores the run of changed pixels from start (inclusive) to end
+	 * 	(exclusive) as the index-th run of a row, growing the array if needed.
+	 *
+	 * @return The array holding the runs.
+	 */
+	private static int[] addRun(int[] runs, int index, int start, int end) {
+		if (2 * index + 2 > runs.length)
+			runs = Arrays.copyOf(runs, 2 * runs.length);
+		runs[2 * index] = start;
+		runs[2 * index + 1] = end;
+		return runs;
+	}
+
+	/**
+	 * Finds the regions of changed pixels, by joining the runs of each row
+	 * 	with the runs of the row above that they touch, with a union-find.
+	 *
+	 * @param runs The start and end of the runs of changed pixels of each
+	 * 	row, or null for a row with none.
+	 * @return The bounding box of each region, in the order of their
+	 * 	topmost, then leftmost, run.
+	 */
+	private static List<Rectangle> findRegions(int[][] runs) {
+		// number the runs, row by row
+		int[] firstRun = new int[runs.length + 1];
+		for (int y = 0; y < runs.length; y++)
+			firstRun[y + 1] = firstRun[y]
+					+ (runs[y] == null ? 0 : runs[y].length / 2);
+		int runCount = firstRun[runs.length];
+		if (runCount == 0)
+			return Collections.emptyList();
+
+		int[] parent = new int[runCount];
+		for (int i = 0; i < runCount; i++)
+			parent[i] = i;
+		for (int y = 1; y < runs.length; y++) {
+			int[] above = runs[y - 1], current = runs[y];
+			if (above == null || current == null)
+				continue;
+			// both rows are sorted, so walk them together; runs touch if
+			// they overlap once widened by a pixel for the corners
+			int i = 0, j = 0;
+			while (i < above.length && j < current.length) {
+				if (above[i] <= current[j + 1] && current[j] <= above[i + 1])
+					union(parent, firstRun[y - 1] + i / 2, firstRun[y] + j / 2);
+				if (above[i + 1] < current[j + 1])
+					i += 2;
+				else
+					j += 2;
+			}
+		}
+
+		List<Rectangle> regions = new ArrayList<>();
+		int[] regionOf = new int[runCount];
+		Arrays.fill(regionOf, -1);
+		for (int y = 0; y < runs.length; y++) {
+			if (runs[y] == null)
+				continue;
+			for (int k = 0; k < runs[y].length; k += 2) {
+				int root = find(parent, firstRun[y] + k / 2);
+				Rectangle run = new Rectangle(runs[y][k], y,
+						runs[y][k + 1] - runs[y][k], 1);
+				if (regionOf[root] < 0) {
+					regionOf[root] = regions.size();
+					regions.add(run);
+				} else {
+					regions.get(regionOf[root]).add(run);
+				}
+			}
+		}
+		return regions;
+	}
+
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private static void union(int[] parent, int i, int j) {
+		int rootI = find(parent, i), rootJ = find(parent, j);
+		if (rootI != rootJ)
+			parent[Math.max(rootI, rootJ)] = Math.min(rootI, rootJ);
+	}
+
+	/**
+	 * @return A String describing this PictureDiff.
+	 */
+	public String toString() {
+		return "PictureDiff, tolerance " + tolerance + ", output " + output
+				+ ", " + traversal;
+	}
+
+	//////////////////////////////// Result ///////////////////////////////////
+
+	/**
+	 * What a comparison found.
+	 */
+	public static final class Result {
+		private final long pixels;
+		private long changed, squaredError;
+		private int maxDelta;
+		private List<Rectangle> regions;
+		private Picture output;
+
+		private Result(long pixels) {
+			this.pixels = pixels;
+		}
+
+		/** Adds the statistics of a band of rows. */
+		private synchronized void add(long changed, int maxDelta,
+				long squaredError) {
+			this.changed += changed;
+			this.maxDelta = Math.max(this.maxDelta, maxDelta);
+			this.squaredError += squaredError;
+		}
+
+		/** @return The number of pixels compared. */
+		public long getPixels() { return pixels; }
+
+		/** @return The number of pixels that changed by more than the
+		 * 	tolerance. */
+		public synchronized long getChangedPixels() { return changed; }
+
+		/** @return Whether no pixel changed by more than the tolerance. */
+		public boolean isIdentical() { return getChangedPixels() == 0; }
+
+		/** @return The largest difference of a channel, from 0 to 255,
+		 * 	including the differences within the tolerance. */
+		public synchronized int getMaxDelta() { return maxDelta; }
+
+		/**
+		 * @return The mean of the squared differences of every channel of
+		 * 	every pixel.
+		 */
+		public synchronized double getMeanSquaredError() {
+			return pixels == 0 ? 0 : squaredError / (3.0 * pixels);
+		}
+
+		/**
+		 * @return The peak signal-to-noise ratio of the comparison, in
+		 * 	decibels, or positive infinity if the pictures are the same.
+		 */
+		public double getPsnr() {
+			double error = getMeanSquaredError();
+			if (error == 0)
+				return Double.POSITIVE_INFINITY;
+			return 10 * Math.log10(255.0 * 255.0 / error);
+		}
+
+		/**
+		 * @return The bounding boxes of the regions of changed pixels,
+		 * 	top to bottom.
+		 */
+		public List<Rectangle> getRegions() { return regions; }
+
+		/**
+		 * @return The picture the comparison made, or null if its Output
+		 * 	was NONE.
+		 */
+		public Picture getOutput() { return output; }
+
+		/**
+		 * @return A String summarizing the comparison.
+		 */
+		public String toString() {
+			return String.format("%d of %d pixels changed in %d regions,"
+					+ " max delta %d, PSNR %.2f dB", getChangedPixels(), pixels,
+					regions.size(), getMaxDelta(), getPsnr());
+		}
+	}
+
+} // End of PictureDiff class
@@ -171,8 +171,8 @@ public class Pixel
 		int green = newColor.getGreen();
 		int blue = newColor.getBlue();
 
-		// Update the associated picture.
-		updatePicture(this.getAlpha(), red, green, blue);
+		// Update the associated picture; the alpha comes from the picture.
+		updatePicture(255, red, green, blue);
 	}
 
 	/**
@@ -214,8 +214,10 @@ public class Pixel
 		// Set the red value to the corrected value.
 		int red = correctValue(value);
 
-		// Update the pixel value in the picture.
-		updatePicture(getAlpha(), red, getGreen(), getBlue());
+		// Update the pixel value in the picture, reading it only once.
+		int current = picture.getBasicPixel(x, y);
+		updatePicture(extractEightBits(current, 24), red,
+				getGreen(current), getBlue(current));
 	} 
 
 	/**
@@ -227,8 +229,10 @@ public class Pixel
 		// Set the green value to the corrected value.
 		int green = correctValue(value);
 
-		// Update the pixel value in the picture.
-		updatePicture(getAlpha(), getRed(), green, getBlue());
+		// Update the pixel value in the picture, reading it only once.
+		int current = picture.getBasicPixel(x, y);
+		updatePicture(extractEightBits(current, 24), getRed(current),
+				green, getBlue(current));
 	} 
 
 	/**
@@ -240,8 +244,10 @@ public class Pixel
 		// Set the blue value to the corrected value.
 		int blue = correctValue(value);
 
-		// Update the pixel value in the picture.
-		updatePicture(getAlpha(), getRed(), getGreen(), blue);
+		// Update the pixel value in the picture, reading it only once.
+		int current = picture.getBasicPixel(x, y);
+		updatePicture(extractEightBits(current, 24), getRed(current),
+				getGreen(current), blue);
 	} 
 
 	/**
@@ -253,8 +259,10 @@ public class Pixel
 		// Ensure that the alpha is from 0 to 255 .
 		int alpha = correctValue(value);
 
-		// Update the associated picture.
-		updatePicture(alpha, getRed(), getGreen(), getBlue());
+		// Update the associated picture, reading it only once.
+		int current = picture.getBasicPixel(x, y);
+		updatePicture(alpha, getRed(current), getGreen(current),
+				getBlue(current));
 	} 
 
 	/**
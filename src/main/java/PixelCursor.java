@@ -0,0 +1,229 @@
+/**
+ * A reusable, movable reference to one pixel of a SimplePicture. Unlike
+ * 	Pixel, a single PixelCursor can be moved over the whole picture, and all
+ * 	of its getters and setters work on primitive ints, so walking a picture
+ * 	with a PixelCursor does not create any objects per pixel.
+ *
+ * A PixelCursor reads and writes the raster of the SimplePicture directly.
+ * 	If the picture loads a new image, create a new PixelCursor for it. Every
+ * 	write tells the SimplePicture that its raster has changed.
+ *
+ */
+public class PixelCursor
+{
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/** The SimplePicture this PixelCursor moves over. */
+	private SimplePicture picture;
+
+	/** The raster of the SimplePicture. */
+	private int[] raster;
+
+	/** Width and height of the SimplePicture. */
+	private int width, height;
+
+	/** Location of the current pixel; (0,0) is top left. */
+	private int x, y;
+
+	/** Index of the current pixel in the raster. */
+	private int index;
+
+	//////////////////////////// Constructors /////////////////////////////////
+
+	/**
+	 * A constructor that places a new PixelCursor on the top left pixel of
+	 * 	the SimplePicture provided.
+	 *
+	 * @param picture The SimplePicture to move over.
+	 */
+	public PixelCursor(SimplePicture picture) {
+		this.picture = picture;
+		this.raster = picture.getRasterData();
+		this.width = picture.getWidth();
+		this.height = picture.getHeight();
+	}
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * @return The SimplePicture this PixelCursor moves over.
+	 */
+	public SimplePicture getPicture() { return picture; }
+
+	/**
+	 * Moves this PixelCursor to the pixel at (x, y).
+	 *
+	 * @param x The x-coordinate of the pixel.
+	 * @param y The y-coordinate of the pixel.
+	 * @return This PixelCursor.
+	 */
+	public PixelCursor moveTo(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			throw new ArrayIndexOutOfBoundsException(
+					"Coordinate out of bounds!");
+		this.x = x;
+		this.y = y;
+		this.index = y * width + x;
+		return this;
+	}
+
+	/**
+	 * Moves this PixelCursor to the next pixel, left to right and then top
+	 * 	to bottom. Moving past the last pixel of a row moves to the first
+	 * 	pixel of the following row.
+	 */
+	public void next() {
+		index++;
+		if (++x == width) {
+			x = 0;
+			y++;
+		}
+	}
+
+	/**
+	 * @return The x location of the current pixel.
+	 */
+	public int getX() { return x; }
+
+	/**
+	 * @return The y location of the current pixel.
+	 */
+	public int getY() { return y; }
+
+	/**
+	 * @return The color of the current pixel as a packed int, with red,
+	 * 	green and blue each taking 8 bits and the top 8 bits set to 0.
+	 */
+	public int getRGB() { return raster[index]; }
+
+	/**
+	 * @return The amount of alpha at the current pixel. SimplePictures are
+	 * 	always opaque, so this is always 255.
+	 */
+	public int getAlpha() { return 255; }
+
+	/**
+	 * @return The amount of red at the current pixel, from 0 to 255.
+	 */
+	public int getRed() { return (raster[index] >> 16) & 0xff; }
+
+	/**
+	 * @return The amount of green at the current pixel, from 0 to 255.
+	 */
+	public int getGreen() { return (raster[index] >> 8) & 0xff; }
+
+	/**
+	 * @return The amount of blue at the current pixel, from 0 to 255.
+	 */
+	public int getBlue() { return raster[index] & 0xff; }
+
+	/**
+	 * @return The average of the red, green, and blue values of the
+	 * 	current pixel, rounded down.
+	 */
+	public int getAverage() {
+		int value = raster[index];
+		return (((value >> 16) & 0xff) + ((value >> 8) & 0xff)
+				+ (value & 0xff)) / 3;
+	}
+
+	/**
+	 * Sets the color of the current pixel.
+	 *
+	 * @param rgb The new color as a packed int; the top 8 bits are ignored.
+	 */
+	public void setRGB(int rgb) {
+		raster[index] = rgb & 0xffffff;
+		picture.rasterChanged();
+	}
+
+	/**
+	 * Sets the color of the current pixel. Each component is corrected to be
+	 * 	within 0 and 255.
+	 *
+	 * @param red The new red value.
+	 * @param green The new green value.
+	 * @param blue The new blue value.
+	 */
+	public void setRGB(int red, int green, int blue) {
+		raster[index] = (correctValue(red) << 16)
+				| (correctValue(green) << 8) | correctValue(blue);
+		picture.rasterChanged();
+	}
+
+	/**
+	 * Sets the red component of the current pixel, corrected to be within
+	 * 	0 and 255.
+	 *
+	 * @param value The new red value.
+	 */
+	public void setRed(int value) {
+		raster[index] = (raster[index] & 0x00ffff) | (correctValue(value) << 16);
+		picture.rasterChanged();
+	}
+
+	/**
+	 * Sets the green component of the current pixel, corrected to be within
+	 * 	0 and 255.
+	 *
+	 * @param value The new green value.
+	 */
+	public void setGreen(int value) {
+		raster[index] = (raster[index] & 0xff00ff) | (correctValue(value) << 8);
+		picture.rasterChanged();
+	}
+
+	/**
+	 * Sets the blue component of the current pixel, corrected to be within
+	 * 	0 and 255.
+	 *
+	 * @param value The new blue value.
+	 */
+	public void setBlue(int value) {
+		raster[index] = (raster[index] & 0xffff00) | correctValue(value);
+		picture.rasterChanged();
+	}
+
+	/**
+	 * Obtains the distance between the color of the current pixel and the
+	 * 	color provided, in the same way as Pixel.colorDistance.
+	 *
+	 * @param red The red value to compare to.
+	 * @param green The green value to compare to.
+	 * @param blue The blue value to compare to.
+	 * @return The distance between the two colors.
+	 */
+	public double colorDistance(int red, int green, int blue) {
+		double redDistance = getRed() - red;
+		double greenDistance = getGreen() - green;
+		double blueDistance = getBlue() - blue;
+		return Math.sqrt(redDistance * redDistance +
+				greenDistance * greenDistance +
+				blueDistance * blueDistance);
+	}
+
+	/**
+	 * Corrects a color value to be within 0 and 255.
+	 *
+	 * @param value The value to correct.
+	 * @return A value between 0 and 255.
+	 */
+	private static int correctValue(int value) {
+		if (value < 0)
+			return 0;
+		if (value > 255)
+			return 255;
+		return value;
+	}
+
+	/**
+	 * @return A String with information about the current pixel.
+	 */
+	public String toString() {
+		return "PixelCursor at (" + x + ", " + y + ") has color components " +
+		"red=" + getRed() + " green=" + getGreen() +
+		" blue=" + getBlue();
+	}
+
+} // End of PixelCursor class
@@ -0,0 +1,268 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A class that decides the order in which the pixels of a picture are
+ * 	visited. Pictures are stored row by row, so pixels are always visited
+ * 	left to right within a row and rows top to bottom; walking down the
+ * 	columns instead touches a different part of memory on every pixel and
+ * 	is much slower on wide pictures.
+ *
+ * A PixelTraversal can optionally split the picture into tiles. Each tile is
+ * 	still visited row by row, but the tiles are small enough that the rows of
+ * 	a tile stay in the cache. This matters for filters that read or write a
+ * 	picture column by column, such as rotations.
+ *
+ * The work itself is given as a Kernel, which is called once per region
+ * 	(the whole picture, or one tile) and loops over the pixels of that region.
+ *
+ * A PixelTraversal with a parallelism above 1 splits the picture into bands
+ * 	of rows and runs the kernel on several bands at once, on a ForkJoinPool
+ * 	with that many threads. Kernels must then only write the pixels of their
+ * 	own region, which every per-pixel filter does; the result is exactly the
+ * 	same as when the regions are visited one after the other.
+ *
+ */
+public class PixelTraversal
+{
+
+	/**
+	 * The work done on one rectangular region of a picture. The region
+	 * 	covers columns xStart (inclusive) to xEnd (exclusive) and rows
+	 * 	yStart (inclusive) to yEnd (exclusive). Implementations should
+	 * 	loop over y in the outer loop and x in the inner loop.
+	 */
+	public interface Kernel {
+		void apply(int xStart, int yStart, int xEnd, int yEnd);
+	}
+
+	/////////////////////////// Static Variables //////////////////////////////
+
+	/** Visits the whole picture as a single region, row by row. */
+	public static final PixelTraversal ROW_MAJOR = new PixelTraversal(0, 0, 1);
+
+	/** Tile size used by filters that read or write column by column. */
+	public static final int DEFAULT_TILE_SIZE = 64;
+
+	/**
+	 * Number of bands handed out per thread, so that threads that finish
+	 * 	early can take over work from the others.
+	 */
+	private static final int BANDS_PER_THREAD = 4;
+
+	/** The ForkJoinPools in use, one per parallelism level. */
+	private static final Map<Integer, ForkJoinPool> pools =
+			new HashMap<Integer, ForkJoinPool>();
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/** Size of the tiles; 0 means that tiles span the whole picture. */
+	private final int tileWidth, tileHeight;
+
+	/** Number of threads to use; 1 means that regions are visited in order. */
+	private final int parallelism;
+
+	//////////////////////////// Constructors /////////////////////////////////
+
+	/**
+	 * Creates a PixelTraversal with the tile size and parallelism provided.
+	 *
+	 * @param tileWidth The width of a tile, or 0 for the whole width.
+	 * @param tileHeight The height of a tile, or 0 for the whole height.
+	 * @param parallelism The number of threads to use.
+	 */
+	private PixelTraversal(int tileWidth, int tileHeight, int parallelism) {
+		if (tileWidth < 0 || tileHeight < 0)
+			throw new IllegalArgumentException("Tile size cannot be negative: "
+					+ tileWidth + "x" + tileHeight);
+		if (parallelism < 1)
+			throw new IllegalArgumentException(
+					"Parallelism must be at least 1: " + parallelism);
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+		this.parallelism = parallelism;
+	}
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * @param tileWidth The width of a tile, or 0 for the whole width.
+	 * @param tileHeight The height of a tile, or 0 for the whole height.
+	 * @return A PixelTraversal that visits the picture tile by tile.
+	 */
+	public static PixelTraversal tiled(int tileWidth, int tileHeight) {
+		return new PixelTraversal(tileWidth, tileHeight, 1);
+	}
+
+	/**
+	 * @param parallelism The number of threads to use.
+	 * @return A PixelTraversal that visits bands of rows on that many
+	 * 	threads at once.
+	 */
+	public static PixelTraversal parallel(int parallelism) {
+		return new PixelTraversal(0, 0, parallelism);
+	}
+
+	/**
+	 * @param tileWidth The width of a tile, or 0 for the whole width.
+	 * @param tileHeight The height of a tile, or 0 for the whole height.
+	 * @return A PixelTraversal like this one, but with the tile size provided.
+	 */
+	public PixelTraversal withTileSize(int tileWidth, int tileHeight) {
+		return new PixelTraversal(tileWidth, tileHeight, parallelism);
+	}
+
+	/**
+	 * @param parallelism The number of threads to use; 1 to visit the
+	 * 	regions one after the other on the calling thread.
+	 * @return A PixelTraversal like this one, but with the parallelism
+	 * 	provided.
+	 */
+	public PixelTraversal withParallelism(int parallelism) {
+		return new PixelTraversal(tileWidth, tileHeight, parallelism);
+	}
+
+	/**
+	 * @return The number of threads this PixelTraversal uses.
+	 */
+	public int getParallelism() { return parallelism; }
+
+	/**
+	 * @return The width of a tile, or 0 if tiles span the whole width.
+	 */
+	public int getTileWidth() { return tileWidth; }
+
+	/**
+	 * @return The height of a tile, or 0 if tiles span the whole height.
+	 */
+	public int getTileHeight() { return tileHeight; }
+
+	/**
+	 * @return Whether this PixelTraversal splits pictures into tiles.
+	 */
+	public boolean isTiled() {
+		return tileWidth > 0 || tileHeight > 0;
+	}
+
+	/**
+	 * @return This PixelTraversal if it is already tiled; otherwise, a
+	 * 	PixelTraversal using DEFAULT_TILE_SIZE square tiles.
+	 */
+	public PixelTraversal withDefaultTiles() {
+		if (isTiled())
+			return this;
+		return withTileSize(DEFAULT_TILE_SIZE, DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * Runs the kernel provided over every pixel of a width by height
+	 * 	picture, one region at a time. Tiles are visited left to right and
+	 * 	then top to bottom.
+	 *
+	 * @param width The width of the picture.
+	 * @param height The height of the picture.
+	 * @param kernel The work to do on each region.
+	 */
+	public void forEachRegion(int width, int height, Kernel kernel) {
+		if (width <= 0 || height <= 0)
+			return;
+
+		if (parallelism == 1 || height == 1) {
+			forEachRegion(width, 0, height, kernel);
+			return;
+		}
+
+		// Bands are made of whole rows of tiles, or of single rows if
+		// the tiles span the whole height.
+		int unit = tileHeight > 0 ? tileHeight : 1;
+		int units = (height + unit - 1) / unit;
+		int bands = parallelism * BANDS_PER_THREAD;
+		int unitsPerBand = Math.max(1, (units + bands - 1) / bands);
+		pool(parallelism).invoke(new Band(width, height, unit, unitsPerBand,
+				0, units, kernel));
+	}
+
+	/**
+	 * Runs the kernel provided over rows yStart (inclusive) to yEnd
+	 * 	(exclusive) of a picture of the given width, one region at a time,
+	 * 	on the calling thread.
+	 */
+	private void forEachRegion(int width, int yStart, int yEnd, Kernel kernel) {
+		int stepX = tileWidth > 0 ? tileWidth : width;
+		int stepY = tileHeight > 0 ? tileHeight : yEnd - yStart;
+
+		for (int regionY = yStart; regionY < yEnd; regionY += stepY) {
+			int regionYEnd = Math.min(yEnd, regionY + stepY);
+			for (int xStart = 0; xStart < width; xStart += stepX) {
+				int xEnd = Math.min(width, xStart + stepX);
+				kernel.apply(xStart, regionY, xEnd, regionYEnd);
+			}
+		}
+	}
+
+	/**
+	 * @return The ForkJoinPool with the parallelism provided, creating it
+	 * 	the first time it is needed.
+	 */
+	private static synchronized ForkJoinPool pool(int parallelism) {
+		ForkJoinPool pool = pools.get(parallelism);
+		if (pool == null) {
+			pool = new ForkJoinPool(parallelism);
+			pools.put(parallelism, pool);
+		}
+		return pool;
+	}
+
+	/**
+	 * A band of rows of a picture, measured in units of whole rows of
+	 * 	tiles. Bands that are too large are split in half.
+	 */
+	private class Band extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int width, height, unit, unitsPerBand;
+		private final int unitStart, unitEnd;
+		private final Kernel kernel;
+
+		Band(int width, int height, int unit, int unitsPerBand,
+				int unitStart, int unitEnd, Kernel kernel) {
+			this.width = width;
+			this.height = height;
+			this.unit = unit;
+			this.unitsPerBand = unitsPerBand;
+			this.unitStart = unitStart;
+			this.unitEnd = unitEnd;
+			this.kernel = kernel;
+		}
+
+		protected void compute() {
+			if (unitEnd - unitStart <= unitsPerBand) {
+				forEachRegion(width, unitStart * unit,
+						Math.min(height, unitEnd * unit), kernel);
+				return;
+			}
+			int middle = (unitStart + unitEnd) >>> 1;
+			invokeAll(new Band(width, height, unit, unitsPerBand,
+					unitStart, middle, kernel),
+					new Band(width, height, unit, unitsPerBand,
+					middle, unitEnd, kernel));
+		}
+	}
+
+	/**
+	 * @return A String describing this PixelTraversal.
+	 */
+	public String toString() {
+		String output = "PixelTraversal, ";
+		if (!isTiled())
+			output += "row major";
+		else
+			output += "tiles of " + tileWidth + "x" + tileHeight;
+		if (parallelism > 1)
+			output += ", " + parallelism + " threads";
+		return output;
+	}
+
+} // End of PixelTraversal class
@@ -0,0 +1,360 @@
+import java.awt.image.BufferedImage;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A class that recycles the rasters of pictures of the same size, so that
+ * 	processing many pictures of one size does not allocate a new raster for
+ * 	every picture and every filter.
+ *
+ * Rasters are drawn from the pool through a Scope, opened with
+ * 	try-with-resources. A Picture taken into a Scope (with picture, copy or
+ * 	adopt) gets its raster from the pool, and so does every Picture its
+ * 	filters make, and the Pictures theirs make. When the Scope is closed,
+ * 	all these rasters go back to the pool, and the Pictures can no longer
+ * 	be used (their methods throw IllegalStateException), except for the
+ * 	Pictures passed to keep, which leave the Scope with their raster.
+ * 	Copies made with the copy constructors, new Picture(picture), are not
+ * 	pooled either, so a snapshot (or the copy explore shows) outlives the
+ * 	Scope; copying a Picture of a closed Scope throws IllegalStateException.
+ *
+ * 	try (RasterPool.Scope scope = pool.open()) {
+ * 		Picture picture = scope.adopt(new Picture(fileName));
+ * 		Picture result = scope.keep(picture.grayscale().blur(2).negate());
+ * 		...
+ * 	} // the picture loaded, and the grayscale and blurred ones, are recycled
+ *
+ * At most a few rasters of each size are kept by the pool (see
+ * 	maxPerSize); rasters returned beyond that are left to the garbage
+ * 	collector.
+ *
+ * With leak detection on, every Scope remembers where it was opened, and
+ * 	a Scope that is garbage collected without having been closed is
+ * 	reported on System.err with that stack trace, as are the Scopes still
+ * 	open when the pool is closed. This costs a stack trace per Scope, so it
+ * 	is meant for debugging.
+ *
+ */
+public class RasterPool implements AutoCloseable
+{
+
+	/////////////////////////// Static Variables //////////////////////////////
+
+	/** The number of rasters of each size kept by default. */
+	public static final int DEFAULT_MAX_PER_SIZE = 4;
+
+	////////////////////////////// Fields /////////////////////////////////////
+
+	private final int maxPerSize;
+	private final boolean leakDetection;
+
+	/** The rasters waiting to be drawn, by size. */
+	private final Map<Long, Deque<BufferedImage>> free = new HashMap<>();
+
+	private long hits, misses, leased;
+
+	/** With leak detection, the Scopes not closed yet, and where they were
+	 * 	opened. */
+	private final ReferenceQueue<Scope> collected = new ReferenceQueue<>();
+	private final Set<ScopeReference> openScopes = new HashSet<>();
+	private int leaks;
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	/**
+	 * Creates a RasterPool keeping DEFAULT_MAX_PER_SIZE rasters of each
+	 * 	size, without leak detection.
+	 */
+	public RasterPool() {
+		this(DEFAULT_MAX_PER_SIZE, false);
+	}
+
+	/**
+	 * Creates a RasterPool.
+	 *
+	 * @param maxPerSize The number of rasters of each size the pool keeps.
+	 * @param leakDetection Whether Scopes that are never closed are reported.
+	 */
+	public RasterPool(int maxPerSize, boolean leakDetection) {
+		if (maxPerSize < 0)
+			throw new IllegalArgumentException(
+					"maxPerSize cannot be negative: " + maxPerSize);
+		this.maxPerSize = maxPerSize;
+		this.leakDetection = leakDetection;
+	}
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * @return A new Scope drawing rasters from this pool; close it when
+	 * 	done with its Pictures.
+	 */
+	public Scope open() {
+		Scope scope = new Scope();
+		if (leakDetection) {
+			synchronized (this) {
+				pollLeaks();
+				openScopes.add(new ScopeReference(scope, collected));
+			}
+		}
+		return scope;
+	}
+
+	/**
+	 * @return A TYPE_INT_RGB image of the size provided, from the pool if
+	 * 	one is free. Its pixels are left as they were.
+	 */
+	private synchronized BufferedImage acquire(int width, int height) {
+		leased++;
+		Deque<BufferedImage> images = free.get(key(width, height));
+		if (images != null && !images.isEmpty()) {
+			hits++;
+			return images.pop();
+		}
+		misses++;
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+	}
+
+	/**
+	 * Gives back a raster that was acquired, or null if it was lost.
+	 */
+	private synchronized void release(BufferedImage image) {
+		leased--;
+		if (image == null || image.getType() != BufferedImage.TYPE_INT_RGB)
+			return;
+		Deque<BufferedImage> images = free.computeIfAbsent(
+				key(image.getWidth(), image.getHeight()), key -> new ArrayDeque<>());
+		if (images.size() < maxPerSize)
+			images.push(image);
+	}
+
+	private static long key(int width, int height) {
+		return ((long) width << 32) | height;
+	}
+
+	/**
+	 * @return The number of rasters drawn from the pool instead of being
+	 * 	allocated.
+	 */
+	public synchronized long getHits() { return hits; }
+
+	/**
+	 * @return The number of rasters that had to be allocated.
+	 */
+	public synchronized long getMisses() { return misses; }
+
+	/**
+	 * @return The number of rasters in use by the Pictures of open Scopes.
+	 */
+	public synchronized long getLeased() { return leased; }
+
+	/**
+	 * @return The number of bytes of the rasters waiting in the pool.
+	 */
+	public synchronized long getFreeBytes() {
+		long bytes = 0;
+		for (Deque<BufferedImage> images : free.values())
+			for (BufferedImage image : images)
+				bytes += 4L * image.getWidth() * image.getHeight();
+		return bytes;
+	}
+
+	/**
+	 * Reports the Scopes that were garbage collected without being closed
+	 * 	since the last check. Only works with leak detection on.
+	 *
+	 * @return The number of leaked Scopes found so far.
+	 */
+	public synchronized int checkLeaks() {
+		pollLeaks();
+		return leaks;
+	}
+
+	private void pollLeaks() {
+		Reference<? extends Scope> reference;
+		while ((reference = collected.poll()) != null) {
+			ScopeReference scope = (ScopeReference) reference;
+			if (openScopes.remove(scope))
+				reportLeak(scope, "was never closed");
+		}
+	}
+
+	private void reportLeak(ScopeReference scope, String problem) {
+		leaks++;
+		System.err.println("RasterPool: a Scope " + problem + "; "
+				+ scope.state.pictures + " rasters were not returned."
+				+ " It was opened here:");
+		scope.state.openedAt.printStackTrace();
+	}
+
+	/**
+	 * Empties the pool. With leak detection on, the Scopes still open are
+	 * 	reported as leaks.
+	 */
+	public synchronized void close() {
+		if (leakDetection) {
+			pollLeaks();
+			for (ScopeReference scope : openScopes)
+				reportLeak(scope, "was still open when its pool was closed");
+			openScopes.clear();
+		}
+		free.clear();
+	}
+
+	public synchronized String toString() {
+		return "RasterPool[" + hits + " hits, " + misses + " misses, " + leased
+				+ " leased, " + getFreeBytes() + " bytes free]";
+	}
+
+	//////////////////////////////// Scope ////////////////////////////////////
+
+	/**
+	 * A set of Pictures whose rasters come from a RasterPool and go back to
+	 * 	it when the Scope is closed.
+	 */
+	public final class Scope implements AutoCloseable {
+		private final List<SimplePicture> pictures = new ArrayList<>();
+		private final ScopeState state = new ScopeState(leakDetection);
+		private boolean closed;
+
+		private Scope() {
+		}
+
+		/**
+		 * @return A new white Picture of the size provided, in this Scope.
+		 */
+		public Picture picture(int width, int height) {
+			return new Picture(width, height, this);
+		}
+
+		/**
+		 * @return A new Picture in this Scope, holding a copy of the picture
+		 * 	provided.
+		 */
+		public Picture copy(SimplePicture source) {
+			Picture copy = picture(source.getWidth(), source.getHeight());
+			copy.copyPicture(source);
+			return copy;
+		}
+
+		/**
+		 * Takes a Picture into this Scope: its raster goes to the pool when
+		 * 	the Scope is closed, and its filters draw from the pool.
+		 *
+		 * @param picture A Picture in no Scope.
+		 * @return The picture provided.
+		 */
+		public synchronized <P extends SimplePicture> P adopt(P picture) {
+			checkOpen();
+			picture.enterRasterScope(this);
+			synchronized (RasterPool.this) {
+				leased++;
+			}
+			add(picture);
+			return picture;
+		}
+
+		/**
+		 * Takes a Picture out of this Scope, so that it can still be used
+		 * 	once the Scope is closed. Its raster leaves the pool for good.
+		 *
+		 * @param picture A Picture of this Scope.
+		 * @return The picture provided.
+		 */
+		public synchronized <P extends SimplePicture> P keep(P picture) {
+			checkOpen();
+			if (picture.getRasterScope() != this || !pictures.remove(picture))
+				throw new IllegalArgumentException(picture + " is not in this Scope");
+			picture.leaveRasterScope();
+			state.pictures--;
+			synchronized (RasterPool.this) {
+				leased--;
+			}
+			return picture;
+		}
+
+		/**
+		 * @return A raster of the size provided for a Picture of this
+		 * 	Scope, which records the Picture. Its pixels are left as they
+		 * 	were.
+		 */
+		synchronized BufferedImage acquire(int width, int height,
+				SimplePicture picture) {
+			checkOpen();
+			BufferedImage image = RasterPool.this.acquire(width, height);
+			add(picture);
+			return image;
+		}
+
+		private void add(SimplePicture picture) {
+			pictures.add(picture);
+			state.pictures++;
+		}
+
+		/**
+		 * @return The number of Pictures in this Scope.
+		 */
+		public synchronized int size() {
+			return pictures.size();
+		}
+
+		/**
+		 * Gives the rasters of every Picture of this Scope back to the pool.
+		 * 	The Pictures cannot be used afterwards.
+		 */
+		public synchronized void close() {
+			if (closed)
+				return;
+			closed = true;
+			for (SimplePicture picture : pictures)
+				release(picture.releaseRaster());
+			pictures.clear();
+			state.pictures = 0;
+			if (leakDetection) {
+				synchronized (RasterPool.this) {
+					openScopes.removeIf(reference -> reference.state == state);
+				}
+			}
+		}
+
+		private void checkOpen() {
+			if (closed)
+				throw new IllegalStateException("This Scope is closed");
+		}
+	}
+
+	/**
+	 * What leak detection knows about a Scope; it must not refer to the
+	 * 	Scope, or the Scope would never be collected.
+	 */
+	private static final class ScopeState {
+		final Throwable openedAt;
+		int pictures;
+
+		ScopeState(boolean leakDetection) {
+			openedAt = leakDetection ? new Throwable("Scope opened") : null;
+		}
+	}
+
+	/**
+	 * Enqueued once its Scope has been garbage collected.
+	 */
+	private static final class ScopeReference extends PhantomReference<Scope> {
+		final ScopeState state;
+
+		ScopeReference(Scope scope, ReferenceQueue<Scope> queue) {
+			super(scope, queue);
+			this.state = scope.state;
+		}
+	}
+
+} // End of RasterPool class
@@ -0,0 +1,190 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A class that reads and writes pictures in a raw raster format, meant for
+ * 	intermediate results that are read back by this program: there is
+ * 	nothing to encode or decode, so pictures are saved and loaded at the
+ * 	speed of the disk.
+ *
+ * A raw raster file (extension .raster) is a header of HEADER_SIZE bytes,
+ * 	holding the characters "PRAW", the version of the format, the width
+ * 	and the height, followed by the pixels row by row, each as the packed
+ * 	0x00RRGGBB int SimplePicture keeps in its raster. Every int is stored
+ * 	big-endian.
+ *
+ * Files are written through a FileChannel and read through a memory
+ * 	mapping (see MappedRaster). Only the I/O is mapped: read copies the
+ * 	pixels from the mapping into a new raster on the heap, as loading any
+ * 	other picture does. map instead makes a picture backed by the mapping
+ * 	itself, whose pixels stay off the heap until something needs its
+ * 	raster (see SimplePicture.moveOffHeap).
+ *
+ */
+public class RawRaster
+{
+
+	/////////////////////////// Static Variables //////////////////////////////
+
+	/** The extension of raw raster files. */
+	public static final String EXTENSION = "raster";
+
+	/** The size of the header, in bytes. */
+	public static final int HEADER_SIZE = 16;
+
+	/** "PRAW", the first four bytes of every raw raster file. */
+	private static final int MAGIC = 0x50524157;
+
+	/** The version of the format written by this class. */
+	private static final int VERSION = 1;
+
+	/** The number of pixels written at once. */
+	private static final int BUFFER_PIXELS = 1 << 16;
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * @return Whether the file name provided has the extension of raw
+	 * 	raster files.
+	 */
+	public static boolean isRawRaster(String fileName) {
+		return fileName.toLowerCase().endsWith("." + EXTENSION);
+	}
+
+	/**
+	 * Reads a raw raster file.
+	 *
+	 * @param fileName The name of the file.
+	 * @return A TYPE_INT_RGB BufferedImage holding the pixels of the file.
+	 * @throws IOException If the file cannot be read or is not a raw raster
+	 * 	file.
+	 */
+	public static BufferedImage read(String fileName) throws IOException {
+		try (MappedRaster mapped = MappedRaster.open(fileName, false)) {
+			BufferedImage image = new BufferedImage(mapped.getWidth(),
+					mapped.getHeight(), BufferedImage.TYPE_INT_RGB);
+			int[] raster = ((DataBufferInt) image.getRaster().getDataBuffer())
+					.getData();
+			mapped.getRegion(0, 0, mapped.getWidth(), mapped.getHeight(),
+					raster, 0);
+			return image;
+		}
+	}
+
+	/**
+	 * Maps a raw raster file as a picture. Its pixels are not read: the
+	 * 	picture is off the heap, backed by the mapping of the file, and the
+	 * 	operating system pages the pixels in as they are used. The mapping
+	 * 	is private, so changes made to the picture never reach the file
+	 * 	(use MappedRaster to change a file in place), though the file must
+	 * 	be writable to be mapped that way. Anything that needs the raster of
+	 * 	the picture, such as most filters, copies the pixels onto the heap;
+	 * 	release unmaps the file.
+	 *
+	 * @param fileName The name of the file.
+	 * @return A Picture backed by the file.
+	 * @throws IOException If the file cannot be opened for reading and
+	 * 	writing, is not a raw raster file, or holds more than 2GB of pixels.
+	 */
+	public static Picture map(String fileName) throws IOException {
+		try (FileChannel channel = FileChannel.open(new File(fileName).toPath(),
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			int[] size = readHeader(channel, fileName);
+			long bytes = 4L * size[0] * size[1];
+			if (bytes > Integer.MAX_VALUE)
+				throw new IOException(fileName + " is too large to be mapped"
+						+ " as one picture.");
+			ByteBuffer pixels = channel.map(FileChannel.MapMode.PRIVATE,
+					HEADER_SIZE, bytes).order(ByteOrder.BIG_ENDIAN);
+			return new Picture(fileName, size[0], size[1], pixels);
+		}
+	}
+
+	/**
+	 * Writes a picture to a raw raster file, replacing it if it exists.
+	 *
+	 * @param picture The picture to write.
+	 * @param fileName The name of the file.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static void write(SimplePicture picture, String fileName)
+			throws IOException {
+		try (FileChannel channel = FileChannel.open(new File(fileName).toPath(),
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeHeader(channel, picture.getWidth(), picture.getHeight());
+			channel.position(HEADER_SIZE);
+
+			int[] raster = picture.getRasterData();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(4
+					* Math.min(BUFFER_PIXELS, raster.length))
+					.order(ByteOrder.BIG_ENDIAN);
+			IntBuffer pixels = buffer.asIntBuffer();
+			for (int start = 0; start < raster.length; start += BUFFER_PIXELS) {
+				int count = Math.min(BUFFER_PIXELS, raster.length - start);
+				pixels.clear();
+				pixels.put(raster, start, count);
+				buffer.clear();
+				buffer.limit(4 * count);
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Writes the header of a raw raster file at the start of the channel
+	 * 	provided.
+	 */
+	static void writeHeader(FileChannel channel, int width, int height)
+			throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+				.order(ByteOrder.BIG_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height);
+		header.flip();
+		long position = 0;
+		while (header.hasRemaining())
+			position += channel.write(header, position);
+	}
+
+	/**
+	 * Reads the header of a raw raster file from the channel provided.
+	 *
+	 * @return The width and the height of the raster.
+	 * @throws IOException If the file is not a raw raster file, or is too
+	 * 	short for its size.
+	 */
+	static int[] readHeader(FileChannel channel, String fileName)
+			throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+				.order(ByteOrder.BIG_ENDIAN);
+		long position = 0;
+		while (header.hasRemaining()) {
+			int read = channel.read(header, position);
+			if (read < 0)
+				break;
+			position += read;
+		}
+		header.flip();
+		if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC)
+			throw new IOException(fileName + " is not a raw raster file.");
+		int version = header.getInt();
+		if (version != VERSION)
+			throw new IOException(fileName + " is a raw raster file of version "
+					+ version + ", which cannot be read.");
+		int width = header.getInt();
+		int height = header.getInt();
+		if (width <= 0 || height <= 0
+				|| channel.size() < HEADER_SIZE + 4L * width * height)
+			throw new IOException(fileName + " is a truncated raw raster file.");
+		return new int[] {width, height};
+	}
+
+} // End of RawRaster class
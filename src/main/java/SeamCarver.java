@@ -0,0 +1,401 @@
+/**
+ * A class that removes many seams from a picture, one after the other,
+ * 	without building a new Picture for each seam. Seams can be vertical,
+ * 	making the picture narrower, or horizontal, making it shorter.
+ *
+ * A SeamCarver copies the pixels of a picture once, and keeps the
+ * 	luminosity, energy, and cost of every pixel in buffers of the original
+ * 	size. Removing a vertical seam shifts the end of each row one place to
+ * 	the left; removing a horizontal seam shifts the bottom of each column one
+ * 	place up. Only the pixels next to the seam get a new energy, so only
+ * 	they, and the pixels after them whose cost changes as a result, are
+ * 	recomputed; the rest of the buffers is kept as it is.
+ *
+ * Vertical and horizontal seams have a table of costs each. Removing a seam
+ * 	in one direction shifts the pixels the other table was computed from,
+ * 	so that table is computed again in full the next time it is needed.
+ *
+ * The energies, costs, and seams are the same as those of Picture, and ties
+ * 	are broken in the same way, so removing n vertical seams gives the same
+ * 	picture as calling Picture.carve n times.
+ *
+ */
+public class SeamCarver
+{
+
+	/**
+	 * The cost of the cheapest seam in one direction to each pixel, and the
+	 * 	position across the seam of the previous pixel of that seam.
+	 */
+	private class Costs {
+		final boolean vertical;
+		int[] cost;
+		byte[] parent;
+		boolean valid;
+
+		Costs(boolean vertical) {
+			this.vertical = vertical;
+		}
+
+		/** @return The number of pixels along a seam. */
+		int along() { return vertical ? height : width; }
+
+		/** @return The number of pixels across a seam. */
+		int across() { return vertical ? width : height; }
+
+		/** @return The distance in the buffers between two pixels across. */
+		int step() { return vertical ? 1 : stride; }
+
+		/** @return The index of the pixel at u along and v across. */
+		int index(int u, int v) {
+			return vertical ? u * stride + v : v * stride + u;
+		}
+	}
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/** Distance between the starts of two rows in the buffers. */
+	private final int stride;
+
+	/** Current width and height of the picture. */
+	private int width, height;
+
+	/** The pixels of the picture, as packed RGB ints. */
+	private final int[] pixels;
+
+	/** The luminosity and energy of each pixel. */
+	private final int[] luminosity, energy;
+
+	/** The costs of vertical and horizontal seams. */
+	private final Costs verticalCosts = new Costs(true);
+	private final Costs horizontalCosts = new Costs(false);
+
+	/**
+	 * The index of each pixel in the original picture, y * width + x, or
+	 * 	null if trackOrigins has not been called.
+	 */
+	private int[] origins;
+
+	//////////////////////////// Constructors /////////////////////////////////
+
+	/**
+	 * Creates a SeamCarver working on a copy of the picture provided.
+	 *
+	 * @param picture The picture to carve; it is not modified.
+	 */
+	public SeamCarver(SimplePicture picture) {
+		width = picture.getWidth();
+		height = picture.getHeight();
+		stride = width;
+
+		int size = width * height;
+		pixels = new int[size];
+		luminosity = new int[size];
+		energy = new int[size];
+		picture.getRegion(0, 0, width, height, pixels, 0);
+
+		for (int i = 0; i < size; i++)
+			luminosity[i] = Picture.luminosityOf(pixels[i]);
+		if (canCarve())
+			for (int y = 0; y < height; y++)
+				for (int x = 0; x < width; x++)
+					computeEnergy(x, y);
+	}
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * @return The current width of the picture.
+	 */
+	public int getWidth() { return width; }
+
+	/**
+	 * @return The current height of the picture.
+	 */
+	public int getHeight() { return height; }
+
+	/**
+	 * @return The x-coordinates of the lowest-energy seam running from the
+	 * 	top row to the bottom row, as Picture.computeSeam returns them.
+	 */
+	public int[] findSeam() {
+		return findSeam(verticalCosts);
+	}
+
+	/**
+	 * @return The y-coordinates of the lowest-energy seam running from the
+	 * 	left column to the right column, as
+	 * 	Picture.computeHorizontalSeam returns them.
+	 */
+	public int[] findHorizontalSeam() {
+		return findSeam(horizontalCosts);
+	}
+
+	/**
+	 * Removes the lowest-energy vertical seam, making the picture one pixel
+	 * 	narrower.
+	 */
+	public void removeSeam() {
+		removeSeam(verticalCosts);
+	}
+
+	/**
+	 * Removes the lowest-energy horizontal seam, making the picture one
+	 * 	pixel shorter.
+	 */
+	public void removeHorizontalSeam() {
+		removeSeam(horizontalCosts);
+	}
+
+	/**
+	 * Removes the lowest-energy vertical seam numSeams times.
+	 *
+	 * @param numSeams The number of seams to remove.
+	 */
+	public void removeSeams(int numSeams) {
+		for (int i = 0; i < numSeams; i++)
+			removeSeam();
+	}
+
+	/**
+	 * Starts recording where each pixel was in the picture this SeamCarver
+	 * 	was created from, so that getOrigin can be called. It must be called
+	 * 	before any seam is removed.
+	 */
+	public void trackOrigins() {
+		if (width != stride || origins != null)
+			throw new IllegalStateException(
+					"Origins must be tracked before removing seams");
+		origins = new int[pixels.length];
+		for (int i = 0; i < origins.length; i++)
+			origins[i] = i;
+	}
+
+	/**
+	 * @param x The current x-coordinate of a pixel.
+	 * @param y The current y-coordinate of a pixel.
+	 * @return The index, y * width + x, of the same pixel in the picture
+	 * 	this SeamCarver was created from.
+	 */
+	public int getOrigin(int x, int y) {
+		if (origins == null)
+			throw new IllegalStateException("Origins are not being tracked");
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			throw new ArrayIndexOutOfBoundsException(
+					"Coordinate out of bounds!");
+		return origins[y * stride + x];
+	}
+
+	/**
+	 * Copies the current pixels into the top left corner of a picture.
+	 *
+	 * @param target A picture at least as large as this SeamCarver's.
+	 */
+	public void copyTo(SimplePicture target) {
+		for (int y = 0; y < height; y++)
+			target.setRegion(0, y, width, 1, pixels, y * stride);
+	}
+
+	/**
+	 * @return Whether the picture is large enough for its energies, and so
+	 * 	its seams, to be defined.
+	 */
+	private boolean canCarve() {
+		return width >= 2 && height >= 2;
+	}
+
+	/**
+	 * @return The lowest-energy seam in the direction of the costs provided.
+	 */
+	private int[] findSeam(Costs costs) {
+		if (!canCarve())
+			throw new IllegalStateException("Cannot find a seam in a "
+					+ width + "x" + height + " picture");
+		if (!costs.valid)
+			computeCosts(costs);
+
+		// The first pixel of the last row (or column) with the lowest cost.
+		int along = costs.along();
+		int across = costs.across();
+		int[] cost = costs.cost;
+		int end = 0;
+		for (int v = 1; v < across; v++)
+			if (cost[costs.index(along - 1, v)] < cost[costs.index(along - 1, end)])
+				end = v;
+
+		int[] seam = new int[along];
+		seam[along - 1] = end;
+		for (int u = along - 1; u > 0; u--)
+			seam[u - 1] = seam[u] + costs.parent[costs.index(u, seam[u])];
+		return seam;
+	}
+
+	/**
+	 * Removes the lowest-energy seam in the direction of the costs provided.
+	 */
+	private void removeSeam(Costs costs) {
+		int[] seam = findSeam(costs);
+		Costs other = costs.vertical ? horizontalCosts : verticalCosts;
+		other.valid = false;
+
+		if (costs.vertical)
+			removeVertical(seam);
+		else
+			removeHorizontal(seam);
+		if (!canCarve()) {
+			costs.valid = false;
+			return;
+		}
+
+		// The energy of a pixel only depends on its neighbours to the right
+		// and below (or left and above at the edges), so only pixels next
+		// to the seam get a new energy.
+		int along = costs.along();
+		int across = costs.across();
+		for (int u = 0; u < along; u++) {
+			int vEnd = Math.min(across - 1, seam[u] + 1);
+			for (int v = Math.max(0, seam[u] - 1); v <= vEnd; v++) {
+				if (costs.vertical)
+					computeEnergy(v, u);
+				else
+					computeEnergy(u, v);
+			}
+		}
+
+		// Costs are recomputed near the seam, where the energies or the
+		// pixels before have changed, and after any cost that has changed.
+		int changedStart = 0, changedEnd = -1;
+		for (int u = 0; u < along; u++) {
+			int vStart = seam[u] - 2;
+			int vEnd = seam[u] + 1;
+			if (changedStart <= changedEnd) {
+				vStart = Math.min(vStart, changedStart - 1);
+				vEnd = Math.max(vEnd, changedEnd + 1);
+			}
+			vStart = Math.max(0, vStart);
+			vEnd = Math.min(across - 1, vEnd);
+
+			changedStart = Integer.MAX_VALUE;
+			changedEnd = -1;
+			for (int v = vStart; v <= vEnd; v++) {
+				int previous = costs.cost[costs.index(u, v)];
+				if (computeCost(costs, u, v) != previous) {
+					changedStart = Math.min(changedStart, v);
+					changedEnd = v;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes pixel seam[y] from each row y, along with its luminosity,
+	 * 	energy, origin, and vertical cost.
+	 */
+	private void removeVertical(int[] seam) {
+		int[] cost = verticalCosts.cost;
+		byte[] parent = verticalCosts.parent;
+		for (int y = 0; y < height; y++) {
+			int start = y * stride + seam[y];
+			int length = width - 1 - seam[y];
+			System.arraycopy(pixels, start + 1, pixels, start, length);
+			System.arraycopy(luminosity, start + 1, luminosity, start, length);
+			System.arraycopy(energy, start + 1, energy, start, length);
+			if (origins != null)
+				System.arraycopy(origins, start + 1, origins, start, length);
+			if (verticalCosts.valid) {
+				System.arraycopy(cost, start + 1, cost, start, length);
+				System.arraycopy(parent, start + 1, parent, start, length);
+			}
+		}
+		width--;
+	}
+
+	/**
+	 * Removes pixel seam[x] from each column x, along with its luminosity,
+	 * 	energy, origin, and horizontal cost. The rows are visited top to bottom, so
+	 * 	that the buffers are read in the order they are stored.
+	 */
+	private void removeHorizontal(int[] seam) {
+		int[] cost = horizontalCosts.cost;
+		byte[] parent = horizontalCosts.parent;
+		boolean shiftCosts = horizontalCosts.valid;
+
+		int top = height;
+		for (int x = 0; x < width; x++)
+			top = Math.min(top, seam[x]);
+		for (int y = top; y < height - 1; y++) {
+			int row = y * stride;
+			for (int x = 0; x < width; x++) {
+				if (y < seam[x])
+					continue;
+				int i = row + x;
+				pixels[i] = pixels[i + stride];
+				luminosity[i] = luminosity[i + stride];
+				energy[i] = energy[i + stride];
+				if (origins != null)
+					origins[i] = origins[i + stride];
+				if (shiftCosts) {
+					cost[i] = cost[i + stride];
+					parent[i] = parent[i + stride];
+				}
+			}
+		}
+		height--;
+	}
+
+	/**
+	 * Computes the costs of every pixel in the direction provided.
+	 */
+	private void computeCosts(Costs costs) {
+		if (costs.cost == null) {
+			costs.cost = new int[pixels.length];
+			costs.parent = new byte[pixels.length];
+		}
+		// Each row (or column) depends on the one before it.
+		int along = costs.along();
+		int across = costs.across();
+		for (int u = 0; u < along; u++)
+			for (int v = 0; v < across; v++)
+				computeCost(costs, u, v);
+		costs.valid = true;
+	}
+
+	/**
+	 * Computes the energy of the pixel at (x, y) in the same way as
+	 * 	Picture.energy does.
+	 */
+	private void computeEnergy(int x, int y) {
+		int i = y * stride + x;
+		int horizontal = x == width - 1
+				? luminosity[i] - luminosity[i - 1]
+				: luminosity[i + 1] - luminosity[i];
+		int vertical = y == height - 1
+				? luminosity[i] - luminosity[i - stride]
+				: luminosity[i + stride] - luminosity[i];
+		energy[i] = Math.abs(horizontal) + Math.abs(vertical);
+	}
+
+	/**
+	 * Computes the cost and parent of the pixel at u along and v across a
+	 * 	seam from the costs of the pixels before it, breaking ties as
+	 * 	SeamSolver does.
+	 *
+	 * @return The new cost of the pixel.
+	 */
+	private int computeCost(Costs costs, int u, int v) {
+		int i = costs.index(u, v);
+		int[] cost = costs.cost;
+		if (u == 0) {
+			costs.parent[i] = 0;
+			return cost[i] = energy[i];
+		}
+
+		int step = costs.step();
+		int before = costs.index(u - 1, 0);
+		int direction = SeamSolver.cheapestParent(cost, before, step, v,
+				costs.across());
+		costs.parent[i] = (byte) direction;
+		return cost[i] = energy[i] + cost[before + (v + direction) * step];
+	}
+
+} // End of SeamCarver class
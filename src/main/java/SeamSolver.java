@@ -0,0 +1,175 @@
+/**
+ * A class that finds the lowest-energy seam of a picture from its
+ * 	luminosity. A vertical seam has one pixel in each row and runs from the
+ * 	top row to the bottom row; a horizontal seam has one pixel in each
+ * 	column and runs from the left column to the right column.
+ *
+ * The cost of the cheapest seam to each pixel only depends on the costs of
+ * 	the row (or column) before it, so only two rows of costs are kept, and
+ * 	energies are computed as each row is reached. The only table covering
+ * 	the whole picture holds the direction of the previous pixel of each
+ * 	seam, -1, 0 or 1, in one byte per pixel, which is all that is needed to
+ * 	walk the seam back once its last pixel is known.
+ *
+ * A horizontal seam is exactly the vertical seam of the transposed picture,
+ * 	ties included, but it is found without transposing anything.
+ *
+ */
+public class SeamSolver
+{
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * Finds the lowest-energy seam running from the top row to the bottom
+	 * 	row, as Picture.computeSeam does.
+	 *
+	 * @param luminosity The luminosity of pixel (x, y) at index
+	 * 	y * width + x, as an unsigned byte.
+	 * @param width The width of the picture; at least 2.
+	 * @param height The height of the picture; at least 2.
+	 * @return The x-coordinate of the pixel of the seam in each row.
+	 */
+	public static int[] computeSeam(byte[] luminosity, int width, int height) {
+		int[] seam = new int[height];
+		solve(luminosity, width, height, true, seam);
+		return seam;
+	}
+
+	/**
+	 * Finds the lowest-energy seam running from the left column to the
+	 * 	right column.
+	 *
+	 * @param luminosity The luminosity of the picture, as in computeSeam.
+	 * @param width The width of the picture; at least 2.
+	 * @param height The height of the picture; at least 2.
+	 * @return The y-coordinate of the pixel of the seam in each column.
+	 */
+	public static int[] computeHorizontalSeam(byte[] luminosity, int width,
+			int height) {
+		int[] seam = new int[width];
+		solve(luminosity, width, height, false, seam);
+		return seam;
+	}
+
+	/**
+	 * Finds the lowest-energy seam in the direction provided.
+	 *
+	 * @param luminosity The luminosity of the picture, as in computeSeam.
+	 * @param width The width of the picture; at least 2.
+	 * @param height The height of the picture; at least 2.
+	 * @param vertical Whether to find a vertical seam rather than a
+	 * 	horizontal one.
+	 * @param seam Where to store the seam: one x-coordinate per row for a
+	 * 	vertical seam, one y-coordinate per column for a horizontal one.
+	 * @return The total energy of the seam.
+	 */
+	static long solve(byte[] luminosity, int width, int height,
+			boolean vertical, int[] seam) {
+		if (width < 2 || height < 2)
+			throw new IllegalArgumentException("Cannot find a seam in a "
+					+ width + "x" + height + " picture");
+
+		// A seam has one pixel at each position along it, and moves by at
+		// most one pixel across it from one position to the next.
+		int along = vertical ? height : width;
+		int across = vertical ? width : height;
+		byte[] parent = new byte[along * across];
+		int[] previous = new int[across];
+		int[] current = new int[across];
+
+		for (int v = 0; v < across; v++)
+			previous[v] = energyAt(luminosity, width, height, vertical, 0, v);
+		for (int u = 1; u < along; u++) {
+			int line = u * across;
+			for (int v = 0; v < across; v++) {
+				int direction = cheapestParent(previous, 0, 1, v, across);
+				parent[line + v] = (byte) direction;
+				current[v] = energyAt(luminosity, width, height, vertical, u, v)
+						+ previous[v + direction];
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+
+		// The first pixel of the last row (or column) with the lowest cost.
+		int end = 0;
+		for (int v = 1; v < across; v++)
+			if (previous[v] < previous[end])
+				end = v;
+
+		seam[along - 1] = end;
+		for (int u = along - 1; u > 0; u--)
+			seam[u - 1] = seam[u] + parent[u * across + seam[u]];
+		return previous[end];
+	}
+
+	/**
+	 * @return The energy of the pixel at position u along a seam and
+	 * 	position v across it.
+	 */
+	private static int energyAt(byte[] luminosity, int width, int height,
+			boolean vertical, int u, int v) {
+		return vertical ? energy(luminosity, width, height, v, u)
+				: energy(luminosity, width, height, u, v);
+	}
+
+	/**
+	 * Computes the energy of the pixel at (x, y): the difference in
+	 * 	luminosity with the pixel to its right plus the difference with the
+	 * 	pixel below it. Pixels on the right column or the bottom row are
+	 * 	compared with the pixel to their left or above them instead.
+	 *
+	 * @param luminosity The luminosity of the picture, as in computeSeam.
+	 * @param width The width of the picture.
+	 * @param height The height of the picture.
+	 * @param x The x-coordinate of the pixel.
+	 * @param y The y-coordinate of the pixel.
+	 * @return The energy of the pixel.
+	 */
+	public static int energy(byte[] luminosity, int width, int height,
+			int x, int y) {
+		int index = y * width + x;
+		int here = luminosity[index] & 0xff;
+		int horizontal = x == width - 1
+				? here - (luminosity[index - 1] & 0xff)
+				: (luminosity[index + 1] & 0xff) - here;
+		int vertical = y == height - 1
+				? here - (luminosity[index - width] & 0xff)
+				: (luminosity[index + width] & 0xff) - here;
+		return Math.abs(horizontal) + Math.abs(vertical);
+	}
+
+	/**
+	 * Chooses which of the three pixels before a pixel of a seam the seam
+	 * 	should come from. Ties go to the pixel straight before it, then to
+	 * 	the one with the lower coordinate.
+	 *
+	 * @param costs The costs of the row (or column) before the pixel.
+	 * @param offset The index in costs of the cost at position 0.
+	 * @param step The distance in costs between two consecutive positions.
+	 * @param v The position of the pixel across the seam.
+	 * @param length The number of positions across the seam; at least 2.
+	 * @return The position of the cheapest pixel before, relative to v:
+	 * 	-1, 0, or 1.
+	 */
+	static int cheapestParent(int[] costs, int offset, int step, int v,
+			int length) {
+		int before = offset + v * step;
+		int middle = costs[before];
+		if (v == 0)
+			return costs[before + step] < middle ? 1 : 0;
+		if (v == length - 1)
+			return costs[before - step] < middle ? -1 : 0;
+
+		int lower = costs[before - step];
+		int higher = costs[before + step];
+		if (lower < middle && lower <= higher)
+			return -1;
+		if (higher < middle)
+			return 1;
+		return 0;
+	}
+
+} // End of SeamSolver class
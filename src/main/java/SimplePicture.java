@@ -3,7 +3,14 @@ import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.geom.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 
 /**
  * A class that represents a simple picture. A simple picture may have an
@@ -11,6 +18,33 @@ import java.io.*;
  * 	height. A simple picture uses a BufferedImage to hold the pixels. You can
  * 	show a simple picture in a PictureFrame (a JFrame).
  * 
+ * The BufferedImage is always of type TYPE_INT_RGB, and its pixels are also
+ * 	available directly as a packed int[] raster (one int per pixel, row by row,
+ * 	with red, green and blue each taking 8 bits). The raster and the
+ * 	BufferedImage share the same memory, so changes made through one are
+ * 	immediately visible through the other.
+ * 
+ * A SimplePicture that is kept around without being worked on, such as a
+ * 	large picture waiting in a batch or an earlier version kept by an
+ * 	explorer, can be parked off the heap with moveOffHeap: its pixels are
+ * 	then held in a direct buffer, which the garbage collector never has to
+ * 	copy or scan, and the raster and BufferedImage are dropped. The pixel
+ * 	accessors (getBasicPixel, setBasicPixel, getRegion, setRegion, Pixel,
+ * 	...), equals and copyPicture work on the direct buffer as they are,
+ * 	and a copy made with the copy constructor is off the heap too.
+ * 	Everything else needs the raster or the BufferedImage: getRasterData
+ * 	and getBufferedImage move the pixels back on the heap for good, and so
+ * 	does every filter that reads the raster (the filters that start from a
+ * 	copy, such as grayscale and negate, leave the picture off the heap).
+ * 	The pictures filters make are always on the heap. Off-heap storage is
+ * 	for parking pictures between uses, not for working on them; call
+ * 	moveOffHeap again once done.
+ * 
+ * A direct buffer that is no longer used, after moveOnHeap or once its
+ * 	picture is unreachable, is freed only when the garbage collector gets
+ * 	to it, which can take long as it barely fills the heap. Call release
+ * 	to free the pixels of a picture that is no longer needed at once.
+ * 
  * @author Barb Ericson (ericson@cc.gatech.edu)
  * 	(Copyright Georgia Institute of Technology 2004)
  */
@@ -24,6 +58,16 @@ public class SimplePicture
 	 */
 	private static String projectName = " - Project: PiCTURE";
 
+	/**
+	 * Mask selecting the red, green and blue bits of a packed pixel.
+	 */
+	protected static final int RGB_MASK = 0xffffff;
+
+	/**
+	 * Alpha bits of a fully opaque packed ARGB pixel.
+	 */
+	protected static final int OPAQUE = 0xff000000;
+
 	/**
 	 * Filename associated with this SimplePicture.
 	 */
@@ -39,6 +83,68 @@ public class SimplePicture
 	 */
 	private BufferedImage bufferedImage;
 
+	/**
+	 * The pixels of the BufferedImage, row by row. This is the DataBufferInt
+	 * 	backing the BufferedImage, not a copy of it.
+	 */
+	private int[] raster;
+
+	/**
+	 * The pixels of this SimplePicture while it is off the heap, laid out as
+	 * 	in the raster; null while they are in the raster. Exactly one of
+	 * 	raster and offHeapRaster is null, until the raster goes back to its
+	 * 	RasterPool, after which both are.
+	 */
+	private IntBuffer offHeapRaster;
+
+	/**
+	 * The direct buffer offHeapRaster is a view of, kept for release to
+	 * 	free; null while the pixels are on the heap.
+	 */
+	private ByteBuffer offHeapBuffer;
+
+	/**
+	 * The Scope of the RasterPool the raster of this SimplePicture comes
+	 * 	from and goes back to, or null if it is not pooled.
+	 */
+	private RasterPool.Scope rasterScope;
+
+	/**
+	 * Whether the pixels were freed by release, or went back to the
+	 * 	RasterPool, after which this SimplePicture cannot be used.
+	 */
+	private boolean released;
+
+	/**
+	 * Width and height of this SimplePicture, cached from the BufferedImage.
+	 */
+	private int width, height;
+
+	/**
+	 * Whether data derived from the raster, such as the luminosity of a
+	 * 	Picture, has been cached since the raster last changed.
+	 */
+	private boolean derivedDataCached;
+
+	/**
+	 * The digest of the pixels, computed the first time it is asked for and
+	 * 	dropped whenever the pixels change; null until then.
+	 */
+	private Long digest;
+
+	/**
+	 * Whether the BufferedImage has been handed out (by getBufferedImage,
+	 * 	getImage, getGraphics or createGraphics). It can then be changed
+	 * 	without this SimplePicture knowing, so the digest is not cached.
+	 */
+	private boolean imageExposed;
+
+	/**
+	 * The number of pixels compared at once by hasSamePixels before it
+	 * 	checks for a difference.
+	 */
+	private static final int COMPARE_BLOCK = 16;
+
 	/**
 	 * PictureFrame used to display the SimplePicture.
 	 */
@@ -83,14 +189,52 @@ public class SimplePicture
 	 * @param height The desired height.
 	 */
 	public SimplePicture(int width, int height) {
-		bufferedImage = new BufferedImage(width, height,
-				BufferedImage.TYPE_INT_RGB);
+		this(width, height, (RasterPool.Scope) null);
+	}
+
+	/**
+	 * A constructor that takes the width and height desired for a picture
+	 * 	and draws its raster from the RasterPool Scope provided (see
+	 * 	RasterPool.Scope.picture). The picture is white.
+	 * 
+	 * @param width The desired width.
+	 * @param height The desired height.
+	 * @param scope The Scope to draw the raster from, or null to allocate it.
+	 */
+	SimplePicture(int width, int height, RasterPool.Scope scope) {
+		this.rasterScope = scope;
+		setBufferedImage(newImage(width, height));
 		title = "No current picture" + projectName;
 //		fileName = "None";
 		extension = "jpg";
 		setAllPixelsToAColor(Color.white);
 	}
 
+	/**
+	 * A constructor that makes a picture whose pixels are the ints of the
+	 * 	direct buffer provided, laid out as in the raster, so that the
+	 * 	picture is off the heap from the start (see moveOffHeap).
+	 * 	RawRaster.map uses it to back a picture with the mapping of a file.
+	 * 
+	 * @param fileName The name of the file the pixels come from.
+	 * @param width The width of the picture.
+	 * @param height The height of the picture.
+	 * @param pixels A direct buffer of width * height ints, in the byte
+	 * 	order it is set to.
+	 */
+	SimplePicture(String fileName, int width, int height, ByteBuffer pixels) {
+		this.fileName = fileName;
+		int posDot = fileName.indexOf('.');
+		if (posDot >= 0)
+			this.extension = fileName.substring(posDot + 1);
+		title = fileName + projectName;
+		this.width = width;
+		this.height = height;
+		offHeapBuffer = pixels;
+		offHeapRaster = pixels.asIntBuffer();
+		rasterChanged();
+	}
+
 	/**
 	 * A constructor that takes the width and height desired for a picture
 	 * 	and creates a BufferedImage of that size. It also takes the color
@@ -107,10 +251,37 @@ public class SimplePicture
 
 	/**
 	 * A constructor that takes another SimplePicture to copy information from.
+	 * 	The copy is not pooled, even if copyPicture is, and it is off the
+	 * 	heap if copyPicture is.
 	 * 
 	 * @param copyPicture The SimplePicture to copy from.
+	 * @throws IllegalStateException If the pixels of copyPicture were
+	 * 	released.
 	 */
 	public SimplePicture(SimplePicture copyPicture) {
+		this(copyPicture, null, copyPicture.isOffHeap());
+	}
+
+	/**
+	 * A constructor that takes another SimplePicture to copy information from,
+	 * 	and draws the raster of the copy from the RasterPool Scope provided.
+	 * 	Filters use it to copy a picture into its own Scope, on the heap
+	 * 	where they can write to it.
+	 * 
+	 * @param copyPicture The SimplePicture to copy from.
+	 * @param scope The Scope to draw the raster from, or null to allocate it.
+	 * @throws IllegalStateException If the pixels of copyPicture were
+	 * 	released.
+	 */
+	SimplePicture(SimplePicture copyPicture, RasterPool.Scope scope) {
+		this(copyPicture, scope, false);
+	}
+
+	private SimplePicture(SimplePicture copyPicture, RasterPool.Scope scope,
+			boolean offHeap) {
+		if (copyPicture.released)
+			throw new IllegalStateException("Cannot copy a picture whose"
+					+ " pixels were released");
 		if (copyPicture.fileName != null)
 		{
 			this.fileName = new String(copyPicture.fileName);
@@ -120,16 +291,43 @@ public class SimplePicture
 		if (copyPicture.title != null)
 			this.title = new String(copyPicture.title);
 
-		if (copyPicture.bufferedImage != null)
+		if (copyPicture.bufferedImage != null
+				|| copyPicture.offHeapRaster != null)
 		{
-			this.bufferedImage = new BufferedImage(copyPicture.getWidth(),
-					copyPicture.getHeight(), BufferedImage.TYPE_INT_RGB);
-			this.copyPicture(copyPicture);
+			if (offHeap) {
+				this.width = copyPicture.getWidth();
+				this.height = copyPicture.getHeight();
+				IntBuffer pixels = copyPicture.offHeap().duplicate();
+				pixels.clear();
+				allocateOffHeap().put(pixels);
+				rasterChanged();
+				this.copyFilenameFromPicture(copyPicture);
+			} else {
+				this.rasterScope = scope;
+				setBufferedImage(newImage(copyPicture.getWidth(),
+						copyPicture.getHeight()));
+				this.copyPicture(copyPicture);
+			}
+			// the copy has the same pixels, so it has the same digest
+			if (copyPicture.digest != null) {
+				this.digest = copyPicture.digest;
+				derivedDataCached();
+			}
 		}
 	}
 
 	//////////////////////////////// Methods //////////////////////////////////
 
+	/**
+	 * @return A TYPE_INT_RGB image for this SimplePicture, from its RasterPool
+	 * 	Scope if it has one. Its pixels are not cleared.
+	 */
+	private BufferedImage newImage(int width, int height) {
+		if (rasterScope != null)
+			return rasterScope.acquire(width, height, this);
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+	}
+
 	/**
 	 * copy filename from another picture
 	 */
@@ -150,24 +348,28 @@ public class SimplePicture
 	 * @param sourcePicture The SimplePicture object to copy.
 	 */
 	public void copyPicture(SimplePicture sourcePicture) {
-		Pixel sourcePixel = null;
-		Pixel targetPixel = null;
-
-		// Loop through the columns
-		for (int sourceX = 0, targetX = 0; 
-		sourceX < sourcePicture.getWidth() && targetX < this.getWidth();
-		sourceX++, targetX++) {
-			// Loop through the rows
-			for (int sourceY = 0, targetY = 0; 
-			sourceY < sourcePicture.getHeight() && 
-			targetY < this.getHeight();
-			sourceY++, targetY++)
-			{
-				sourcePixel = sourcePicture.getPixel(sourceX, sourceY);
-				targetPixel = this.getPixel(targetX, targetY);
-				targetPixel.setColor(sourcePixel.getColor());
+		int copyWidth = Math.min(sourcePicture.getWidth(), this.getWidth());
+		int copyHeight = Math.min(sourcePicture.getHeight(), this.getHeight());
+
+		if (sourcePicture.raster == null || this.raster == null) {
+			// One of the pictures is off the heap: copy through a row.
+			int[] row = new int[copyWidth];
+			for (int y = 0; y < copyHeight; y++) {
+				sourcePicture.getRegion(0, y, copyWidth, 1, row, 0);
+				this.setRegion(0, y, copyWidth, 1, row, 0);
+			}
+		} else if (sourcePicture.width == this.width) {
+			// The rows are laid out the same way, so copy them all at once.
+			System.arraycopy(sourcePicture.raster, 0, this.raster, 0,
+					copyWidth * copyHeight);
+		} else {
+			// Copy the overlapping part of each row in one go.
+			for (int y = 0; y < copyHeight; y++) {
+				System.arraycopy(sourcePicture.raster, y * sourcePicture.width,
+						this.raster, y * this.width, copyWidth);
 			}
 		}
+		rasterChanged();
 		this.copyFilenameFromPicture(sourcePicture);
 	}
 
@@ -177,37 +379,304 @@ public class SimplePicture
 	 * @param color The Color to set to.
 	 */
 	public void setAllPixelsToAColor(Color color) {
-		// Loop through all x.
-		for (int x = 0; x < this.getWidth(); x++)
-		{
-			// Loop through all y.
-			for (int y = 0; y < this.getHeight(); y++)
-			{
-				getPixel(x, y).setColor(color);
+		int rgb = color.getRGB() & RGB_MASK;
+		if (raster != null) {
+			Arrays.fill(raster, rgb);
+		} else {
+			IntBuffer offHeap = offHeap();
+			for (int index = 0; index < offHeap.capacity(); index++)
+				offHeap.put(index, rgb);
+		}
+		rasterChanged();
+	}
+
+	/**
+	 * Makes the BufferedImage provided the one holding the pixels of this
+	 * 	SimplePicture. Images that are not TYPE_INT_RGB are converted first,
+	 * 	so that the raster can always be addressed as packed ints. Any
+	 * 	transparency in the image provided is dropped.
+	 * 
+	 * @param image The BufferedImage to use.
+	 */
+	private void setBufferedImage(BufferedImage image) {
+		if (image.getType() != BufferedImage.TYPE_INT_RGB) {
+			BufferedImage converted = new BufferedImage(image.getWidth(),
+					image.getHeight(), BufferedImage.TYPE_INT_RGB);
+			int[] data = ((DataBufferInt) converted.getRaster()
+					.getDataBuffer()).getData();
+
+			// getRGB converts every pixel to packed ARGB for us.
+			image.getRGB(0, 0, image.getWidth(), image.getHeight(),
+					data, 0, image.getWidth());
+			for (int i = 0; i < data.length; i++)
+				data[i] &= RGB_MASK;
+			image = converted;
+		}
+
+		this.bufferedImage = image;
+		this.raster = ((DataBufferInt) image.getRaster().getDataBuffer())
+				.getData();
+		this.offHeapRaster = null;
+		this.offHeapBuffer = null;
+		this.width = image.getWidth();
+		this.height = image.getHeight();
+		this.imageExposed = false;
+		rasterChanged();
+	}
+
+	/**
+	 * Moves the pixels of this SimplePicture into a direct buffer, off the
+	 * 	heap, and drops its raster and BufferedImage. Nothing happens if the
+	 * 	pixels are already off the heap.
+	 */
+	public synchronized void moveOffHeap() {
+		if (raster == null)
+			return;
+		allocateOffHeap().put(raster);
+		raster = null;
+		bufferedImage = null;
+		// changes to an image handed out no longer reach the pixels
+		imageExposed = false;
+	}
+
+	/**
+	 * Moves the pixels of this SimplePicture back into a raster and
+	 * 	BufferedImage on the heap, and drops the direct buffer, which is
+	 * 	freed when the garbage collector gets to it. Nothing happens if the
+	 * 	pixels are already on the heap.
+	 */
+	public synchronized void moveOnHeap() {
+		if (raster != null)
+			return;
+		offHeap(); // throws if the pixels were released
+		BufferedImage image = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_RGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer())
+				.getData();
+		IntBuffer offHeap = offHeapRaster.duplicate();
+		offHeap.clear();
+		offHeap.get(pixels);
+		bufferedImage = image;
+		raster = pixels;
+		offHeapRaster = null;
+		offHeapBuffer = null;
+	}
+
+	/**
+	 * Allocates a direct buffer for the pixels of this SimplePicture and
+	 * 	makes it the one holding them.
+	 *
+	 * @return The buffer, as ints, positioned at its start.
+	 */
+	private IntBuffer allocateOffHeap() {
+		offHeapBuffer = ByteBuffer.allocateDirect(4 * width * height)
+				.order(ByteOrder.nativeOrder());
+		offHeapRaster = offHeapBuffer.asIntBuffer();
+		return offHeapRaster;
+	}
+
+	/**
+	 * Frees the pixels of this SimplePicture now, rather than when the
+	 * 	garbage collector gets to them: its direct buffer, if it is off the
+	 * 	heap, is freed at once where the JVM allows it, and its raster, if
+	 * 	it is on the heap, is dropped. The picture cannot be used
+	 * 	afterwards, and no other thread may be using it while it is
+	 * 	released. Nothing happens if it was already released.
+	 *
+	 * @throws IllegalStateException If this SimplePicture is in a
+	 * 	RasterPool Scope, which releases it when it is closed.
+	 */
+	public synchronized void release() {
+		if (rasterScope != null)
+			throw new IllegalStateException(this + " is released when its"
+					+ " RasterPool Scope is closed");
+		ByteBuffer buffer = offHeapBuffer;
+		bufferedImage = null;
+		raster = null;
+		offHeapRaster = null;
+		offHeapBuffer = null;
+		released = true;
+		rasterChanged();
+		if (buffer != null)
+			free(buffer);
+	}
+
+	/**
+	 * Frees a direct buffer at once, through sun.misc.Unsafe.invokeCleaner
+	 * 	from Java 9 on, and through the Cleaner of the buffer on Java 8. If
+	 * 	neither can be reached, the buffer is left to the garbage collector.
+	 */
+	private static void free(ByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			try {
+				Method invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+						ByteBuffer.class);
+				Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			} catch (NoSuchMethodException e) {
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
 			}
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// left to the garbage collector
 		}
 	}
 
 	/**
-	 * @return The BufferedImage in this SimplePicture. 
+	 * @return Whether the pixels of this SimplePicture are off the heap.
+	 */
+	public boolean isOffHeap() {
+		return offHeapRaster != null;
+	}
+
+	/**
+	 * @return The direct buffer holding the pixels of this SimplePicture
+	 * 	while its raster is null.
+	 * @throws IllegalStateException If the pixels were released, or the
+	 * 	raster was given back to its RasterPool.
+	 */
+	private IntBuffer offHeap() {
+		IntBuffer pixels = offHeapRaster;
+		if (pixels == null)
+			throw new IllegalStateException("The pixels of this picture were"
+					+ " released, or went back to its RasterPool when its Scope"
+					+ " was closed");
+		return pixels;
+	}
+
+	/**
+	 * @return The Scope of the RasterPool the raster of this SimplePicture
+	 * 	comes from, or null if it is not pooled. The pictures its filters
+	 * 	make are in the same Scope.
+	 */
+	public RasterPool.Scope getRasterScope() {
+		return rasterScope;
+	}
+
+	/**
+	 * Puts this SimplePicture in a RasterPool Scope; see
+	 * 	RasterPool.Scope.adopt.
+	 */
+	void enterRasterScope(RasterPool.Scope scope) {
+		if (rasterScope != null)
+			throw new IllegalArgumentException(this + " is already in a Scope");
+		if (raster == null)
+			offHeap(); // throws if the pixels were released
+		rasterScope = scope;
+	}
+
+	/**
+	 * Takes this SimplePicture out of its RasterPool Scope; see
+	 * 	RasterPool.Scope.keep.
+	 */
+	void leaveRasterScope() {
+		rasterScope = null;
+	}
+
+	/**
+	 * Drops the pixels of this SimplePicture, which cannot be used
+	 * 	afterwards, for its RasterPool Scope to recycle them.
+	 *
+	 * @return The image that held the pixels, or null if they were off the
+	 * 	heap.
+	 */
+	synchronized BufferedImage releaseRaster() {
+		BufferedImage image = bufferedImage;
+		bufferedImage = null;
+		raster = null;
+		offHeapRaster = null;
+		offHeapBuffer = null;
+		rasterScope = null;
+		released = true;
+		rasterChanged();
+		return image;
+	}
+
+	/**
+	 * @return The raster of this SimplePicture, after moving its pixels
+	 * 	back on the heap if needed.
+	 */
+	private int[] heapRaster() {
+		int[] pixels = raster;
+		if (pixels != null)
+			return pixels;
+		moveOnHeap();
+		return raster;
+	}
+
+	/**
+	 * Tells this SimplePicture that its raster has changed, so that any data
+	 * 	derived from it is dropped. Every method of this class that changes
+	 * 	the raster calls this, and so does PixelCursor. Code that writes to
+	 * 	getRasterData() directly must call it after doing so.
+	 */
+	public void rasterChanged() {
+		if (derivedDataCached) {
+			derivedDataCached = false;
+			dropDerivedData();
+		}
+	}
+
+	/**
+	 * Records that data derived from the current raster has been cached, so
+	 * 	that dropDerivedData is called the next time the raster changes.
+	 */
+	protected void derivedDataCached() {
+		derivedDataCached = true;
+	}
+
+	/**
+	 * Drops any data derived from the raster. Subclasses that cache such
+	 * 	data override this and call it; SimplePicture caches its digest.
+	 */
+	protected void dropDerivedData() {
+		digest = null;
+	}
+
+	/**
+	 * @return The BufferedImage in this SimplePicture. It shares the pixels
+	 * 	of this SimplePicture, so once it has been handed out, the digest
+	 * 	is computed afresh every time it is asked for.
 	 */
 	public BufferedImage getBufferedImage() {
+		imageExposed = true;
+		digest = null;
+		return heapImage();
+	}
+
+	/**
+	 * @return The BufferedImage in this SimplePicture, for the methods of
+	 * 	this class that only read it.
+	 */
+	private BufferedImage heapImage() {
+		heapRaster();
 		return bufferedImage;
 	}
 
 	/**
 	 * @return A Graphics object to be used by this SimplePicture for drawing.
+	 * 	Data derived from the raster is dropped, since the Graphics object
+	 * 	is about to change it; call rasterChanged() if it is drawn on again
+	 * 	after a filter has run. The digest is no longer cached, as with
+	 * 	getBufferedImage.
 	 */
 	public Graphics getGraphics() {
-		return bufferedImage.getGraphics();
+		rasterChanged();
+		return getBufferedImage().getGraphics();
 	}
 
 	/**
 	 *@return A Graphics2D object for this SimplePicture
-	 *	which can be used to do 2D drawing on the picture.
+	 *	which can be used to do 2D drawing on the picture. As with
+	 *	getGraphics(), data derived from the raster is dropped.
 	 */
 	public Graphics2D createGraphics() {
-		return bufferedImage.createGraphics();
+		rasterChanged();
+		return getBufferedImage().createGraphics();
 	}
 
 	/**
@@ -234,12 +703,12 @@ public class SimplePicture
 	/**
 	 * @return The width of this SimplePicture in pixels.
 	 */
-	public int getWidth() { return bufferedImage.getWidth(); }
+	public int getWidth() { return width; }
 
 	/**
 	 * @return The height of this SimplePicture picture in pixels.
 	 */
-	public int getHeight() { return bufferedImage.getHeight(); }
+	public int getHeight() { return height; }
 
 	/**
 	 * @return the PictureFrame associated with this
@@ -261,7 +730,7 @@ public class SimplePicture
 	 */
 	public Image getImage() {
 		// Return the BufferedImage object because it is an Image.
-		return bufferedImage;
+		return getBufferedImage();
 	}
 
 	/**
@@ -272,7 +741,11 @@ public class SimplePicture
 	 * 	blue, each occupying 8 bits each.
 	 */
 	public int getBasicPixel(int x, int y) {
-		return bufferedImage.getRGB(x, y);
+		checkCoordinates(x, y);
+		int[] pixels = raster;
+		if (pixels == null)
+			return offHeap().get(y * width + x) | OPAQUE;
+		return pixels[y * width + x] | OPAQUE;
 	}
 
 	/** 
@@ -283,7 +756,221 @@ public class SimplePicture
 	 * @param rgb The new RGB value of the pixel (alpha, red, green, blue).
 	 */     
 	public void setBasicPixel(int x, int y, int rgb) {
-		bufferedImage.setRGB(x, y, rgb);
+		checkCoordinates(x, y);
+		int[] pixels = raster;
+		if (pixels == null)
+			offHeap().put(y * width + x, rgb & RGB_MASK);
+		else
+			pixels[y * width + x] = rgb & RGB_MASK;
+		rasterChanged();
+	}
+
+	/**
+	 * Throws the same exception BufferedImage.getRGB would if the
+	 * 	coordinates provided are outside of this SimplePicture.
+	 */
+	private void checkCoordinates(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			throw new ArrayIndexOutOfBoundsException(
+					"Coordinate out of bounds!");
+	}
+
+	/**
+	 * Gives direct access to the pixels of this SimplePicture. Pixel (x, y)
+	 * 	is at index y * getWidth() + x, with red, green and blue packed into
+	 * 	the low 24 bits. The top 8 bits are ignored (the picture is always
+	 * 	opaque) and are kept at 0 by every method in this class.
+	 * 
+	 * The array is shared with the BufferedImage, so it must not be cached
+	 * 	across calls that replace the image, such as load and moveOffHeap.
+	 * 	Call rasterChanged() after writing to it. If the pixels are off the
+	 * 	heap, they are moved back on the heap first.
+	 * 
+	 * @return The packed RGB raster of this SimplePicture.
+	 */
+	public int[] getRasterData() {
+		return heapRaster();
+	}
+
+	/**
+	 * Copies one row of pixels into the array provided.
+	 * 
+	 * @param y The row to copy.
+	 * @param row The array to copy into; must hold at least getWidth() ints.
+	 */
+	public void getRow(int y, int[] row) {
+		getRegion(0, y, width, 1, row, 0);
+	}
+
+	/**
+	 * Replaces one row of pixels with the packed RGB values provided.
+	 * 
+	 * @param y The row to replace.
+	 * @param row The new values; must hold at least getWidth() ints.
+	 */
+	public void setRow(int y, int[] row) {
+		setRegion(0, y, width, 1, row, 0);
+	}
+
+	/**
+	 * Copies a rectangular region of pixels into the array provided, row by
+	 * 	row, so that pixel (x + i, y + j) ends up at
+	 * 	offset + j * regionWidth + i.
+	 * 
+	 * @param x The leftmost column of the region.
+	 * @param y The topmost row of the region.
+	 * @param regionWidth The width of the region.
+	 * @param regionHeight The height of the region.
+	 * @param pixels The array to copy into.
+	 * @param offset The index in pixels of the first value copied.
+	 */
+	public void getRegion(int x, int y, int regionWidth, int regionHeight,
+			int[] pixels, int offset) {
+		checkRegion(x, y, regionWidth, regionHeight);
+		int[] from = raster;
+		if (from == null) {
+			IntBuffer offHeap = offHeap().duplicate();
+			for (int j = 0; j < regionHeight; j++) {
+				offHeap.position((y + j) * width + x);
+				offHeap.get(pixels, offset + j * regionWidth, regionWidth);
+			}
+			return;
+		}
+		for (int j = 0; j < regionHeight; j++) {
+			System.arraycopy(from, (y + j) * width + x,
+					pixels, offset + j * regionWidth, regionWidth);
+		}
+	}
+
+	/**
+	 * Replaces a rectangular region of pixels with the packed RGB values
+	 * 	provided, laid out as described in getRegion.
+	 * 
+	 * @param x The leftmost column of the region.
+	 * @param y The topmost row of the region.
+	 * @param regionWidth The width of the region.
+	 * @param regionHeight The height of the region.
+	 * @param pixels The new values.
+	 * @param offset The index in pixels of the first value.
+	 */
+	public void setRegion(int x, int y, int regionWidth, int regionHeight,
+			int[] pixels, int offset) {
+		checkRegion(x, y, regionWidth, regionHeight);
+		int[] to = raster;
+		IntBuffer offHeap = to == null ? offHeap() : null;
+		for (int j = 0; j < regionHeight; j++) {
+			int source = offset + j * regionWidth;
+			int target = (y + j) * width + x;
+			if (to == null)
+				for (int i = 0; i < regionWidth; i++)
+					offHeap.put(target + i, pixels[source + i] & RGB_MASK);
+			else
+				for (int i = 0; i < regionWidth; i++)
+					to[target + i] = pixels[source + i] & RGB_MASK;
+		}
+		rasterChanged();
+	}
+
+	/**
+	 * Compares the pixels of this SimplePicture with those of another one,
+	 * 	stopping at the first difference. Rasters on the heap are compared a
+	 * 	block of pixels at a time, with no branch within a block, which the
+	 * 	JIT compiler can turn into vector instructions.
+	 * 
+	 * @param other The SimplePicture to compare with.
+	 * @return true if both pictures have the same size and the same color
+	 * 	at every pixel.
+	 */
+	public boolean hasSamePixels(SimplePicture other) {
+		if (other == this)
+			return true;
+		if (other.width != width || other.height != height)
+			return false;
+		if (width == 0 || height == 0)
+			return true;
+		Long digest = this.digest, otherDigest = other.digest;
+		if (digest != null && otherDigest != null
+				&& digest.longValue() != otherDigest.longValue())
+			return false;
+
+		int[] a = raster, b = other.raster;
+		if (a == null || b == null)
+			return pixelBuffer().equals(other.pixelBuffer());
+
+		int length = a.length;
+		int i = 0;
+		for (; i + COMPARE_BLOCK <= length; i += COMPARE_BLOCK) {
+			int difference = 0;
+			for (int j = i; j < i + COMPARE_BLOCK; j++)
+				difference |= a[j] ^ b[j];
+			if (difference != 0)
+				return false;
+		}
+		for (; i < length; i++)
+			if (a[i] != b[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return The pixels of this SimplePicture, on the heap or off it, as a
+	 * 	buffer of its own.
+	 */
+	private IntBuffer pixelBuffer() {
+		int[] pixels = raster;
+		if (pixels != null)
+			return IntBuffer.wrap(pixels);
+		IntBuffer buffer = offHeap().duplicate();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Computes a 64-bit digest of the pixels of this SimplePicture: the
+	 * 	XXH64 (see XxHash64) of its raster, row by row, seeded with its
+	 * 	size. Pictures with the same pixels have the same digest, so
+	 * 	duplicates can be found through a hash index rather than by
+	 * 	comparing every pair. The digest is kept until the pixels change,
+	 * 	unless the BufferedImage has been handed out, as it can then change
+	 * 	behind the back of this SimplePicture.
+	 * 
+	 * @return The digest of the pixels.
+	 */
+	public long digest() {
+		Long cached = digest;
+		if (cached != null)
+			return cached;
+
+		XxHash64 hash = new XxHash64((long) width << 32 | height);
+		int[] pixels = raster;
+		if (pixels != null) {
+			hash.update(pixels, 0, pixels.length);
+		} else {
+			int[] row = new int[width];
+			for (int y = 0; y < height; y++) {
+				getRow(y, row);
+				hash.update(row, 0, width);
+			}
+		}
+		long result = hash.digest();
+		if (!imageExposed) {
+			digest = result;
+			derivedDataCached();
+		}
+		return result;
+	}
+
+	/**
+	 * Throws an ArrayIndexOutOfBoundsException if the region provided is
+	 * 	not entirely inside this SimplePicture.
+	 */
+	private void checkRegion(int x, int y, int regionWidth, int regionHeight) {
+		if (x < 0 || y < 0 || regionWidth < 0 || regionHeight < 0
+				|| x + regionWidth > width || y + regionHeight > height)
+			throw new ArrayIndexOutOfBoundsException(
+					"Region out of bounds: (" + x + ", " + y + ") "
+					+ regionWidth + "x" + regionHeight + " in a "
+					+ width + "x" + height + " picture");
 	}
 
 	/**
@@ -295,7 +982,7 @@ public class SimplePicture
 	public Pixel getPixel(int x, int y) {
 		/* Create the Pixel object for this SimplePicture
 		 * and the given x- and y-coordinates. */
-		if (x > this.getWidth() || y > this.getHeight()){
+		if (x < 0 || y < 0 || x >= this.getWidth() || y >= this.getHeight()){
 			String errorMsg = "\n\nError message provided by CS60 staff :-)" 
 					+ "\nYour code attempted to access a pixel outside of the Picture\n"
 					+ "The picture has width: " + this.getWidth() 
@@ -316,7 +1003,7 @@ public class SimplePicture
 	 */
 	public void load(Image image) {
 		// Get a Graphics context to use to draw on the BufferedImage.
-		Graphics2D graphics2d = bufferedImage.createGraphics();
+		Graphics2D graphics2d = createGraphics();
 
 		/* Draw the Image on the BufferedImage
 		 * starting at (0,0). */
@@ -404,7 +1091,19 @@ public class SimplePicture
 					" could not be opened. " +
 			"Check to see that you can read to the directory.");
 
-		bufferedImage = ImageIO.read(file);
+		// Raw rasters need no decoding, and common BMPs are decoded by
+		// BmpCodec; anything else goes through ImageIO.
+		BufferedImage image = null;
+		if (RawRaster.isRawRaster(this.fileName))
+			image = RawRaster.read(this.fileName);
+		else if (BmpCodec.isBmp(this.fileName))
+			image = BmpCodec.read(this.fileName);
+		if (image == null)
+			image = ImageIO.read(file);
+		if (image == null)
+			throw new IOException(this.fileName +
+					" is not in an image format that can be read.");
+		setBufferedImage(image);
 	}
 
 	/**
@@ -449,7 +1148,7 @@ public class SimplePicture
 	 */
 	public void addMessage(String message, int xPos, int yPos) {
 		// Get a graphics context to use to draw on the BufferedImage.
-		Graphics2D graphics2d = bufferedImage.createGraphics();
+		Graphics2D graphics2d = createGraphics();
 
 		// Set the color to white.
 		graphics2d.setPaint(Color.white);
@@ -497,7 +1196,7 @@ public class SimplePicture
 		Graphics2D g2 = (Graphics2D) graphics;
 
 		// Draw the current Image onto the result image.
-		g2.drawImage(this.getImage(), scaleTransform, null);
+		g2.drawImage(heapImage(), scaleTransform, null);
 
 		return result;
 	}
@@ -547,9 +1246,19 @@ public class SimplePicture
 		if (posDot >= 0)
 			extension = fileName.substring(posDot + 1);
 
+		// Raw rasters are written as they are kept in memory.
+		if (RawRaster.isRawRaster(fileName)) {
+			RawRaster.write(this, fileName);
+			return;
+		}
+		if (BmpCodec.isBmp(fileName)) {
+			BmpCodec.write(this, fileName);
+			return;
+		}
+
 		/* Write the contents of the BufferedImage to the file
 		 * as JPEG. */
-		ImageIO.write(bufferedImage, extension, file);
+		ImageIO.write(heapImage(), extension, file);
 	}
 
 	/**
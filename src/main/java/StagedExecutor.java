@@ -0,0 +1,435 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A class that runs items through a chain of stages, such as decode,
+ * 	compute and encode, each on threads of its own, so that a slow stage
+ * 	(waiting for the disk or a codec) never leaves the cores of the other
+ * 	stages idle.
+ *
+ * Each stage takes its items from a bounded queue and puts its results in
+ * 	the queue of the next stage. When a queue is full, the stage feeding it
+ * 	waits (and so does submit, for the first queue), so the number of items
+ * 	in flight, and the memory they hold, never exceeds the sum of the queue
+ * 	capacities plus the number of threads. The number of threads and the
+ * 	capacity of the queue of each stage are chosen independently.
+ *
+ * Every stage keeps metrics (see StageMetrics): the depth of its queue, the
+ * 	time items wait in it, the time the stage spends on each item, and the
+ * 	time it is blocked by the next stage. The stage with the largest
+ * 	service time and a full queue is the bottleneck.
+ *
+ * 	StagedExecutor<Path> executor = StagedExecutor.<Path>first("decode", 2, 8, path -> load(path))
+ * 			.then("compute", 4, 4, picture -> picture.grayscale())
+ * 			.then("encode", 2, 4, picture -> write(picture))
+ * 			.start((path, stage, error) -> System.err.println(path + ": " + error));
+ * 	for (Path path : paths)
+ * 		executor.submit(path);
+ * 	executor.finish();
+ *
+ * @param <I> The type of the items submitted.
+ */
+public class StagedExecutor<I>
+{
+
+	/////////////////////////// Interfaces ////////////////////////////////////
+
+	/**
+	 * The work of a stage on one item.
+	 */
+	public interface Task<A, B> {
+		B apply(A item) throws Exception;
+	}
+
+	/**
+	 * Told about the items a stage failed on; they go no further.
+	 */
+	public interface FailureHandler<I> {
+		/**
+		 * @param input The item submitted.
+		 * @param stage The name of the stage that failed.
+		 * @param error What the task of the stage threw, which can be an
+		 * 	Error such as an OutOfMemoryError.
+		 */
+		void failed(I input, String stage, Throwable error);
+	}
+
+	/////////////////////////// Static Variables //////////////////////////////
+
+	/** The item telling a worker that no more items will come. */
+	private static final Job<Object> END = new Job<>(null, null);
+
+	////////////////////////////// Fields /////////////////////////////////////
+
+	private final List<Stage<I>> stages;
+	private final FailureHandler<? super I> failureHandler;
+
+	/** Counted down by the last worker of the last stage. */
+	private final CountDownLatch finished = new CountDownLatch(1);
+
+	private volatile boolean submitting = true;
+
+	/** What the FailureHandler threw first, rethrown by finish. */
+	private final AtomicReference<Throwable> handlerError =
+			new AtomicReference<>();
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	private StagedExecutor(List<Stage<I>> stages,
+			FailureHandler<? super I> failureHandler) {
+		this.stages = stages;
+		this.failureHandler = failureHandler;
+		for (int i = 0; i < stages.size(); i++) {
+			Stage<I> stage = stages.get(i);
+			Stage<I> next = i + 1 < stages.size() ? stages.get(i + 1) : null;
+			for (int t = 1; t <= stage.metrics.threads; t++) {
+				Thread worker = new Thread(() -> stage.run(next, this),
+						stage.metrics.name + "-" + t);
+				worker.setDaemon(true);
+				worker.start();
+			}
+		}
+	}
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * Starts describing a StagedExecutor with its first stage.
+	 *
+	 * @param name The name of the stage, used by the metrics.
+	 * @param threads The number of threads of the stage.
+	 * @param queueCapacity The number of items that can wait for the stage.
+	 * @param task The work of the stage on each item submitted.
+	 * @return The description, to which more stages can be added.
+	 */
+	public static <I, O> Builder<I, O> first(String name, int threads,
+			int queueCapacity, Task<? super I, ? extends O> task) {
+		return new Builder<I, O>(new ArrayList<>()).add(name, threads,
+				queueCapacity, task);
+	}
+
+	/**
+	 * Gives an item to the first stage, waiting while its queue is full.
+	 *
+	 * @param input The item.
+	 * @throws IllegalStateException If finish has been called.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public void submit(I input) throws InterruptedException {
+		if (!submitting)
+			throw new IllegalStateException("This executor is finished");
+		stages.get(0).put(new Job<Object>(input, input));
+	}
+
+	/**
+	 * Waits until every item submitted has gone through every stage (or
+	 * 	failed), and stops the threads. No item can be submitted afterwards.
+	 *
+	 * @throws InterruptedException If interrupted while waiting.
+	 * @throws RuntimeException What the FailureHandler threw, if it did;
+	 * 	the other items still went through the stages.
+	 * @throws Error What the FailureHandler threw, if it did.
+	 */
+	public void finish() throws InterruptedException {
+		if (submitting) {
+			submitting = false;
+			stages.get(0).end();
+		}
+		finished.await();
+
+		Throwable error = handlerError.get();
+		if (error instanceof RuntimeException)
+			throw (RuntimeException) error;
+		if (error instanceof Error)
+			throw (Error) error;
+	}
+
+	/**
+	 * Tells the FailureHandler about an item a stage failed on. What the
+	 * 	handler throws is kept for finish, so that the worker goes on.
+	 */
+	private void failed(I input, String stage, Throwable error) {
+		try {
+			failureHandler.failed(input, stage, error);
+		} catch (Throwable e) {
+			if (!handlerError.compareAndSet(null, e) && handlerError.get() != e)
+				handlerError.get().addSuppressed(e);
+		}
+	}
+
+	/**
+	 * @return The metrics of every stage, in order. They keep changing
+	 * 	until finish returns.
+	 */
+	public List<StageMetrics> getMetrics() {
+		List<StageMetrics> metrics = new ArrayList<>();
+		for (Stage<I> stage : stages)
+			metrics.add(stage.metrics);
+		return Collections.unmodifiableList(metrics);
+	}
+
+	/**
+	 * @return The metrics of every stage, one line each.
+	 */
+	public String toString() {
+		StringBuilder builder = new StringBuilder(StageMetrics.HEADER);
+		for (Stage<I> stage : stages)
+			builder.append('\n').append(stage.metrics);
+		return builder.toString();
+	}
+
+	/////////////////////////////// Builder ///////////////////////////////////
+
+	/**
+	 * The stages of a StagedExecutor being described.
+	 *
+	 * @param <I> The type of the items submitted.
+	 * @param <O> The type of the items made by the last stage so far.
+	 */
+	public static final class Builder<I, O> {
+		private final List<Stage<I>> stages;
+
+		private Builder(List<Stage<I>> stages) {
+			this.stages = stages;
+		}
+
+		/**
+		 * Adds a stage working on the items made by the last stage.
+		 *
+		 * @param name The name of the stage, used by the metrics.
+		 * @param threads The number of threads of the stage.
+		 * @param queueCapacity The number of items that can wait for the
+		 * 	stage.
+		 * @param task The work of the stage on each item.
+		 * @return The description with the stage added.
+		 */
+		public <N> Builder<I, N> then(String name, int threads,
+				int queueCapacity, Task<? super O, ? extends N> task) {
+			return new Builder<I, N>(new ArrayList<>(stages)).add(name, threads,
+					queueCapacity, task);
+		}
+
+		@SuppressWarnings("unchecked")
+		private <N> Builder<I, N> add(String name, int threads,
+				int queueCapacity, Task<?, ?> task) {
+			if (threads < 1 || queueCapacity < 1)
+				throw new IllegalArgumentException("The stage " + name
+						+ " needs at least one thread and a queue of one item: "
+						+ threads + " threads, " + queueCapacity + " items");
+			stages.add(new Stage<I>(name, threads, queueCapacity,
+					(Task<Object, Object>) task));
+			return (Builder<I, N>) this;
+		}
+
+		/**
+		 * Starts the threads of every stage.
+		 *
+		 * @param failureHandler Told about the items a stage failed on.
+		 * @return The running StagedExecutor.
+		 */
+		public StagedExecutor<I> start(FailureHandler<? super I> failureHandler) {
+			return new StagedExecutor<>(new ArrayList<>(stages), failureHandler);
+		}
+	}
+
+	/////////////////////////////// Stages ////////////////////////////////////
+
+	/**
+	 * An item on its way through the stages, with the item submitted.
+	 */
+	private static final class Job<I> {
+		final I input;
+		final Object value;
+		long queuedAt;
+
+		Job(I input, Object value) {
+			this.input = input;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * A stage: its queue, its task and its metrics.
+	 */
+	private static final class Stage<I> {
+		private final BlockingQueue<Job<?>> queue;
+		private final Task<Object, Object> task;
+		private final StageMetrics metrics;
+
+		/** The number of threads of this stage still running. */
+		private final AtomicInteger running;
+
+		Stage(String name, int threads, int queueCapacity,
+				Task<Object, Object> task) {
+			this.queue = new ArrayBlockingQueue<>(queueCapacity);
+			this.task = task;
+			this.metrics = new StageMetrics(name, threads, queueCapacity, queue);
+			this.running = new AtomicInteger(threads);
+		}
+
+		void put(Job<?> job) throws InterruptedException {
+			job.queuedAt = System.nanoTime();
+			queue.put(job);
+			metrics.queued(queue.size());
+		}
+
+		/**
+		 * Tells every thread of this stage to stop once the queue is empty.
+		 */
+		void end() throws InterruptedException {
+			for (int t = 0; t < metrics.threads; t++)
+				queue.put(END);
+		}
+
+		/**
+		 * The loop of each thread of this stage.
+		 */
+		@SuppressWarnings("unchecked")
+		void run(Stage<I> next, StagedExecutor<I> executor) {
+			try {
+				while (true) {
+					Job<I> job = (Job<I>) queue.take();
+					if (job == END)
+						break;
+					long start = System.nanoTime();
+					Object result;
+					try {
+						result = task.apply(job.value);
+					} catch (Throwable e) {
+						// Errors too, or the item would be lost with the worker
+						metrics.failed(start - job.queuedAt, System.nanoTime() - start);
+						executor.failed(job.input, metrics.name, e);
+						continue;
+					}
+					long done = System.nanoTime();
+					metrics.processed(start - job.queuedAt, done - start);
+					if (next != null) {
+						next.put(new Job<Object>(job.input, result));
+						metrics.blocked(System.nanoTime() - done);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				if (running.decrementAndGet() == 0) {
+					if (next == null)
+						executor.finished.countDown();
+					else
+						try {
+							next.end();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+				}
+			}
+		}
+	}
+
+	/////////////////////////////// Metrics ///////////////////////////////////
+
+	/**
+	 * The metrics of one stage. All times are in nanoseconds, and the
+	 * 	averages are over the items the stage has taken from its queue.
+	 */
+	public static final class StageMetrics {
+		static final String HEADER = String.format("%-10s %7s %11s %9s %6s %10s %11s %11s %11s",
+				"stage", "threads", "queue", "max queue", "items", "failed",
+				"avg wait", "avg service", "avg blocked");
+
+		private final String name;
+		private final int threads, queueCapacity;
+		private final BlockingQueue<?> queue;
+		private final AtomicInteger maxQueueDepth = new AtomicInteger();
+		private final AtomicLong processed = new AtomicLong(), failed = new AtomicLong();
+		private final AtomicLong waitTime = new AtomicLong(),
+				serviceTime = new AtomicLong(), maxServiceTime = new AtomicLong(),
+				blockedTime = new AtomicLong();
+
+		StageMetrics(String name, int threads, int queueCapacity,
+				BlockingQueue<?> queue) {
+			this.name = name;
+			this.threads = threads;
+			this.queueCapacity = queueCapacity;
+			this.queue = queue;
+		}
+
+		void queued(int depth) {
+			maxQueueDepth.accumulateAndGet(depth, Math::max);
+		}
+
+		void processed(long wait, long service) {
+			processed.incrementAndGet();
+			timed(wait, service);
+		}
+
+		void failed(long wait, long service) {
+			failed.incrementAndGet();
+			timed(wait, service);
+		}
+
+		private void timed(long wait, long service) {
+			waitTime.addAndGet(wait);
+			serviceTime.addAndGet(service);
+			maxServiceTime.accumulateAndGet(service, Math::max);
+		}
+
+		void blocked(long time) {
+			blockedTime.addAndGet(time);
+		}
+
+		/** @return The name of the stage. */
+		public String getName() { return name; }
+
+		/** @return The number of threads of the stage. */
+		public int getThreads() { return threads; }
+
+		/** @return The number of items the queue of the stage can hold. */
+		public int getQueueCapacity() { return queueCapacity; }
+
+		/** @return The number of items waiting in the queue right now. */
+		public int getQueueDepth() { return queue.size(); }
+
+		/** @return The largest number of items seen waiting in the queue. */
+		public int getMaxQueueDepth() { return maxQueueDepth.get(); }
+
+		/** @return The number of items the stage has done. */
+		public long getProcessed() { return processed.get(); }
+
+		/** @return The number of items the stage has failed on. */
+		public long getFailed() { return failed.get(); }
+
+		/** @return The average time an item waits in the queue. */
+		public long getAverageWaitTime() { return average(waitTime); }
+
+		/** @return The average time the stage spends on an item. */
+		public long getAverageServiceTime() { return average(serviceTime); }
+
+		/** @return The longest time the stage has spent on an item. */
+		public long getMaxServiceTime() { return maxServiceTime.get(); }
+
+		/** @return The average time the stage waits for room in the next
+		 * 	queue after an item. */
+		public long getAverageBlockedTime() { return average(blockedTime); }
+
+		private long average(AtomicLong total) {
+			long items = processed.get() + failed.get();
+			return items == 0 ? 0 : total.get() / items;
+		}
+
+		public String toString() {
+			return String.format("%-10s %7d %5d / %-3d %9d %6d %10d %8.2f ms %8.2f ms %8.2f ms",
+					name, threads, getQueueDepth(), queueCapacity,
+					getMaxQueueDepth(), getProcessed(), getFailed(),
+					getAverageWaitTime() / 1e6, getAverageServiceTime() / 1e6,
+					getAverageBlockedTime() / 1e6);
+		}
+	}
+
+} // End of StagedExecutor class
@@ -0,0 +1,244 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A class that applies a FilterPipeline to a picture stored in a file, a
+ * 	strip of rows at a time, so that pictures much larger than the heap can
+ * 	be filtered: only a few strips are ever held in memory, whatever the
+ * 	size of the picture.
+ *
+ * Each strip is read with the rows around it that the filters need (its
+ * 	halo, see FilterPipeline.getHalo), filtered as a Picture of its own, and
+ * 	its rows are written to the output as soon as they are done. The
+ * 	rasters of the strips are recycled through a RasterPool. Filters
+ * 	clip their neighbourhoods at the edges of the picture, and the halo
+ * 	rows stand in for the rest of the picture at the edges of a strip, so
+ * 	the result is exactly the same as when the whole picture is filtered at
+ * 	once.
+ *
+ * Raw raster files (see RawRaster, read through a MappedRaster) and 24-bit
+ * 	and 32-bit uncompressed BMP files (see BmpCodec) can be read, and both
+ * 	formats can be written. Only pipelines made of point operations, blur,
+ * 	showEdges, energy and filters added with a halo can be applied.
+ *
+ * 	new StripProcessor(new FilterPipeline().grayscale().blur(2))
+ * 			.process("huge.bmp", "huge-blurred.raster");
+ *
+ */
+public class StripProcessor
+{
+
+	/////////////////////////// Interfaces ////////////////////////////////////
+
+	/**
+	 * A picture whose rows can be read a few at a time.
+	 */
+	public interface RowSource extends Closeable {
+		/** @return The width of the picture. */
+		int getWidth();
+
+		/** @return The height of the picture. */
+		int getHeight();
+
+		/**
+		 * Copies consecutive whole rows of the picture into the array
+		 * 	provided, row by row, as 0x00RRGGBB ints.
+		 *
+		 * @param y The first row to read.
+		 * @param rows The number of rows to read.
+		 * @param pixels The array to copy into.
+		 * @param offset The index in pixels of the first pixel of row y.
+		 */
+		void readRows(int y, int rows, int[] pixels, int offset)
+				throws IOException;
+	}
+
+	/**
+	 * A picture whose rows can be written a few at a time.
+	 */
+	public interface RowSink extends Closeable {
+		/**
+		 * Replaces consecutive whole rows of the picture with the values
+		 * 	provided, laid out as in RowSource.readRows.
+		 *
+		 * @param y The first row to write.
+		 * @param rows The number of rows to write.
+		 * @param pixels The new values.
+		 * @param offset The index in pixels of the first pixel of row y.
+		 */
+		void writeRows(int y, int rows, int[] pixels, int offset)
+				throws IOException;
+	}
+
+	/////////////////////////// Static Variables //////////////////////////////
+
+	/** The number of pixels in a strip when no strip height is set. */
+	private static final int DEFAULT_STRIP_PIXELS = 1 << 20;
+
+	////////////////////////////// Fields /////////////////////////////////////
+
+	private final FilterPipeline pipeline;
+	private final int halo;
+
+	/** The number of rows written per strip, or 0 to pick it from the
+	 * 	width of the picture. */
+	private final int stripHeight;
+
+	/** The PixelTraversal the filters use within a strip. */
+	private final PixelTraversal traversal;
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	/**
+	 * Creates a StripProcessor applying the pipeline provided to strips of
+	 * 	about a million pixels, one row at a time within a strip.
+	 *
+	 * @param pipeline The filters to apply.
+	 * @throws IllegalArgumentException If a filter of the pipeline cannot be
+	 * 	applied a strip at a time.
+	 */
+	public StripProcessor(FilterPipeline pipeline) {
+		this(pipeline, 0, PixelTraversal.ROW_MAJOR);
+	}
+
+	private StripProcessor(FilterPipeline pipeline, int stripHeight,
+			PixelTraversal traversal) {
+		this.halo = pipeline.getHalo();
+		if (halo < 0)
+			throw new IllegalArgumentException(pipeline
+					+ " has filters that cannot be applied a strip at a time");
+		this.pipeline = pipeline;
+		this.stripHeight = stripHeight;
+		this.traversal = traversal;
+	}
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * @param stripHeight The number of rows written per strip; the rows of
+	 * 	the halo are read on top of them.
+	 * @return A StripProcessor like this one, with strips of the height
+	 * 	provided.
+	 */
+	public StripProcessor withStripHeight(int stripHeight) {
+		if (stripHeight < 1)
+			throw new IllegalArgumentException(
+					"The strip height must be positive: " + stripHeight);
+		return new StripProcessor(pipeline, stripHeight, traversal);
+	}
+
+	/**
+	 * @param traversal The PixelTraversal the filters use within a strip.
+	 * @return A StripProcessor like this one, with the traversal provided.
+	 */
+	public StripProcessor withTraversal(PixelTraversal traversal) {
+		return new StripProcessor(pipeline, stripHeight, traversal);
+	}
+
+	/**
+	 * @return The number of rows written per strip of a picture of the
+	 * 	width provided.
+	 */
+	public int getStripHeight(int width) {
+		if (stripHeight > 0)
+			return stripHeight;
+		return Math.max(1, DEFAULT_STRIP_PIXELS / width);
+	}
+
+	/**
+	 * Filters a picture file into another file, which is replaced if it
+	 * 	exists. Each file is a raw raster file or a BMP file, as its
+	 * 	extension says.
+	 *
+	 * @param inputFileName The name of the file to filter; it is not
+	 * 	modified.
+	 * @param outputFileName The name of the file to write the result to.
+	 * @throws IOException If a file cannot be read or written.
+	 */
+	public void process(String inputFileName, String outputFileName)
+			throws IOException {
+		try (RowSource source = open(inputFileName);
+				RowSink sink = create(outputFileName, source.getWidth(),
+						source.getHeight())) {
+			process(source, sink);
+		}
+	}
+
+	/**
+	 * Filters the rows of a source into a sink of the same size, a strip at
+	 * 	a time, from top to bottom. Neither is closed.
+	 *
+	 * @param source The picture to filter.
+	 * @param sink Where to write the result.
+	 * @throws IOException If the source cannot be read or the sink written.
+	 */
+	public void process(RowSource source, RowSink sink) throws IOException {
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int rows = getStripHeight(width);
+
+		// the strips are mostly the same size, so their rasters, and those
+		// of the pictures the filters make, are recycled from strip to strip
+		try (RasterPool pool = new RasterPool()) {
+			for (int y = 0; y < height; y += rows) {
+				int stripEnd = Math.min(height, y + rows);
+				int readStart = Math.max(0, y - halo);
+				int readEnd = Math.min(height, stripEnd + halo);
+
+				try (RasterPool.Scope scope = pool.open()) {
+					Picture strip = scope.picture(width, readEnd - readStart);
+					strip.setTraversal(traversal);
+					source.readRows(readStart, readEnd - readStart,
+							strip.getRasterData(), 0);
+					strip.rasterChanged();
+
+					Picture result = pipeline.apply(strip);
+					sink.writeRows(y, stripEnd - y, result.getRasterData(),
+							(y - readStart) * width);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Opens a raw raster file or a BMP file for reading a strip at a time.
+	 *
+	 * @param fileName The name of the file.
+	 * @return The rows of the file; close it when done.
+	 * @throws IOException If the file cannot be read, or is neither a raw
+	 * 	raster file nor a BMP file BmpCodec reads.
+	 */
+	public static RowSource open(String fileName) throws IOException {
+		if (RawRaster.isRawRaster(fileName))
+			return MappedRaster.open(fileName, false);
+		if (BmpCodec.isBmp(fileName)) {
+			BmpCodec.Reader reader = BmpCodec.Reader.open(fileName);
+			if (reader != null)
+				return reader;
+		}
+		throw new IOException(fileName
+				+ " cannot be read a strip at a time; use a .raster or .bmp file.");
+	}
+
+	/**
+	 * Creates (or replaces) a raw raster file or a BMP file for writing a
+	 * 	strip at a time.
+	 *
+	 * @param fileName The name of the file.
+	 * @param width The width of the picture.
+	 * @param height The height of the picture.
+	 * @return The rows of the file; close it when every row is written.
+	 * @throws IOException If the file cannot be written, or has an extension
+	 * 	other than .raster and .bmp.
+	 */
+	public static RowSink create(String fileName, int width, int height)
+			throws IOException {
+		if (RawRaster.isRawRaster(fileName))
+			return MappedRaster.create(fileName, width, height);
+		if (BmpCodec.isBmp(fileName))
+			return BmpCodec.Writer.create(fileName, width, height);
+		throw new IOException(fileName
+				+ " cannot be written a strip at a time; use a .raster or .bmp file.");
+	}
+
+} // End of StripProcessor class
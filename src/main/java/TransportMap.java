@@ -0,0 +1,252 @@
+import java.util.Arrays;
+
+/**
+ * A class that decides in which order to remove vertical and horizontal
+ * 	seams when shrinking a picture in both directions.
+ *
+ * Removing r horizontal and c vertical seams can be done in many orders,
+ * 	and each order removes different seams. The transport map holds, for
+ * 	every r and c, the lowest total energy of the seams removed on the way
+ * 	to a picture with r fewer rows and c fewer columns: the cheaper of
+ * 	removing a horizontal seam from the best picture with r - 1 fewer rows,
+ * 	and removing a vertical seam from the best picture with c - 1 fewer
+ * 	columns. Walking the map back from the target size gives the order.
+ *
+ * Every cell of the map needs the seams of a picture of its own, so the
+ * 	map is computed on a copy of the luminosity scaled down to at most
+ * 	MAX_PROXY_PIXELS pixels, with the numbers of seams scaled to match.
+ * 	Pictures that are already that small get an exact map. The order found
+ * 	on the small copy is then stretched to the real numbers of seams.
+ *
+ */
+public class TransportMap
+{
+
+	/////////////////////////// Static Variables //////////////////////////////
+
+	/** The largest number of pixels the transport map is computed on. */
+	public static final int MAX_PROXY_PIXELS = 2500;
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * Decides in which order to remove seams from a picture.
+	 *
+	 * @param luminosity The luminosity of pixel (x, y) at index
+	 * 	y * width + x, as an unsigned byte.
+	 * @param width The width of the picture.
+	 * @param height The height of the picture.
+	 * @param rows The number of horizontal seams to remove.
+	 * @param columns The number of vertical seams to remove.
+	 * @return One entry per seam to remove, in order: true to remove a
+	 * 	horizontal seam, false to remove a vertical one.
+	 */
+	public static boolean[] removalOrder(byte[] luminosity, int width,
+			int height, int rows, int columns) {
+		if (rows < 0 || columns < 0 || rows >= height || columns >= width
+				|| (rows > 0 && columns > 0
+						&& (height - rows < 2 || width - columns < 2)))
+			throw new IllegalArgumentException("Cannot remove " + rows
+					+ " rows and " + columns + " columns from a "
+					+ width + "x" + height + " picture");
+
+		boolean[] order = new boolean[rows + columns];
+		if (rows == 0 || columns == 0) {
+			Arrays.fill(order, rows > 0);
+			return order;
+		}
+
+		double scale = Math.min(1, Math.sqrt(MAX_PROXY_PIXELS
+				/ ((double) width * height)));
+		if (scale == 1)
+			return solve(luminosity, width, height, rows, columns);
+
+		int proxyWidth = Math.max(2, (int) Math.round(width * scale));
+		int proxyHeight = Math.max(2, (int) Math.round(height * scale));
+		byte[] proxy = scaleDown(luminosity, width, height,
+				proxyWidth, proxyHeight);
+		int proxyRows = Math.min(proxyHeight - 2,
+				(int) Math.round((double) rows * proxyHeight / height));
+		int proxyColumns = Math.min(proxyWidth - 2,
+				(int) Math.round((double) columns * proxyWidth / width));
+		boolean[] proxyOrder = solve(proxy, proxyWidth, proxyHeight,
+				proxyRows, proxyColumns);
+		return stretch(proxyOrder, proxyRows, proxyColumns, rows, columns);
+	}
+
+	/**
+	 * Computes the transport map exactly and walks it back.
+	 */
+	private static boolean[] solve(byte[] luminosity, int width, int height,
+			int rows, int columns) {
+		// Whether the best way to each cell removes a horizontal seam last.
+		boolean[] horizontalLast = new boolean[(rows + 1) * (columns + 1)];
+
+		// The costs and pictures of the previous and current rows of cells.
+		long[] previousCost = new long[columns + 1];
+		long[] currentCost = new long[columns + 1];
+		byte[][] previous = new byte[columns + 1][];
+		byte[][] current = new byte[columns + 1][];
+		int[] verticalSeam = new int[height];
+		int[] horizontalSeam = new int[width];
+
+		for (int r = 0; r <= rows; r++) {
+			int cellHeight = height - r;
+			for (int c = 0; c <= columns; c++) {
+				int cellWidth = width - c;
+				if (r == 0 && c == 0) {
+					current[0] = luminosity;
+					currentCost[0] = 0;
+					continue;
+				}
+
+				// Remove a horizontal seam from the cell above, or a
+				// vertical seam from the cell to the left.
+				long fromAbove = Long.MAX_VALUE, fromLeft = Long.MAX_VALUE;
+				if (r > 0)
+					fromAbove = previousCost[c] + SeamSolver.solve(previous[c],
+							cellWidth, cellHeight + 1, false, horizontalSeam);
+				if (c > 0)
+					fromLeft = currentCost[c - 1] + SeamSolver.solve(current[c - 1],
+							cellWidth + 1, cellHeight, true, verticalSeam);
+
+				if (fromAbove < fromLeft) {
+					horizontalLast[r * (columns + 1) + c] = true;
+					currentCost[c] = fromAbove;
+					current[c] = removeHorizontal(previous[c], cellWidth,
+							cellHeight + 1, horizontalSeam);
+				} else {
+					currentCost[c] = fromLeft;
+					current[c] = removeVertical(current[c - 1], cellWidth + 1,
+							cellHeight, verticalSeam);
+				}
+			}
+			long[] swapCost = previousCost;
+			previousCost = currentCost;
+			currentCost = swapCost;
+			byte[][] swap = previous;
+			previous = current;
+			current = swap;
+		}
+
+		boolean[] order = new boolean[rows + columns];
+		int r = rows, c = columns;
+		for (int i = order.length - 1; i >= 0; i--) {
+			order[i] = horizontalLast[r * (columns + 1) + c];
+			if (order[i])
+				r--;
+			else
+				c--;
+		}
+		return order;
+	}
+
+	/**
+	 * Turns an order found for some numbers of seams into one for other
+	 * 	numbers of seams. Each seam of the new order is given the place of
+	 * 	the seam of the same kind at the same fraction of the old order.
+	 */
+	private static boolean[] stretch(boolean[] order, int rows, int columns,
+			int newRows, int newColumns) {
+		int[] horizontalAt = new int[rows];
+		int[] verticalAt = new int[columns];
+		int h = 0, v = 0;
+		for (int i = 0; i < order.length; i++) {
+			if (order[i])
+				horizontalAt[h++] = i;
+			else
+				verticalAt[v++] = i;
+		}
+
+		boolean[] stretched = new boolean[newRows + newColumns];
+		h = 0;
+		v = 0;
+		for (int i = 0; i < stretched.length; i++) {
+			double horizontalTime = h < newRows
+					? place(horizontalAt, h, newRows, order.length) : 2;
+			double verticalTime = v < newColumns
+					? place(verticalAt, v, newColumns, order.length) : 2;
+			stretched[i] = horizontalTime < verticalTime;
+			if (stretched[i])
+				h++;
+			else
+				v++;
+		}
+		return stretched;
+	}
+
+	/**
+	 * @return The place, from 0 to 1, of seam k out of count in an order of
+	 * 	the given length where the seams of the same kind are at the
+	 * 	indices provided.
+	 */
+	private static double place(int[] indices, int k, int count, int length) {
+		if (indices.length == 0)
+			return (k + 0.5) / count;
+		double position = (k + 0.5) * indices.length / count;
+		int i = (int) position;
+		return (indices[i] + position - i) / length;
+	}
+
+	/**
+	 * Scales a luminosity plane down by averaging the pixels that fall in
+	 * 	each pixel of the smaller plane.
+	 */
+	private static byte[] scaleDown(byte[] luminosity, int width, int height,
+			int newWidth, int newHeight) {
+		int[] columnOf = new int[width];
+		int[] columnCount = new int[newWidth];
+		for (int x = 0; x < width; x++) {
+			columnOf[x] = (int) ((long) x * newWidth / width);
+			columnCount[columnOf[x]]++;
+		}
+
+		byte[] scaled = new byte[newWidth * newHeight];
+		long[] sums = new long[newWidth];
+		for (int newY = 0; newY < newHeight; newY++) {
+			int yStart = (int) ((long) newY * height / newHeight);
+			int yEnd = (int) ((long) (newY + 1) * height / newHeight);
+			Arrays.fill(sums, 0);
+			for (int y = yStart; y < yEnd; y++) {
+				int row = y * width;
+				for (int x = 0; x < width; x++)
+					sums[columnOf[x]] += luminosity[row + x] & 0xff;
+			}
+			for (int newX = 0; newX < newWidth; newX++)
+				scaled[newY * newWidth + newX] = (byte) (sums[newX]
+						/ ((long) columnCount[newX] * (yEnd - yStart)));
+		}
+		return scaled;
+	}
+
+	/**
+	 * @return A copy of a luminosity plane without pixel seam[y] of each
+	 * 	row y.
+	 */
+	private static byte[] removeVertical(byte[] luminosity, int width,
+			int height, int[] seam) {
+		byte[] removed = new byte[(width - 1) * height];
+		for (int y = 0; y < height; y++) {
+			int from = y * width, to = y * (width - 1);
+			System.arraycopy(luminosity, from, removed, to, seam[y]);
+			System.arraycopy(luminosity, from + seam[y] + 1, removed,
+					to + seam[y], width - 1 - seam[y]);
+		}
+		return removed;
+	}
+
+	/**
+	 * @return A copy of a luminosity plane without pixel seam[x] of each
+	 * 	column x.
+	 */
+	private static byte[] removeHorizontal(byte[] luminosity, int width,
+			int height, int[] seam) {
+		byte[] removed = new byte[width * (height - 1)];
+		for (int y = 0; y < height - 1; y++)
+			for (int x = 0; x < width; x++)
+				removed[y * width + x] =
+						luminosity[(y < seam[x] ? y : y + 1) * width + x];
+		return removed;
+	}
+
+} // End of TransportMap class
@@ -0,0 +1,156 @@
+/**
+ * A class that computes the 64-bit xxHash (XXH64) of a sequence of ints, as
+ * 	the hash of their bytes in little-endian order, fed a few ints at a
+ * 	time. It is what SimplePicture.digest uses to hash rasters.
+ *
+ * 	XxHash64 hash = new XxHash64(seed);
+ * 	hash.update(pixels, 0, pixels.length);
+ * 	long digest = hash.digest();
+ *
+ * The digest is the same as that of any other XXH64 implementation given
+ * 	the same bytes and seed, so it can be compared with digests computed
+ * 	outside this program.
+ *
+ */
+public class XxHash64
+{
+
+	/////////////////////////// Static Variables //////////////////////////////
+
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+	/** The number of ints in a stripe of 32 bytes. */
+	private static final int STRIPE = 8;
+
+	////////////////////////////// Fields /////////////////////////////////////
+
+	private final long seed;
+	private long v1, v2, v3, v4;
+
+	/** The ints not hashed yet, fewer than a stripe. */
+	private final int[] pending = new int[STRIPE];
+	private int pendingCount;
+
+	/** The number of ints hashed so far. */
+	private long length;
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	/**
+	 * Creates an XxHash64 of no ints yet.
+	 *
+	 * @param seed The seed of the hash.
+	 */
+	public XxHash64(long seed) {
+		this.seed = seed;
+		v1 = seed + PRIME1 + PRIME2;
+		v2 = seed + PRIME2;
+		v3 = seed;
+		v4 = seed - PRIME1;
+	}
+
+	////////////////////////////////// Methods ////////////////////////////////
+
+	/**
+	 * Adds ints to the hash.
+	 *
+	 * @param values The array holding the ints.
+	 * @param offset The index in values of the first int.
+	 * @param count The number of ints.
+	 * @return This XxHash64.
+	 */
+	public XxHash64 update(int[] values, int offset, int count) {
+		length += count;
+		int end = offset + count;
+
+		if (pendingCount > 0) {
+			int taken = Math.min(count, STRIPE - pendingCount);
+			System.arraycopy(values, offset, pending, pendingCount, taken);
+			pendingCount += taken;
+			offset += taken;
+			if (pendingCount < STRIPE)
+				return this;
+			stripe(pending, 0);
+			pendingCount = 0;
+		}
+
+		for (; offset + STRIPE <= end; offset += STRIPE)
+			stripe(values, offset);
+
+		pendingCount = end - offset;
+		System.arraycopy(values, offset, pending, 0, pendingCount);
+		return this;
+	}
+
+	/**
+	 * @return The hash of the ints added so far. More ints can be added
+	 * 	afterwards.
+	 */
+	public long digest() {
+		long hash;
+		if (length >= STRIPE) {
+			hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+					+ Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			hash = merge(hash, v1);
+			hash = merge(hash, v2);
+			hash = merge(hash, v3);
+			hash = merge(hash, v4);
+		} else {
+			hash = seed + PRIME5;
+		}
+		hash += 4 * length;
+
+		int i = 0;
+		for (; i + 2 <= pendingCount; i += 2) {
+			hash ^= round(0, lane(pending, i));
+			hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+		}
+		if (i < pendingCount) {
+			hash ^= (pending[i] & 0xffffffffL) * PRIME1;
+			hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= PRIME2;
+		hash ^= hash >>> 29;
+		hash *= PRIME3;
+		hash ^= hash >>> 32;
+		return hash;
+	}
+
+	/**
+	 * @return The XXH64 of the ints provided, with the seed provided.
+	 */
+	public static long hash(int[] values, int offset, int count, long seed) {
+		return new XxHash64(seed).update(values, offset, count).digest();
+	}
+
+	private void stripe(int[] values, int offset) {
+		v1 = round(v1, lane(values, offset));
+		v2 = round(v2, lane(values, offset + 2));
+		v3 = round(v3, lane(values, offset + 4));
+		v4 = round(v4, lane(values, offset + 6));
+	}
+
+	/**
+	 * @return The 8 little-endian bytes of two consecutive ints, as a long.
+	 */
+	private static long lane(int[] values, int offset) {
+		return (values[offset] & 0xffffffffL) | (long) values[offset + 1] << 32;
+	}
+
+	private static long round(long accumulator, long lane) {
+		accumulator += lane * PRIME2;
+		return Long.rotateLeft(accumulator, 31) * PRIME1;
+	}
+
+	private static long merge(long hash, long accumulator) {
+		hash ^= round(0, accumulator);
+		return hash * PRIME1 + PRIME4;
+	}
+
+} // End of XxHash64 class
@@ -0,0 +1,124 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+
+public class PictureTest_BatchProcessor {
+	/*
+	 * Returns a new temporary directory holding copies of bundled pictures.
+	 */
+	private static Path copyPictures(String... names) throws IOException {
+		Path directory = Files.createTempDirectory("batch");
+		directory.toFile().deleteOnExit();
+		for (String name : names) {
+			File source = new File(Picture.class.getResource(name).getFile().replaceAll("%20", " "));
+			Path copy = directory.resolve(name);
+			Files.copy(source.toPath(), copy);
+			copy.toFile().deleteOnExit();
+		}
+		return directory;
+	}
+
+	/*
+	 * Validate that a chain of operations applies the same filters as the
+	 * Picture methods of the same names
+	 */
+	@Test
+	public void testParse()
+	{
+		Picture pic = Picture.loadPicture("Maria1.bmp");
+		FilterPipeline pipeline = BatchProcessor.parse(Arrays.asList(
+				"grayscale", "lighten:20", "blur:2", "flip:HORIZONTAL", "carveMany:3"));
+		Picture picCorrect = pic.grayscale().lighten(20).blur(2)
+				.flip(Picture.HORIZONTAL).carveMany(3);
+		assertTrue(picCorrect.equals(pipeline.apply(pic)));
+		assertEquals(4, pipeline.getPassCount());
+
+		for (String operation : new String[] {"sharpen", "blur", "blur:x", "flip:SIDEWAYS", "negate:1"}) {
+			try {
+				BatchProcessor.parse(Arrays.asList(operation));
+				fail(operation + " should be refused");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	/*
+	 * Validate that globs find the files they match, and only those
+	 */
+	@Test
+	public void testFindFiles() throws IOException
+	{
+		Path directory = copyPictures("Micro.bmp", "Tiny.bmp", "Okinawa_tiny.bmp");
+		List<Path> files = BatchProcessor.findFiles(directory + "/*.bmp");
+		assertEquals(3, files.size());
+		assertEquals(directory.resolve("Micro.bmp"), files.get(0));
+		assertEquals(1, BatchProcessor.findFiles(directory + "/T*.bmp").size());
+		assertEquals(0, BatchProcessor.findFiles(directory + "/*.png").size());
+		assertEquals("out/Micro_gray.png",
+				BatchProcessor.outputFileName("out/*_gray.png", files.get(0)));
+	}
+
+	/*
+	 * Validate that every picture is filtered and written, on several
+	 * threads, and that a file that cannot be read is reported as failed
+	 */
+	@Test
+	public void testProcess() throws IOException
+	{
+		Path directory = copyPictures("Micro.bmp", "Tiny.bmp", "Okinawa_tiny.bmp", "Maria1.bmp");
+		Path broken = directory.resolve("Broken.bmp");
+		Files.write(broken, new byte[] {1, 2, 3});
+		broken.toFile().deleteOnExit();
+
+		FilterPipeline pipeline = BatchProcessor.parse(Arrays.asList("negate", "rotateRight"));
+		String output = directory.resolve("out").resolve("*_done.bmp").toString();
+		BatchProcessor.Report report = new BatchProcessor(pipeline, 3)
+				.process(BatchProcessor.findFiles(directory + "/*.bmp"), output);
+		assertEquals(4, report.getProcessed());
+		assertEquals(1, report.getFailed());
+
+		for (String name : new String[] {"Micro", "Tiny", "Okinawa_tiny", "Maria1"}) {
+			File result = new File(output.replace("*", name));
+			result.deleteOnExit();
+			Picture picCorrect = Picture.loadPicture(name + ".bmp").negate().rotateRight();
+			assertTrue(name, picCorrect.equals(new Picture(result.getPath())));
+		}
+	}
+
+	/*
+	 * Validate that nothing is processed when two input files would be
+	 * written to the same output file
+	 */
+	@Test
+	public void testProcess_SameOutput() throws IOException
+	{
+		Path directory = copyPictures("Micro.bmp", "Tiny.bmp");
+		Path subdirectory = Files.createDirectory(directory.resolve("more"));
+		subdirectory.toFile().deleteOnExit();
+		Path twin = Files.copy(directory.resolve("Micro.bmp"), subdirectory.resolve("Micro.bmp"));
+		twin.toFile().deleteOnExit();
+
+		String output = directory.resolve("out").resolve("*.bmp").toString();
+		BatchProcessor processor = new BatchProcessor(BatchProcessor.parse(Arrays.asList("negate")), 2);
+		try {
+			processor.process(BatchProcessor.findFiles(directory + "/**.bmp"), output);
+			fail("Both Micro.bmp files would be written to out/Micro.bmp");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Micro.bmp"));
+		}
+		assertFalse(new File(output.replace("*", "Tiny")).exists());
+
+		assertEquals(2, processor.process(BatchProcessor.findFiles(directory + "/*.bmp"), output).getProcessed());
+		new File(output.replace("*", "Micro")).deleteOnExit();
+		new File(output.replace("*", "Tiny")).deleteOnExit();
+	}
+}
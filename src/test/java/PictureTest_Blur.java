@@ -0,0 +1,79 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+public class PictureTest_Blur {
+	/*
+	 * Checks every pixel of a blurred picture against getBlurColor.
+	 */
+	private static void assertBlurMatches(Picture pic, int blurThreshold) {
+		Picture picTest = pic.blur(blurThreshold);
+		for (int y = 0; y < pic.getHeight(); y++)
+			for (int x = 0; x < pic.getWidth(); x++)
+				assertEquals("pixel (" + x + ", " + y + ") with threshold "
+						+ blurThreshold,
+						pic.getBlurColor(pic, x, y, blurThreshold).getRGB(),
+						picTest.getBasicPixel(x, y));
+	}
+
+	/*
+	 * Validate that blur matches getBlurColor for small and large thresholds
+	 */
+	@Test
+	public void testBlur_Thresholds()
+	{
+		Picture pic = Picture.loadPicture("Okinawa_tiny.bmp");
+		for (int blurThreshold : new int[] {0, 1, 2, 5, 11})
+			assertBlurMatches(pic, blurThreshold);
+	}
+
+	/*
+	 * Validate that blur handles thresholds larger than the picture
+	 */
+	@Test
+	public void testBlur_LargerThanPicture()
+	{
+		Picture pic = Picture.loadPicture("Tiny.bmp");
+		assertBlurMatches(pic, Math.max(pic.getWidth(), pic.getHeight()) + 3);
+	}
+
+	/*
+	 * Validate that a huge threshold blurs the whole picture into its
+	 * average, as a threshold as large as the picture does
+	 */
+	@Test
+	public void testBlur_HugeThreshold()
+	{
+		Picture pic = Picture.loadPicture("Tiny.bmp");
+		Picture picCorrect = pic.blur(Math.max(pic.getWidth(), pic.getHeight()));
+		assertTrue(picCorrect.equals(pic.blur(Integer.MAX_VALUE)));
+		assertTrue(picCorrect.equals(pic.blur(Integer.MAX_VALUE / 2 + 1)));
+	}
+
+	/*
+	 * Validate that blur gives the same result on tiles and on several threads
+	 */
+	@Test
+	public void testBlur_TiledParallel()
+	{
+		Picture pic = Picture.loadPicture("Creek.bmp");
+		Picture picCorrect = Picture.loadPicture("Creek_blur.bmp");
+		pic.setTraversal(PixelTraversal.tiled(37, 23).withParallelism(4));
+		Picture picCopy = new Picture(pic);
+		Picture picTest = pic.blur(3);
+		assertTrue(pic.equals(picCopy));
+		assertTrue(picCorrect.equals(picTest));
+	}
+
+	/*
+	 * Validate that blur with threshold 0 copies the picture
+	 */
+	@Test
+	public void testBlur_Zero()
+	{
+		Picture pic = Picture.loadPicture("Maria1.bmp");
+		assertTrue(pic.equals(pic.blur(0)));
+	}
+
+}
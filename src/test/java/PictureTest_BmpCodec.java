@@ -0,0 +1,80 @@
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+
+public class PictureTest_BmpCodec {
+	/*
+	 * Returns the path of a bundled picture.
+	 */
+	private static String resource(String pictureName) {
+		return Picture.class.getResource(pictureName).getFile().replaceAll("%20", " ");
+	}
+
+	/*
+	 * Returns a Picture holding the pixels of an image.
+	 */
+	private static Picture toPicture(BufferedImage image) {
+		Picture pic = new Picture(image.getWidth(), image.getHeight());
+		for (int y = 0; y < image.getHeight(); y++)
+			for (int x = 0; x < image.getWidth(); x++)
+				pic.setBasicPixel(x, y, image.getRGB(x, y));
+		return pic;
+	}
+
+	/*
+	 * Returns a Picture holding the pixels ImageIO reads from a file.
+	 */
+	private static Picture readWithImageIO(String fileName) throws IOException {
+		return toPicture(ImageIO.read(new File(fileName)));
+	}
+
+	/*
+	 * Validate that BmpCodec reads 24-bit, 32-bit and top-down BMPs as
+	 * ImageIO does
+	 */
+	@Test
+	public void testRead_MatchesImageIO() throws IOException
+	{
+		for (String name : new String[] {"Camel.bmp", "Maria1.bmp", "SecretMessage.bmp", "Tiny.bmp"}) {
+			String fileName = resource(name);
+			Picture picTest = toPicture(BmpCodec.read(fileName));
+			assertTrue(name, readWithImageIO(fileName).equals(picTest));
+		}
+	}
+
+	/*
+	 * Validate that a BMP written by BmpCodec is read back unchanged, by
+	 * BmpCodec and by ImageIO, whatever the padding of its rows
+	 */
+	@Test
+	public void testWrite_RoundTrip() throws IOException
+	{
+		for (String name : new String[] {"Okinawa_tiny.bmp", "Maria1.bmp", "Micro.bmp"}) {
+			Picture pic = Picture.loadPicture(name);
+			File file = File.createTempFile("picture", ".bmp");
+			file.deleteOnExit();
+			pic.writeOrFail(file.getPath());
+			assertTrue(name, pic.equals(new Picture(file.getPath())));
+			assertTrue(name, pic.equals(readWithImageIO(file.getPath())));
+		}
+	}
+
+	/*
+	 * Validate that files BmpCodec does not handle are left to ImageIO
+	 */
+	@Test
+	public void testRead_NotBmp() throws IOException
+	{
+		String fileName = resource("Creek.bmp");
+		assertNull(BmpCodec.read(fileName));
+		assertTrue(readWithImageIO(fileName).equals(new Picture(fileName)));
+	}
+
+}
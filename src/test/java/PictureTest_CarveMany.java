@@ -86,4 +86,19 @@ public class PictureTest_CarveMany {
 		assertTrue(picCorrect.equals(picTest));
 	}
 
+	/*
+	 * Validate that carveMany gives the same result as calling carve
+	 * repeatedly, all the way down to a single column
+	 */
+	@Test
+	public void testCarveMany_MatchesCarve()
+	{
+		Picture pic 		= Picture.loadPicture("Okinawa_tiny.bmp");
+		Picture picCorrect	= pic;
+		for (int i = 1; i < pic.getWidth(); i++) {
+			picCorrect = picCorrect.carve();
+			assertTrue(picCorrect.equals(pic.carveMany(i)));
+		}
+	}
+
 }
@@ -0,0 +1,83 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+public class PictureTest_ChannelLut {
+	/*
+	 * Validate that adjust changes each color value by its curve, and does
+	 * not modify the original Picture object
+	 */
+	@Test
+	public void testAdjust_Gamma()
+	{
+		Picture pic 		= Picture.loadPicture("Maria1.bmp");
+		Picture picCopy 	= new Picture(pic);
+		Picture picTest		= pic.adjust(ChannelLut.gamma(2.2));
+		assertTrue(pic.equals(picCopy));
+		for (int y = 0; y < pic.getHeight(); y++) {
+			for (int x = 0; x < pic.getWidth(); x++) {
+				int rgb = pic.getBasicPixel(x, y);
+				int red = (int) Math.round(255 * Math.pow(Pixel.getRed(rgb) / 255.0, 1 / 2.2));
+				int green = (int) Math.round(255 * Math.pow(Pixel.getGreen(rgb) / 255.0, 1 / 2.2));
+				int blue = (int) Math.round(255 * Math.pow(Pixel.getBlue(rgb) / 255.0, 1 / 2.2));
+				int expected = 0xff000000 | (red << 16) | (green << 8) | blue;
+				assertEquals(expected, picTest.getBasicPixel(x, y));
+			}
+		}
+	}
+
+	/*
+	 * Validate the levels and contrast curves, clamping included
+	 */
+	@Test
+	public void testCurves()
+	{
+		ChannelLut levels = ChannelLut.levels(50, 150);
+		assertEquals(0x000000, levels.apply(0x203032));
+		assertEquals(0x80ffff, levels.apply(0x649696));
+		ChannelLut contrast = ChannelLut.contrast(2);
+		assertEquals(0x00ff80, contrast.apply(0x3cc880));
+		assertEquals(0x123456, ChannelLut.gamma(1).apply(0x123456));
+		assertEquals(0x123456, ChannelLut.IDENTITY.apply(0xff123456));
+
+		// extreme arguments saturate instead of overflowing
+		assertEquals(0xff00ff, ChannelLut.contrast(1e10).apply(0xff10ff));
+		assertEquals(0xffffff, ChannelLut.contrast(Double.MAX_VALUE).apply(0xffffff));
+		ChannelLut wide = ChannelLut.levels(Integer.MIN_VALUE, Integer.MAX_VALUE);
+		assertEquals(0x808080, wide.apply(0x000000));
+		assertEquals(0x000000, ChannelLut.levels(254, Integer.MAX_VALUE).apply(0xffffff));
+	}
+
+	/*
+	 * Validate that then gives the same result as applying two tables one
+	 * after the other, on several threads
+	 */
+	@Test
+	public void testThen()
+	{
+		Picture pic = Picture.loadPicture("Creek.bmp");
+		pic.setParallelism(3);
+		ChannelLut first = ChannelLut.add(60, -40, 10);
+		ChannelLut second = ChannelLut.contrast(1.5);
+		Picture picCorrect = pic.adjust(first).adjust(second);
+		assertTrue(picCorrect.equals(pic.adjust(first.then(second))));
+	}
+
+	/*
+	 * Validate that the channel filters of Picture and of FilterPipeline
+	 * agree, and that negative amounts leave the Picture unchanged
+	 */
+	@Test
+	public void testChannelFilters()
+	{
+		Picture pic = Picture.loadPicture("Maria1.bmp");
+		assertTrue(pic.darken(70).equals(new FilterPipeline().darken(70).apply(pic)));
+		assertTrue(pic.addRed(90).equals(new FilterPipeline().addRed(90).apply(pic)));
+		assertTrue(pic.addGreen(90).equals(new FilterPipeline().addGreen(90).apply(pic)));
+		assertTrue(pic.addBlue(90).equals(new FilterPipeline().addBlue(90).apply(pic)));
+		assertSame(pic, pic.darken(-10));
+		assertSame(pic, pic.lighten(-10));
+	}
+
+}
@@ -0,0 +1,130 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+
+public class PictureTest_Equals {
+	/*
+	 * Validate that pictures are equal exactly when they have the same size
+	 * and pixels, wherever the difference is and wherever the pixels are
+	 */
+	@Test
+	public void testEquals()
+	{
+		Picture pic = Picture.loadPicture("Okinawa_tiny.bmp");
+		int width = pic.getWidth(), height = pic.getHeight();
+		Picture copy = new Picture(pic);
+		assertTrue(pic.equals(copy));
+		assertTrue(pic.equals(Picture.loadPicture("Okinawa_tiny.bmp")));
+		assertFalse(pic.equals(pic.rotateRight()));
+		assertFalse(pic.equals(Picture.loadPicture("Micro.bmp")));
+		assertFalse(pic.equals("not a picture"));
+
+		// differences in full blocks, and one in the last partial block
+		for (int index : new int[] {0, 15, 16, width * height / 2, width * height - 1}) {
+			Picture changed = new Picture(pic);
+			int x = index % width, y = index / width;
+			changed.setBasicPixel(x, y, pic.getBasicPixel(x, y) ^ 1);
+			assertFalse("pixel " + index, pic.equals(changed));
+		}
+
+		copy.moveOffHeap();
+		assertTrue(pic.equals(copy));
+		assertTrue(copy.equals(pic));
+		copy.setBasicPixel(width - 1, height - 1, pic.getBasicPixel(width - 1, height - 1) ^ 1);
+		assertFalse(copy.equals(pic));
+	}
+
+	/*
+	 * Validate that the digest is the XXH64 of the raster, that it follows
+	 * the pixels as they change, and that hashCode agrees with equals
+	 */
+	@Test
+	public void testDigest()
+	{
+		// XXH64 of no bytes, and of "abcd", with seed 0
+		assertEquals(0xEF46DB3751D8E999L, XxHash64.hash(new int[0], 0, 0, 0));
+		assertEquals(0xDE0327B0D25D92CCL, XxHash64.hash(new int[] {0x64636261}, 0, 1, 0));
+
+		Picture pic = Picture.loadPicture("Okinawa_tiny.bmp");
+		Picture copy = new Picture(pic);
+		assertEquals(pic.digest(), copy.digest());
+		assertEquals(pic.hashCode(), copy.hashCode());
+		assertNotEquals(pic.digest(), pic.rotateRight().digest());
+
+		long digest = pic.digest();
+		pic.setBasicPixel(3, 4, 0x123456);
+		assertNotEquals(digest, pic.digest());
+		pic.setBasicPixel(3, 4, copy.getBasicPixel(3, 4));
+		assertEquals(digest, pic.digest());
+
+		copy.moveOffHeap();
+		copy.rasterChanged();
+		assertEquals(digest, copy.digest());
+	}
+
+	/*
+	 * Validate that pixels drawn through a Graphics handed out before the
+	 * digest was computed are seen by equals and hashCode
+	 */
+	@Test
+	public void testDigest_Graphics()
+	{
+		Picture pic = Picture.loadPicture("Okinawa_tiny.bmp");
+		Picture drawn = new Picture(pic);
+		Picture other = new Picture(pic);
+		Graphics graphics = drawn.getGraphics();
+		drawn.hashCode();
+		graphics.setColor(Color.red);
+		graphics.fillRect(2, 3, 5, 4);
+		Graphics2D otherGraphics = other.createGraphics();
+		otherGraphics.setColor(Color.red);
+		otherGraphics.fillRect(2, 3, 5, 4);
+
+		assertTrue(drawn.equals(other));
+		assertEquals(other.hashCode(), drawn.hashCode());
+		assertFalse(drawn.equals(pic));
+	}
+
+	/*
+	 * Validate that pixels set through the BufferedImage after the digest
+	 * was computed are seen by equals and hashCode
+	 */
+	@Test
+	public void testDigest_BufferedImage()
+	{
+		Picture pic = Picture.loadPicture("Okinawa_tiny.bmp");
+		Picture changed = new Picture(pic);
+		int hashCode = changed.hashCode();
+		changed.getBufferedImage().setRGB(4, 5, 0x123456);
+		assertNotEquals(hashCode, changed.hashCode());
+
+		Picture picCorrect = new Picture(pic);
+		picCorrect.setBasicPixel(4, 5, 0x123456);
+		assertTrue(changed.equals(picCorrect));
+		assertEquals(picCorrect.hashCode(), changed.hashCode());
+		assertFalse(changed.equals(pic));
+		assertEquals(pic.hashCode(), new Picture(pic).hashCode());
+	}
+
+	/*
+	 * Validate that duplicate pictures can be found through a hash index
+	 */
+	@Test
+	public void testHashIndex()
+	{
+		Picture pic = Picture.loadPicture("Okinawa_tiny.bmp");
+		Map<Picture, String> index = new HashMap<>();
+		index.put(pic, "original");
+		index.put(pic.negate(), "negative");
+		assertEquals("original", index.get(new Picture(pic)));
+		assertEquals("negative", index.get(pic.negate()));
+		assertNull(index.get(pic.grayscale()));
+	}
+}
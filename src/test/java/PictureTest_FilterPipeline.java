@@ -0,0 +1,85 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+public class PictureTest_FilterPipeline {
+	/*
+	 * Validate that a pipeline gives the same result as the chain of filters
+	 * it is made of, and does not modify the original Picture object
+	 */
+	@Test
+	public void testPipeline_MatchesFilters()
+	{
+		Picture pic 		= Picture.loadPicture("Creek.bmp");
+		Picture picCopy 	= new Picture(pic);
+		Picture picCorrect	= pic.grayscale().lighten(20).negate().blur(2).luminosity().showEdges(10);
+		FilterPipeline pipeline = new FilterPipeline().grayscale().lighten(20).negate()
+				.blur(2).luminosity().showEdges(10);
+		Picture picTest		= pipeline.apply(pic);
+		assertTrue(pic.equals(picCopy));
+		assertTrue(picCorrect.equals(picTest));
+		assertEquals(4, pipeline.getPassCount());
+	}
+
+	/*
+	 * Validate that the channel operations match the expected pictures
+	 */
+	@Test
+	public void testPipeline_ChannelOps()
+	{
+		Picture pic = Picture.loadPicture("Gray.bmp");
+		assertTrue(Picture.loadPicture("Gray_darker.bmp").equals(new FilterPipeline().darken(30).apply(pic)));
+		assertTrue(Picture.loadPicture("Gray_lighter.bmp").equals(new FilterPipeline().lighten(30).apply(pic)));
+		assertTrue(Picture.loadPicture("Gray_more_green.bmp").equals(new FilterPipeline().addGreen(30).apply(pic)));
+		assertTrue(Picture.loadPicture("Gray_more_blue.bmp").equals(new FilterPipeline().addBlue(30).apply(pic)));
+		assertTrue(Picture.loadPicture("Gray_more_red.bmp").equals(new FilterPipeline().addRed(30).apply(pic)));
+	}
+
+	/*
+	 * Validate that a run of channel operations, fused into one pass, still
+	 * clamps after each of them
+	 */
+	@Test
+	public void testPipeline_FusedClamps()
+	{
+		Picture pic = Picture.loadPicture("Maria1.bmp");
+		FilterPipeline pipeline = new FilterPipeline().lighten(200).darken(200)
+				.addRed(100).negate().addBlue(50);
+		assertEquals(1, pipeline.getPassCount());
+		Picture picCorrect = pic.lighten(200).negate().lighten(200).negate();
+		picCorrect = new FilterPipeline().addRed(100).negate().addBlue(50).apply(picCorrect);
+		assertTrue(picCorrect.equals(pipeline.apply(pic)));
+	}
+
+	/*
+	 * Validate that pipelines run the same on several threads, and that
+	 * adding a step does not change the pipeline it is added to
+	 */
+	@Test
+	public void testPipeline_Parallel()
+	{
+		Picture pic = Picture.loadPicture("Maria1.bmp");
+		FilterPipeline pipeline = new FilterPipeline().luminosity().energy();
+		FilterPipeline longer = pipeline.filter("flip", p -> p.flip(Picture.VERTICAL));
+		Picture picCorrect = pipeline.apply(pic);
+		pic.setParallelism(4);
+		assertTrue(picCorrect.equals(pipeline.apply(pic)));
+		assertTrue(picCorrect.flip(Picture.VERTICAL).equals(longer.apply(pic)));
+		assertEquals(2, pipeline.getPassCount());
+		assertEquals("FilterPipeline[luminosity, energy, flip]", longer.toString());
+	}
+
+	/*
+	 * Validate that an empty pipeline copies the picture
+	 */
+	@Test
+	public void testPipeline_Empty()
+	{
+		Picture pic = Picture.loadPicture("Tiny.bmp");
+		Picture picTest = new FilterPipeline().apply(pic);
+		assertNotSame(pic, picTest);
+		assertTrue(pic.equals(picTest));
+	}
+
+}
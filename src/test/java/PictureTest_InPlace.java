@@ -0,0 +1,74 @@
+import static org.junit.Assert.*;
+
+import java.util.function.UnaryOperator;
+
+import org.junit.Test;
+
+
+public class PictureTest_InPlace {
+	/*
+	 * Checks that an in-place filter returns the Picture it is given, and
+	 * leaves it equal to what the constructive filter makes of a copy of it.
+	 */
+	private static void assertSameAsFilter(String name, UnaryOperator<Picture> filter,
+			UnaryOperator<Picture> inPlace) {
+		Picture pic 		= Picture.loadPicture(name);
+		Picture picCorrect	= filter.apply(pic);
+		Picture picTest		= new Picture(pic);
+		assertSame(picTest, inPlace.apply(picTest));
+		assertTrue(picCorrect.equals(picTest));
+	}
+
+	/*
+	 * Validate that each in-place filter gives the same result as the
+	 * filter that makes a new Picture
+	 */
+	@Test
+	public void testInPlace_MatchesFilters()
+	{
+		String name = "Maria1.bmp";
+		assertSameAsFilter(name, Picture::grayscale, Picture::grayscaleInPlace);
+		assertSameAsFilter(name, Picture::negate, Picture::negateInPlace);
+		assertSameAsFilter(name, p -> p.lighten(30), p -> p.lightenInPlace(30));
+		assertSameAsFilter(name, p -> p.darken(30), p -> p.darkenInPlace(30));
+		assertSameAsFilter(name, p -> p.addRed(40), p -> p.addRedInPlace(40));
+		assertSameAsFilter(name, p -> p.addGreen(40), p -> p.addGreenInPlace(40));
+		assertSameAsFilter(name, p -> p.addBlue(40), p -> p.addBlueInPlace(40));
+		assertSameAsFilter(name, Picture::luminosity, Picture::luminosityInPlace);
+		assertSameAsFilter(name, Picture::energy, Picture::energyInPlace);
+		assertSameAsFilter(name, Picture::showSeam, Picture::showSeamInPlace);
+	}
+
+	/*
+	 * Validate that the in-place filters that compare with another Picture
+	 * give the same result as the filters that make a new Picture
+	 */
+	@Test
+	public void testInPlace_TwoPictures()
+	{
+		Picture background = Picture.loadPicture("Creek.bmp");
+		Picture other = Picture.loadPicture("Maria1_negate.bmp");
+		assertSameAsFilter("Maria1.bmp", p -> p.chromaKey(118, 54, background, 30),
+				p -> p.chromaKeyInPlace(118, 54, background, 30));
+		assertSameAsFilter("Maria1.bmp", p -> p.showDifferences(other),
+				p -> p.showDifferencesInPlace(other));
+	}
+
+	/*
+	 * Validate that a chain of in-place filters on several threads gives the
+	 * same result as the chain of filters
+	 */
+	@Test
+	public void testInPlace_Chain()
+	{
+		Picture pic = Picture.loadPicture("Creek.bmp");
+		pic.setParallelism(3);
+		Picture picCopy = new Picture(pic);
+		Picture picCorrect = pic.negate().lighten(20).addGreen(10).energy();
+		Picture picTest = new Picture(pic).negateInPlace().lightenInPlace(20)
+				.addGreenInPlace(10).energyInPlace();
+		assertTrue(pic.equals(picCopy));
+		assertTrue(picCorrect.equals(picTest));
+	}
+
+}
@@ -0,0 +1,69 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics;
+
+import org.junit.Test;
+
+
+public class PictureTest_LuminosityCache {
+	/*
+	 * Luminosity of pixel (x, y) as shown by the luminosity filter.
+	 */
+	private static int luminosityAt(Picture pic, int x, int y) {
+		return pic.luminosity().getBasicPixel(x, y) & 0xff;
+	}
+
+	/*
+	 * Validate that the cached luminosity gives the same results as the
+	 * fixtures when used by several filters in a row
+	 */
+	@Test
+	public void testLuminosity_Reused()
+	{
+		Picture pic 		= Picture.loadPicture("Okinawa.bmp");
+		Picture picCopy 	= new Picture(pic);
+		assertTrue(Picture.loadPicture("OkinawaLuminosity.bmp").equals(pic.luminosity()));
+		assertTrue(Picture.loadPicture("OkinawaEnergy.bmp").equals(pic.energy()));
+		assertTrue(Picture.loadPicture("OkinawaSeam.bmp").equals(pic.showSeam()));
+		assertTrue(Picture.loadPicture("OkinawaLuminosity.bmp").equals(pic.luminosity()));
+		assertTrue(pic.equals(picCopy));
+	}
+
+	/*
+	 * Validate that every way of changing the pixels drops the cached
+	 * luminosity
+	 */
+	@Test
+	public void testLuminosity_Invalidated()
+	{
+		Picture pic = new Picture(4, 3);
+		assertEquals(254, luminosityAt(pic, 1, 1));
+
+		pic.setBasicPixel(1, 1, Color.BLACK.getRGB());
+		assertEquals(0, luminosityAt(pic, 1, 1));
+
+		pic.getPixel(1, 1).setGreen(100);
+		assertEquals(72, luminosityAt(pic, 1, 1));
+
+		new PixelCursor(pic).moveTo(1, 1).setRGB(0, 0, 200);
+		assertEquals(14, luminosityAt(pic, 1, 1));
+
+		pic.setAllPixelsToAColor(Color.BLACK);
+		assertEquals(0, luminosityAt(pic, 2, 2));
+
+		Graphics graphics = pic.getGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, 4, 3);
+		assertEquals(254, luminosityAt(pic, 2, 2));
+
+		Picture red = new Picture(4, 3);
+		red.setAllPixelsToAColor(Color.RED);
+		pic.copyPicture(red);
+		assertEquals(53, luminosityAt(pic, 2, 2));
+
+		pic.setRow(2, new int[] {0, 0, 0, 0});
+		assertEquals(0, luminosityAt(pic, 2, 2));
+	}
+
+}
@@ -0,0 +1,130 @@
+import static org.junit.Assert.*;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+
+public class PictureTest_OffHeap {
+	/*
+	 * Validate that the pixel accessors read and write the pixels of a
+	 * picture off the heap without moving it back on the heap
+	 */
+	@Test
+	public void testAccessors()
+	{
+		Picture pic = Picture.loadPicture("Maria1.bmp");
+		Picture picCopy = new Picture(pic);
+		pic.moveOffHeap();
+		assertTrue(pic.isOffHeap());
+
+		assertEquals(picCopy.getBasicPixel(17, 42), pic.getBasicPixel(17, 42));
+		assertEquals(picCopy.getPixel(3, 5).getRed(), pic.getPixel(3, 5).getRed());
+		int[] region = new int[5 * 3];
+		int[] expected = new int[5 * 3];
+		pic.getRegion(10, 20, 5, 3, region, 0);
+		picCopy.getRegion(10, 20, 5, 3, expected, 0);
+		assertArrayEquals(expected, region);
+
+		pic.setBasicPixel(0, 0, 0xff123456);
+		pic.getPixel(1, 0).setRed(7);
+		pic.setRow(2, new int[pic.getWidth()]);
+		assertTrue(pic.isOffHeap());
+		assertEquals(0xff123456, pic.getBasicPixel(0, 0));
+		assertEquals(7, pic.getPixel(1, 0).getRed());
+		assertEquals(0xff000000, pic.getBasicPixel(5, 2));
+
+		// copies can be made from and into pictures off the heap, and copies
+		// of pictures off the heap stay off the heap
+		Picture picOff = new Picture(pic);
+		assertTrue(picOff.isOffHeap());
+		assertTrue(pic.equals(picOff));
+		picOff.setBasicPixel(0, 0, 0);
+		assertEquals(0xff123456, pic.getBasicPixel(0, 0));
+		Picture picBack = new Picture(pic);
+		picBack.moveOnHeap();
+		picCopy.moveOffHeap();
+		picCopy.copyPicture(picBack);
+		assertTrue(picCopy.isOffHeap());
+		assertEquals(0xff123456, picCopy.getBasicPixel(0, 0));
+		assertEquals(picBack.getBasicPixel(300, 200), picCopy.getBasicPixel(300, 200));
+	}
+
+	/*
+	 * Validate that filters work unchanged on a picture off the heap
+	 */
+	@Test
+	public void testFilters()
+	{
+		Picture pic = Picture.loadPicture("Okinawa.bmp");
+		Picture picCorrect = pic.blur(2).negate();
+		pic.moveOffHeap();
+		Picture picTest = pic.blur(2).negate();
+		assertTrue(picCorrect.equals(picTest));
+		assertTrue(picCorrect.equals(pic.blur(2).negate()));
+
+		// filters that start from a copy leave the picture off the heap, and
+		// the pictures filters make are on the heap
+		Picture picGray = Picture.loadPicture("Okinawa.bmp");
+		picGray.moveOffHeap();
+		Picture gray = picGray.grayscale();
+		assertTrue(picGray.isOffHeap());
+		assertFalse(gray.isOffHeap());
+		assertTrue(Picture.loadPicture("Okinawa.bmp").grayscale().equals(gray));
+
+		// the luminosity cached before a change made off the heap is dropped
+		Picture picLuminosity = Picture.loadPicture("Okinawa.bmp");
+		picLuminosity.luminosity();
+		picLuminosity.moveOffHeap();
+		picLuminosity.setBasicPixel(0, 0, 0xffffff);
+		picLuminosity.moveOnHeap();
+		Picture picWhite = Picture.loadPicture("Okinawa.bmp");
+		picWhite.setBasicPixel(0, 0, 0xffffff);
+		assertTrue(picWhite.luminosity().equals(picLuminosity.luminosity()));
+	}
+
+	/*
+	 * Validate that release frees the direct buffer of a picture off the
+	 * heap at once, and that the picture cannot be used afterwards
+	 */
+	@Test
+	public void testRelease()
+	{
+		BufferPoolMXBean direct = null;
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+			if (pool.getName().equals("direct"))
+				direct = pool;
+		Picture pic = Picture.loadPicture("Okinawa.bmp");
+		pic.moveOffHeap();
+		long used = direct.getMemoryUsed();
+		pic.release();
+		assertFalse(pic.isOffHeap());
+		assertTrue(direct.getMemoryUsed() <= used - 4L * pic.getWidth() * pic.getHeight());
+		pic.release();
+
+		Picture onHeap = Picture.loadPicture("Micro.bmp");
+		onHeap.release();
+		for (Picture released : new Picture[] {pic, onHeap}) {
+			try {
+				released.getBasicPixel(0, 0);
+				fail("A picture cannot be used once it is released");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+			try {
+				new Picture(released);
+				fail("A picture cannot be copied once it is released");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		}
+
+		try (RasterPool.Scope scope = new RasterPool().open()) {
+			scope.picture(4, 4).release();
+			fail("A pooled picture is released by its Scope");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+}
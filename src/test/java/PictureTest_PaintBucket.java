@@ -0,0 +1,64 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+
+public class PictureTest_PaintBucket {
+	/*
+	 * Validate that paintBucket fills a large uniform picture without
+	 * running out of stack
+	 */
+	@Test
+	public void testPaintBucket_Large()
+	{
+		Picture pic 		= new Picture(3000, 2000);
+		Picture picTest		= pic.paintBucket(1500, 1000, 0, Color.RED);
+		for (int y = 0; y < pic.getHeight(); y += 97)
+			for (int x = 0; x < pic.getWidth(); x += 89)
+				assertEquals(Color.RED.getRGB(), picTest.getBasicPixel(x, y));
+		assertEquals(Color.RED.getRGB(), picTest.getBasicPixel(2999, 1999));
+		assertEquals(Color.WHITE.getRGB(), pic.getBasicPixel(0, 0));
+	}
+
+	/*
+	 * Validate that paintBucket follows pixels touching on a corner, but
+	 * not pixels outside of the threshold
+	 */
+	@Test
+	public void testPaintBucket_Diagonal()
+	{
+		Picture pic = new Picture(5, 5);
+		pic.setAllPixelsToAColor(Color.WHITE);
+		for (int i = 0; i < 5; i++)
+			pic.setBasicPixel(i, i, Color.BLACK.getRGB());
+		pic.setBasicPixel(4, 0, new Color(10, 10, 10).getRGB());
+
+		Picture picTest = pic.paintBucket(0, 0, 5, Color.BLUE);
+		for (int i = 0; i < 5; i++)
+			assertEquals(Color.BLUE.getRGB(), picTest.getBasicPixel(i, i));
+		assertEquals(new Color(10, 10, 10).getRGB(), picTest.getBasicPixel(4, 0));
+		assertEquals(Color.WHITE.getRGB(), picTest.getBasicPixel(1, 0));
+	}
+
+	/*
+	 * Validate that paintBucket stops when painting with the color that is
+	 * already there, and leaves pixels outside of the threshold alone
+	 */
+	@Test
+	public void testPaintBucket_SameColor()
+	{
+		Picture pic = new Picture(20, 10);
+		for (int y = 0; y < 10; y++)
+			pic.setBasicPixel(10, y, Color.BLACK.getRGB());
+
+		Picture picTest = pic.paintBucket(2, 2, 10, Color.WHITE);
+		assertTrue(pic.equals(picTest));
+		picTest = pic.paintBucket(2, 2, 10, Color.GREEN);
+		assertEquals(Color.GREEN.getRGB(), picTest.getBasicPixel(9, 9));
+		assertEquals(Color.BLACK.getRGB(), picTest.getBasicPixel(10, 5));
+		assertEquals(Color.WHITE.getRGB(), picTest.getBasicPixel(11, 5));
+	}
+
+}
@@ -0,0 +1,128 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+public class PictureTest_Parallel {
+	/*
+	 * Loads a picture whose filters run on several threads.
+	 */
+	private static Picture loadParallelPicture(String pictureName, int parallelism) {
+		Picture pic = Picture.loadPicture(pictureName);
+		pic.setParallelism(parallelism);
+		return pic;
+	}
+
+	/*
+	 * Validate that grayscale gives the same result on several threads
+	 */
+	@Test
+	public void testGrayscale_Parallel()
+	{
+		Picture pic 		= loadParallelPicture("Creek.bmp", 4);
+		Picture picCopy 	= new Picture(pic);
+		Picture picCorrect	= Picture.loadPicture("Creek_grayscale.bmp");
+		Picture picTest		= pic.grayscale();
+		assertTrue(pic.equals(picCopy));
+		assertTrue(picCorrect.equals(picTest));
+	}
+
+	/*
+	 * Validate that negate gives the same result on several threads
+	 */
+	@Test
+	public void testNegate_Parallel()
+	{
+		Picture pic 		= loadParallelPicture("Maria1.bmp", 3);
+		Picture picCopy 	= new Picture(pic);
+		Picture picCorrect	= Picture.loadPicture("Maria1_negate.bmp");
+		Picture picTest		= pic.negate();
+		assertTrue(pic.equals(picCopy));
+		assertTrue(picCorrect.equals(picTest));
+	}
+
+	/*
+	 * Validate that the color translations give the same results on
+	 * several threads as on one
+	 */
+	@Test
+	public void testColorTranslations_Parallel()
+	{
+		Picture pic 		= Picture.loadPicture("Creek.bmp");
+		Picture picParallel	= loadParallelPicture("Creek.bmp", 4);
+		assertTrue(pic.lighten(30).equals(picParallel.lighten(30)));
+		assertTrue(pic.darken(30).equals(picParallel.darken(30)));
+		assertTrue(pic.addRed(30).equals(picParallel.addRed(30)));
+		assertTrue(pic.addGreen(30).equals(picParallel.addGreen(30)));
+		assertTrue(pic.addBlue(30).equals(picParallel.addBlue(30)));
+		assertTrue(Picture.loadPicture("Gray_lighter.bmp").equals(
+				loadParallelPicture("Gray.bmp", 4).lighten(30)));
+		assertTrue(Picture.loadPicture("Gray_more_blue.bmp").equals(
+				loadParallelPicture("Gray.bmp", 4).addBlue(30)));
+	}
+
+	/*
+	 * Validate that luminosity gives the same result on several threads
+	 */
+	@Test
+	public void testLuminosity_Parallel()
+	{
+		Picture pic 		= loadParallelPicture("Camel.bmp", 4);
+		Picture picCopy 	= new Picture(pic);
+		Picture picCorrect	= Picture.loadPicture("CamelLuminosity.bmp");
+		Picture picTest		= pic.luminosity();
+		assertTrue(pic.equals(picCopy));
+		assertTrue(picCorrect.equals(picTest));
+	}
+
+	/*
+	 * Validate that energy gives the same result on several threads, including
+	 * pictures with fewer rows than there are bands
+	 */
+	@Test
+	public void testEnergy_Parallel()
+	{
+		Picture pic 		= loadParallelPicture("Okinawa.bmp", 4);
+		Picture picCopy 	= new Picture(pic);
+		Picture picCorrect	= Picture.loadPicture("OkinawaEnergy.bmp");
+		Picture picTest		= pic.energy();
+		assertTrue(pic.equals(picCopy));
+		assertTrue(picCorrect.equals(picTest));
+		assertTrue(Picture.loadPicture("MicroEnergy.bmp").equals(
+				loadParallelPicture("Micro.bmp", 8).energy()));
+	}
+
+	/*
+	 * Validate that chromaKey gives the same result on several threads
+	 */
+	@Test
+	public void testChromaKey_Parallel()
+	{
+		Picture pic 		= loadParallelPicture("Logos.bmp", 4);
+		Picture bg 			= Picture.loadPicture("Creek.bmp");
+		Picture picCopy 	= new Picture(pic);
+		Picture picCorrect	= Picture.loadPicture("Logos_chromaKeyCreek.bmp");
+		Picture picTest		= pic.chromaKey(118, 54, bg, 30);
+		assertTrue(pic.equals(picCopy));
+		assertTrue(picCorrect.equals(picTest));
+
+		Picture maria 		= Picture.loadPicture("Maria1.bmp");
+		Picture hmc 		= Picture.loadPicture("HMC.bmp");
+		Picture mariaParallel = loadParallelPicture("Maria1.bmp", 4);
+		assertTrue(maria.chromaKey(118, 54, hmc, 30).equals(
+				mariaParallel.chromaKey(118, 54, hmc, 30)));
+	}
+
+	/*
+	 * Validate that tiles and threads can be combined
+	 */
+	@Test
+	public void testTiledParallel()
+	{
+		Picture pic 		= Picture.loadPicture("Creek.bmp");
+		pic.setTraversal(PixelTraversal.tiled(16, 16).withParallelism(4));
+		Picture picCorrect	= Picture.loadPicture("Creek_negate.bmp");
+		assertTrue(picCorrect.equals(pic.negate()));
+		assertTrue(Picture.loadPicture("Creek_grayscale.bmp").equals(pic.grayscale()));
+	}
+}
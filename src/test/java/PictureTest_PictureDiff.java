@@ -0,0 +1,121 @@
+import static org.junit.Assert.*;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import org.junit.Test;
+
+
+public class PictureTest_PictureDiff {
+	/*
+	 * Returns a new gray picture of the size provided.
+	 */
+	private static Picture gray(int width, int height) {
+		Picture pic = new Picture(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				pic.setBasicPixel(x, y, 0x808080);
+		return pic;
+	}
+
+	/*
+	 * Validate the statistics of a comparison, and that the tolerance
+	 * decides which pixels changed
+	 */
+	@Test
+	public void testStatistics()
+	{
+		Picture pic = gray(10, 10);
+		Picture changed = gray(10, 10);
+		changed.setBasicPixel(1, 1, 0x838080); // red + 3
+		changed.setBasicPixel(5, 5, 0x80808a); // blue + 10
+
+		PictureDiff.Result result = new PictureDiff().compare(pic, changed);
+		assertEquals(100, result.getPixels());
+		assertEquals(2, result.getChangedPixels());
+		assertEquals(10, result.getMaxDelta());
+		assertEquals((9 + 100) / 300.0, result.getMeanSquaredError(), 1e-9);
+		assertEquals(10 * Math.log10(255.0 * 255.0 * 300 / 109),
+				result.getPsnr(), 1e-9);
+		assertNull(result.getOutput());
+
+		result = new PictureDiff().withTolerance(3).compare(pic, changed);
+		assertEquals(1, result.getChangedPixels());
+		assertEquals(10, result.getMaxDelta());
+
+		result = new PictureDiff().compare(pic, new Picture(pic));
+		assertTrue(result.isIdentical());
+		assertEquals(Double.POSITIVE_INFINITY, result.getPsnr(), 0);
+		assertTrue(result.getRegions().isEmpty());
+	}
+
+	/*
+	 * Validate that changed pixels touching on a side or a corner make up
+	 * one region, and that separate regions get their own bounding box
+	 */
+	@Test
+	public void testRegions()
+	{
+		Picture pic = gray(20, 12);
+		Picture changed = gray(20, 12);
+		// a diagonal line and a U shape, whose arms meet only at the bottom
+		for (int i = 0; i < 4; i++)
+			changed.setBasicPixel(1 + i, 1 + i, 0);
+		for (int y = 2; y < 8; y++) {
+			changed.setBasicPixel(10, y, 0);
+			changed.setBasicPixel(14, y, 0);
+		}
+		for (int x = 10; x <= 14; x++)
+			changed.setBasicPixel(x, 8, 0);
+		// a single pixel in the corner
+		changed.setBasicPixel(19, 11, 0);
+
+		for (int parallelism : new int[] {1, 3}) {
+			List<Rectangle> regions = new PictureDiff()
+					.withTraversal(PixelTraversal.parallel(parallelism))
+					.compare(pic, changed).getRegions();
+			assertEquals(3, regions.size());
+			assertEquals(new Rectangle(1, 1, 4, 4), regions.get(0));
+			assertEquals(new Rectangle(10, 2, 5, 7), regions.get(1));
+			assertEquals(new Rectangle(19, 11, 1, 1), regions.get(2));
+		}
+	}
+
+	/*
+	 * Validate the pictures a comparison makes, and that showDifferences
+	 * still marks every difference in red
+	 */
+	@Test
+	public void testOutput()
+	{
+		Picture pic = Picture.loadPicture("Okinawa_tiny.bmp");
+		Picture other = pic.lighten(1);
+		PictureDiff diff = new PictureDiff()
+				.withTraversal(PixelTraversal.parallel(4));
+
+		Picture difference = diff.withOutput(PictureDiff.Output.DIFFERENCE)
+				.compare(pic, other).getOutput();
+		Picture highlight = diff.withOutput(PictureDiff.Output.HIGHLIGHT)
+				.withTolerance(0).compare(pic, other).getOutput();
+		Picture marked = pic.showDifferences(other);
+		for (int y = 0; y < pic.getHeight(); y++) {
+			for (int x = 0; x < pic.getWidth(); x++) {
+				int rgb = pic.getBasicPixel(x, y), rgb2 = other.getBasicPixel(x, y);
+				int expected = 0xff000000;
+				for (int shift = 0; shift < 24; shift += 8)
+					expected |= Math.abs((rgb >> shift & 0xff) - (rgb2 >> shift & 0xff)) << shift;
+				assertEquals(expected, difference.getBasicPixel(x, y));
+				int mark = rgb == rgb2 ? rgb : 0xffff0000;
+				assertEquals(mark, highlight.getBasicPixel(x, y));
+				assertEquals(mark, marked.getBasicPixel(x, y));
+			}
+		}
+
+		try {
+			diff.compare(pic, gray(2, 2));
+			fail("A picture cannot be compared to a smaller one");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,167 @@
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+
+public class PictureTest_RasterPool {
+	/*
+	 * Returns a new picture of the size provided with a pattern of colors.
+	 */
+	private static Picture pattern(int width, int height) {
+		Picture pic = new Picture(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				pic.setBasicPixel(x, y, (x * 37 + y * 11) << 8 | (x ^ y) & 0xff);
+		return pic;
+	}
+
+	/*
+	 * Validate that the rasters of a closed Scope are drawn again by the next
+	 * Scope asking for pictures of the same size
+	 */
+	@Test
+	public void testRecycling()
+	{
+		RasterPool pool = new RasterPool();
+		try (RasterPool.Scope scope = pool.open()) {
+			scope.picture(20, 10);
+			scope.picture(20, 10);
+			assertEquals(2, pool.getLeased());
+		}
+		assertEquals(0, pool.getLeased());
+		assertEquals(2 * 20 * 10 * 4, pool.getFreeBytes());
+
+		try (RasterPool.Scope scope = pool.open()) {
+			Picture pic = scope.picture(20, 10);
+			scope.picture(10, 20);
+			// recycled rasters are cleared, as new pictures are white
+			assertEquals(0xffffffff, pic.getBasicPixel(5, 5));
+		}
+		assertEquals(1, pool.getHits());
+		assertEquals(3, pool.getMisses());
+	}
+
+	/*
+	 * Validate that the filters of a picture in a Scope make pictures in the
+	 * same Scope, with the same pixels as without a pool
+	 */
+	@Test
+	public void testFilters()
+	{
+		Picture pic = pattern(30, 20);
+		Picture picCorrect = pic.grayscale().blur(2).negate();
+		RasterPool pool = new RasterPool();
+		for (int i = 0; i < 3; i++) {
+			try (RasterPool.Scope scope = pool.open()) {
+				Picture copy = scope.copy(pic);
+				Picture result = copy.grayscale().blur(2).negate();
+				assertSame(scope, result.getRasterScope());
+				assertTrue(scope.size() >= 4);
+				assertTrue(picCorrect.equals(result));
+			}
+		}
+		assertTrue(pool.getHits() > 0);
+	}
+
+	/*
+	 * Validate that the pictures of a closed Scope cannot be used, except
+	 * those it kept, and that adopted pictures are recycled
+	 */
+	@Test
+	public void testClose()
+	{
+		RasterPool pool = new RasterPool();
+		Picture pic = pattern(16, 16);
+		Picture lost, kept;
+		try (RasterPool.Scope scope = pool.open()) {
+			assertSame(pic, scope.adopt(pic));
+			lost = pic.negate();
+			kept = scope.keep(pic.grayscale());
+			assertNull(kept.getRasterScope());
+		}
+		assertEquals(0, pool.getLeased());
+		assertTrue(pattern(16, 16).grayscale().equals(kept));
+		for (Picture released : new Picture[] {pic, lost}) {
+			try {
+				released.getBasicPixel(0, 0);
+				fail("A picture cannot be used once its Scope is closed");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		}
+
+		try {
+			new Picture(lost);
+			fail("A picture cannot be copied once its Scope is closed");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		RasterPool.Scope closed = pool.open();
+		closed.close();
+		try {
+			closed.picture(16, 16);
+			fail("A closed Scope cannot make pictures");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	/*
+	 * Validate that copies made with the copy constructor are not pooled, so
+	 * that they can still be used once the Scope is closed
+	 */
+	@Test
+	public void testCopy()
+	{
+		RasterPool pool = new RasterPool();
+		Picture pic = pattern(16, 16);
+		Picture copy, grayCopy;
+		try (RasterPool.Scope scope = pool.open()) {
+			Picture pooled = scope.copy(pic);
+			copy = new Picture(pooled);
+			grayCopy = new Picture(pooled.grayscale());
+			assertNull(copy.getRasterScope());
+			assertNull(grayCopy.getRasterScope());
+			assertEquals(2, scope.size());
+		}
+		assertEquals(0, pool.getLeased());
+		assertTrue(pic.equals(copy));
+		assertTrue(pic.grayscale().equals(grayCopy));
+	}
+
+	/*
+	 * Validate that, with leak detection, a Scope that is never closed is
+	 * reported
+	 */
+	@Test
+	public void testLeaks()
+	{
+		PrintStream err = System.err;
+		ByteArrayOutputStream reports = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(reports, true));
+		try {
+			RasterPool pool = new RasterPool(2, true);
+			pool.open().picture(8, 8);
+			RasterPool.Scope open = pool.open();
+			open.picture(8, 8);
+			for (int i = 0; i < 50 && pool.checkLeaks() == 0; i++) {
+				System.gc();
+				Thread.sleep(10);
+			}
+			assertEquals(1, pool.checkLeaks());
+			pool.close();
+			assertEquals(2, pool.checkLeaks());
+			assertEquals(1, open.size());
+		} catch (InterruptedException e) {
+			fail(e.toString());
+		} finally {
+			System.setErr(err);
+		}
+		assertTrue(reports.toString().contains("was never closed"));
+		assertTrue(reports.toString().contains("was still open"));
+	}
+}
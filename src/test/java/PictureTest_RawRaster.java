@@ -0,0 +1,128 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+
+public class PictureTest_RawRaster {
+	/*
+	 * Returns the name of a new temporary raw raster file.
+	 */
+	private static String temporaryFile() throws IOException {
+		File file = File.createTempFile("picture", "." + RawRaster.EXTENSION);
+		file.deleteOnExit();
+		return file.getPath();
+	}
+
+	/*
+	 * Validate that a picture written as a raw raster is read back unchanged
+	 */
+	@Test
+	public void testWriteAndLoad() throws IOException
+	{
+		Picture pic = Picture.loadPicture("Creek.bmp");
+		String fileName = temporaryFile();
+		pic.writeOrFail(fileName);
+		assertEquals(RawRaster.HEADER_SIZE + 4L * pic.getWidth() * pic.getHeight(),
+				new File(fileName).length());
+		assertTrue(pic.equals(new Picture(fileName)));
+	}
+
+	/*
+	 * Validate that a mapped raster reads and writes the pixels of the file,
+	 * and that point operations can be applied to it in place
+	 */
+	@Test
+	public void testMappedRaster() throws IOException
+	{
+		Picture pic = Picture.loadPicture("Maria1.bmp");
+		String fileName = temporaryFile();
+		pic.writeOrFail(fileName);
+
+		try (MappedRaster mapped = MappedRaster.open(fileName, true)) {
+			assertEquals(pic.getWidth(), mapped.getWidth());
+			assertEquals(pic.getHeight(), mapped.getHeight());
+			int[] region = new int[6 * 4];
+			int[] expected = new int[6 * 4];
+			mapped.getRegion(5, 7, 6, 4, region, 0);
+			pic.getRegion(5, 7, 6, 4, expected, 0);
+			assertArrayEquals(expected, region);
+
+			mapped.apply(new FilterPipeline().negate().grayscale().lighten(10).toPointOp());
+			mapped.force();
+		}
+		Picture picCorrect = pic.negate().grayscale().lighten(10);
+		assertTrue(picCorrect.equals(new Picture(fileName)));
+	}
+
+	/*
+	 * Validate that a mapped picture has the pixels of the file without
+	 * reading them onto the heap, and that changing it leaves the file as
+	 * it was
+	 */
+	@Test
+	public void testMap() throws IOException
+	{
+		Picture pic = Picture.loadPicture("Maria1.bmp");
+		String fileName = temporaryFile();
+		pic.writeOrFail(fileName);
+
+		Picture mapped = RawRaster.map(fileName);
+		assertTrue(mapped.isOffHeap());
+		assertEquals(pic.getWidth(), mapped.getWidth());
+		assertEquals(pic.getBasicPixel(17, 42), mapped.getBasicPixel(17, 42));
+		assertTrue(pic.equals(mapped));
+
+		mapped.setBasicPixel(0, 0, 0x123456);
+		assertTrue(pic.negate().equals(RawRaster.map(fileName).negate()));
+		Picture picCorrect = new Picture(pic);
+		picCorrect.setBasicPixel(0, 0, 0x123456);
+		assertTrue(picCorrect.grayscale().equals(mapped.grayscale()));
+		mapped.release();
+		assertTrue(pic.equals(new Picture(fileName)));
+	}
+
+	/*
+	 * Validate that a raster created by MappedRaster can be loaded
+	 */
+	@Test
+	public void testCreate() throws IOException
+	{
+		String fileName = temporaryFile();
+		try (MappedRaster mapped = MappedRaster.create(fileName, 3, 2)) {
+			mapped.setRow(0, new int[] {0xff0000, 0x00ff00, 0x0000ff});
+			mapped.setRow(1, new int[] {0xff123456, 0xffffff, 0});
+		}
+		Picture pic = new Picture(fileName);
+		assertEquals(3, pic.getWidth());
+		assertEquals(0xff00ff00, pic.getBasicPixel(1, 0));
+		assertEquals(0xff123456, pic.getBasicPixel(0, 1));
+		assertEquals(0xff000000, pic.getBasicPixel(2, 1));
+	}
+
+	/*
+	 * Validate that a file that is not a raw raster is refused
+	 */
+	@Test(expected = IOException.class)
+	public void testNotRawRaster() throws IOException
+	{
+		String fileName = temporaryFile();
+		new Picture(2, 2).writeOrFail(fileName);
+		Files.write(new File(fileName).toPath(), new byte[] {1, 2, 3});
+		new Picture(2, 2).loadOrFail(fileName);
+	}
+
+	/*
+	 * Validate that a pipeline with a neighbourhood filter cannot be turned
+	 * into a point operation
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testToPointOp_Blur()
+	{
+		new FilterPipeline().negate().blur(1).toPointOp();
+	}
+
+}
@@ -0,0 +1,134 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+public class PictureTest_Retarget {
+	/*
+	 * Flips a picture along its backward diagonal, pixel by pixel.
+	 */
+	private static Picture transpose(Picture pic) {
+		Picture transposed = new Picture(pic.getHeight(), pic.getWidth());
+		for (int y = 0; y < pic.getHeight(); y++)
+			for (int x = 0; x < pic.getWidth(); x++)
+				transposed.setBasicPixel(y, x, pic.getBasicPixel(x, y));
+		return transposed;
+	}
+
+	/*
+	 * Validate that a horizontal seam is the vertical seam of the
+	 * transposed picture
+	 */
+	@Test
+	public void testComputeHorizontalSeam()
+	{
+		for (String name : new String[] {"Tiny.bmp", "Micro.bmp", "Okinawa_tiny.bmp"}) {
+			Picture pic = Picture.loadPicture(name);
+			assertArrayEquals(transpose(pic).computeSeam(), pic.computeHorizontalSeam());
+		}
+	}
+
+	/*
+	 * Validate that carveHorizontal removes the same pixels as carve does
+	 * on the transposed picture, and does not modify the original
+	 */
+	@Test
+	public void testCarveHorizontal()
+	{
+		Picture pic 		= Picture.loadPicture("Okinawa_tiny.bmp");
+		Picture picCopy 	= new Picture(pic);
+		Picture picCorrect	= transpose(transpose(pic).carve());
+		Picture picTest		= pic.carveHorizontal();
+		assertTrue(pic.equals(picCopy));
+		assertTrue(picCorrect.equals(picTest));
+	}
+
+	/*
+	 * Validate that retargeting in one direction is the same as carving
+	 */
+	@Test
+	public void testRetarget_OneDirection()
+	{
+		Picture pic = Picture.loadPicture("Okinawa_tiny.bmp");
+		assertTrue(pic.carveMany(5).equals(pic.retarget(pic.getWidth() - 5, pic.getHeight())));
+
+		Picture picCorrect = pic;
+		for (int i = 0; i < 4; i++)
+			picCorrect = picCorrect.carveHorizontal();
+		assertTrue(picCorrect.equals(pic.retarget(pic.getWidth(), pic.getHeight() - 4)));
+	}
+
+	/*
+	 * Validate that retargeting in both directions removes the seams carve
+	 * and carveHorizontal would, in an order with both kinds of seams
+	 */
+	@Test
+	public void testRetarget_BothDirections()
+	{
+		Picture pic = Picture.loadPicture("Okinawa_tiny.bmp");
+		int width = pic.getWidth(), height = pic.getHeight();
+		byte[] luminosity = new byte[width * height];
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				luminosity[y * width + x] = (byte) Picture.luminosityOf(pic.getBasicPixel(x, y));
+
+		boolean[] order = TransportMap.removalOrder(luminosity, width, height, height / 3, width / 3);
+		Picture picCorrect = pic;
+		for (boolean horizontal : order)
+			picCorrect = horizontal ? picCorrect.carveHorizontal() : picCorrect.carve();
+
+		Picture picTest = pic.retarget(width - width / 3, height - height / 3);
+		assertEquals(width - width / 3, picTest.getWidth());
+		assertEquals(height - height / 3, picTest.getHeight());
+		assertTrue(picCorrect.equals(picTest));
+	}
+
+	/*
+	 * Validate that the removal order of a large picture has the right
+	 * number of seams of each kind
+	 */
+	@Test
+	public void testRemovalOrder_Scaled()
+	{
+		int width = 400, height = 300;
+		byte[] luminosity = new byte[width * height];
+		for (int i = 0; i < luminosity.length; i++)
+			luminosity[i] = (byte) (i * 37 % 251);
+		boolean[] order = TransportMap.removalOrder(luminosity, width, height, 120, 7);
+		int horizontal = 0;
+		for (boolean step : order)
+			if (step)
+				horizontal++;
+		assertEquals(127, order.length);
+		assertEquals(120, horizontal);
+	}
+
+	/*
+	 * Validate that retarget refuses to enlarge a picture
+	 */
+	@Test
+	public void testRetarget_Invalid()
+	{
+		Picture pic = Picture.loadPicture("Tiny.bmp");
+		assertSame(pic, pic.retarget(pic.getWidth() + 1, pic.getHeight()));
+	}
+
+	/*
+	 * Validate that retarget refuses to remove vertical seams from a single
+	 * row, and horizontal seams from a single column
+	 */
+	@Test
+	public void testRetarget_SingleRow()
+	{
+		Picture pic = new Picture(5, 1);
+		assertSame(pic, pic.retarget(3, 1));
+	}
+
+	@Test
+	public void testRetarget_SingleColumn()
+	{
+		Picture pic = new Picture(1, 5);
+		assertSame(pic, pic.retarget(1, 3));
+	}
+
+}
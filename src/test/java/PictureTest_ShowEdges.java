@@ -0,0 +1,41 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+public class PictureTest_ShowEdges {
+	/*
+	 * Validate that edges in the first column are painted on the result,
+	 * and that the original picture is left as it was
+	 */
+	@Test
+	public void testShowEdges_FirstColumn()
+	{
+		Picture pic = new Picture(2, 3);
+		pic.setBasicPixel(0, 1, 0x000000);
+		Picture picCopy = new Picture(pic);
+
+		Picture edges = pic.showEdges(20);
+		assertTrue(picCopy.equals(pic));
+		assertEquals(0xffffffff, edges.getBasicPixel(0, 0));
+		assertEquals(0xff000000, edges.getBasicPixel(0, 1));
+		assertEquals(0xff000000, edges.getBasicPixel(1, 1));
+		assertEquals(0xff000000, edges.getBasicPixel(0, 2));
+		assertEquals(0xffffffff, edges.getBasicPixel(1, 2));
+	}
+
+	/*
+	 * Validate that color distances are rounded down before they are
+	 * compared with the threshold
+	 */
+	@Test
+	public void testShowEdges_Rounding()
+	{
+		Picture pic = new Picture(2, 1);
+		pic.setBasicPixel(0, 0, 0x000000);
+		pic.setBasicPixel(1, 0, 0x140300); // distance sqrt(409), about 20.2
+
+		assertEquals(0xffffffff, pic.showEdges(20).getBasicPixel(1, 0));
+		assertEquals(0xff000000, pic.showEdges(19).getBasicPixel(1, 0));
+	}
+}
@@ -0,0 +1,151 @@
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+
+public class PictureTest_StagedExecutor {
+	/*
+	 * Validate that every item goes through every stage, and that each
+	 * stage counts the items it did
+	 */
+	@Test
+	public void testStages() throws InterruptedException
+	{
+		Set<Integer> results = ConcurrentHashMap.newKeySet();
+		StagedExecutor<Integer> executor = StagedExecutor
+				.<Integer, Integer>first("square", 2, 3, n -> n * n)
+				.then("negate", 3, 2, n -> -n)
+				.then("collect", 1, 4, n -> results.add(n))
+				.start((input, stage, error) -> fail(input + " failed in " + stage));
+		for (int i = 0; i < 100; i++)
+			executor.submit(i);
+		executor.finish();
+
+		assertEquals(100, results.size());
+		assertTrue(results.contains(-99 * 99));
+		List<StagedExecutor.StageMetrics> metrics = executor.getMetrics();
+		assertEquals(3, metrics.size());
+		assertEquals("negate", metrics.get(1).getName());
+		for (StagedExecutor.StageMetrics stage : metrics) {
+			assertEquals(100, stage.getProcessed());
+			assertEquals(0, stage.getQueueDepth());
+			assertTrue(stage.getMaxQueueDepth() <= stage.getQueueCapacity());
+		}
+	}
+
+	/*
+	 * Validate that a slow stage holds back the stages before it, so that
+	 * no more items are in flight than the queues and threads can hold
+	 */
+	@Test
+	public void testBackpressure() throws InterruptedException
+	{
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+		StagedExecutor<Integer> executor = StagedExecutor
+				.<Integer, Integer>first("fast", 2, 2, n -> {
+					maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+					return n;
+				})
+				.then("slow", 1, 1, n -> {
+					Thread.sleep(2);
+					inFlight.decrementAndGet();
+					return n;
+				})
+				.start((input, stage, error) -> fail(input + " failed in " + stage));
+		for (int i = 0; i < 50; i++)
+			executor.submit(i);
+		executor.finish();
+
+		// 1 item in the slow stage, 1 in its queue, 2 blocked in the fast stage
+		assertTrue("in flight: " + maxInFlight.get(), maxInFlight.get() <= 4);
+		assertTrue(executor.getMetrics().get(0).getAverageBlockedTime() > 0);
+	}
+
+	/*
+	 * Validate that an item a stage fails on is reported with the stage, and
+	 * goes no further, while the other items do
+	 */
+	@Test
+	public void testFailures() throws InterruptedException
+	{
+		Map<Integer, String> failures = new ConcurrentHashMap<>();
+		Set<Integer> results = ConcurrentHashMap.newKeySet();
+		StagedExecutor<Integer> executor = StagedExecutor
+				.<Integer, Integer>first("parse", 1, 2, n -> n)
+				.then("check", 2, 2, n -> {
+					if (n % 10 == 3)
+						throw new IllegalArgumentException("bad " + n);
+					return n;
+				})
+				.then("collect", 1, 2, n -> results.add(n))
+				.start((input, stage, error) -> failures.put(input, stage));
+		for (int i = 0; i < 30; i++)
+			executor.submit(i);
+		executor.finish();
+
+		assertEquals(27, results.size());
+		assertEquals(3, failures.size());
+		assertEquals("check", failures.get(13));
+		assertEquals(3, executor.getMetrics().get(1).getFailed());
+		assertEquals(27, executor.getMetrics().get(2).getProcessed());
+
+		try {
+			executor.submit(31);
+			fail("Items cannot be submitted once finished");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	/*
+	 * Validate that an Error thrown by a task fails the item without
+	 * stopping the worker, and that an Error thrown by the FailureHandler
+	 * comes out of finish once every item is done
+	 */
+	@Test(timeout = 10000)
+	public void testErrors() throws InterruptedException
+	{
+		Map<Integer, Throwable> failures = new ConcurrentHashMap<>();
+		Set<Integer> results = ConcurrentHashMap.newKeySet();
+		StagedExecutor<Integer> executor = StagedExecutor
+				.<Integer, Integer>first("decode", 1, 1, n -> {
+					if (n % 5 == 0)
+						throw new OutOfMemoryError("too big: " + n);
+					return n;
+				})
+				.then("collect", 1, 1, n -> results.add(n))
+				.start((input, stage, error) -> failures.put(input, error));
+		for (int i = 0; i < 20; i++)
+			executor.submit(i);
+		executor.finish();
+
+		assertEquals(16, results.size());
+		assertEquals(4, failures.size());
+		assertTrue(failures.get(5) instanceof OutOfMemoryError);
+		assertEquals(4, executor.getMetrics().get(0).getFailed());
+
+		executor = StagedExecutor
+				.<Integer, Integer>first("check", 1, 1, n -> {
+					if (n == 3)
+						throw new IllegalArgumentException("bad " + n);
+					return n;
+				})
+				.start((input, stage, error) -> fail(input + " failed in " + stage));
+		for (int i = 0; i < 10; i++)
+			executor.submit(i);
+		try {
+			executor.finish();
+			fail("What the FailureHandler throws comes out of finish");
+		} catch (AssertionError e) {
+			assertEquals("3 failed in check", e.getMessage());
+		}
+		assertEquals(9, executor.getMetrics().get(0).getProcessed());
+	}
+}
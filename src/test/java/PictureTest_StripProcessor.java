@@ -0,0 +1,81 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+
+public class PictureTest_StripProcessor {
+	/*
+	 * Returns the name of a new temporary file with the extension provided.
+	 */
+	private static String temporaryFile(String extension) throws IOException {
+		File file = File.createTempFile("picture", "." + extension);
+		file.deleteOnExit();
+		return file.getPath();
+	}
+
+	/*
+	 * Returns the path of a bundled picture.
+	 */
+	private static String resource(String pictureName) {
+		return Picture.class.getResource(pictureName).getFile().replaceAll("%20", " ");
+	}
+
+	/*
+	 * Validate that the halo of a pipeline is the sum of the halos of its
+	 * filters, and that pipelines with other filters are refused
+	 */
+	@Test
+	public void testHalo()
+	{
+		assertEquals(0, new FilterPipeline().grayscale().negate().getHalo());
+		assertEquals(5, new FilterPipeline().blur(3).grayscale().showEdges(10).energy().getHalo());
+		FilterPipeline flipped = new FilterPipeline().blur(1)
+				.filter("flip", picture -> picture.flip(Picture.HORIZONTAL));
+		assertEquals(-1, flipped.getHalo());
+		try {
+			new StripProcessor(flipped);
+			fail("A flip cannot be applied a strip at a time");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/*
+	 * Validate that a BMP file filtered in small strips gives the same
+	 * picture as the whole picture filtered at once, for bottom-up and
+	 * top-down files
+	 */
+	@Test
+	public void testBmpStrips() throws IOException
+	{
+		FilterPipeline pipeline = new FilterPipeline().blur(2).lighten(10).showEdges(15);
+		for (String name : new String[] {"Maria1.bmp", "SecretMessage.bmp", "Camel.bmp"}) {
+			Picture pic = Picture.loadPicture(name);
+			String output = temporaryFile("bmp");
+			new StripProcessor(pipeline).withStripHeight(7)
+					.process(resource(name), output);
+			assertTrue(name, pipeline.apply(pic).equals(new Picture(output)));
+		}
+	}
+
+	/*
+	 * Validate that a raw raster file filtered in strips, in parallel within
+	 * a strip, gives the same picture as the whole picture filtered at once
+	 */
+	@Test
+	public void testRawRasterStrips() throws IOException
+	{
+		Picture pic = Picture.loadPicture("Okinawa_tiny.bmp");
+		String input = temporaryFile(RawRaster.EXTENSION);
+		pic.writeOrFail(input);
+		FilterPipeline pipeline = new FilterPipeline().grayscale().energy().blur(1);
+		String output = temporaryFile(RawRaster.EXTENSION);
+		new StripProcessor(pipeline).withStripHeight(1)
+				.withTraversal(PixelTraversal.parallel(3))
+				.process(input, output);
+		assertTrue(pipeline.apply(pic).equals(new Picture(output)));
+	}
+}
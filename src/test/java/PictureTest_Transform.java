@@ -0,0 +1,101 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+public class PictureTest_Transform {
+	/*
+	 * Moves every pixel of a picture by the transform provided, one pixel
+	 * at a time, rotating right and flipping as many times as needed.
+	 */
+	private static Picture reference(Picture pic, DihedralTransform transform) {
+		int width = pic.getWidth(), height = pic.getHeight();
+		Picture result = new Picture(transform.targetWidth(width, height),
+				transform.targetHeight(width, height));
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int newX = x, newY = y;
+				switch (transform) {
+				case IDENTITY: break;
+				case ROTATE_90: newX = height - 1 - y; newY = x; break;
+				case ROTATE_180: newX = width - 1 - x; newY = height - 1 - y; break;
+				case ROTATE_270: newX = y; newY = width - 1 - x; break;
+				case FLIP_HORIZONTAL: newY = height - 1 - y; break;
+				case FLIP_VERTICAL: newX = width - 1 - x; break;
+				case TRANSPOSE: newX = y; newY = x; break;
+				case ANTI_TRANSPOSE: newX = height - 1 - y; newY = width - 1 - x; break;
+				}
+				result.setBasicPixel(newX, newY, pic.getBasicPixel(x, y));
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Validate that every transform moves each pixel where it belongs, on
+	 * pictures that are not a whole number of tiles
+	 */
+	@Test
+	public void testTransforms()
+	{
+		for (String name : new String[] {"Tiny.bmp", "Okinawa_tiny.bmp", "Maria1.bmp"}) {
+			Picture pic = Picture.loadPicture(name);
+			for (DihedralTransform transform : DihedralTransform.values()) {
+				Picture picTest = new Picture(transform.targetWidth(pic.getWidth(), pic.getHeight()),
+						transform.targetHeight(pic.getWidth(), pic.getHeight()));
+				transform.apply(pic, picTest, PixelTraversal.ROW_MAJOR);
+				assertTrue(name + " " + transform, reference(pic, transform).equals(picTest));
+			}
+		}
+	}
+
+	/*
+	 * Validate that the transforms give the same result with any tiles and
+	 * on several threads
+	 */
+	@Test
+	public void testTransforms_Tiled()
+	{
+		Picture pic = Picture.loadPicture("Maria1.bmp");
+		PixelTraversal[] traversals = {PixelTraversal.tiled(7, 5),
+				PixelTraversal.tiled(0, 3), PixelTraversal.parallel(4),
+				PixelTraversal.tiled(13, 13).withParallelism(3)};
+		for (DihedralTransform transform : DihedralTransform.values()) {
+			Picture picCorrect = reference(pic, transform);
+			for (PixelTraversal traversal : traversals) {
+				Picture picTest = new Picture(picCorrect.getWidth(), picCorrect.getHeight());
+				transform.apply(pic, picTest, traversal);
+				assertTrue(transform + " " + traversal, picCorrect.equals(picTest));
+			}
+		}
+	}
+
+	/*
+	 * Validate that transforms reject a target of the wrong size
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testTransform_WrongSize()
+	{
+		Picture pic = new Picture(3, 2);
+		DihedralTransform.TRANSPOSE.apply(pic, new Picture(3, 2), PixelTraversal.ROW_MAJOR);
+	}
+
+	/*
+	 * Validate that flip keeps the original Picture unchanged on several
+	 * threads and that flipping twice gives it back
+	 */
+	@Test
+	public void testFlip_Twice()
+	{
+		Picture pic = Picture.loadPicture("Logos.bmp");
+		pic.setParallelism(4);
+		Picture picCopy = new Picture(pic);
+		int[] axes = {Picture.HORIZONTAL, Picture.VERTICAL,
+				Picture.FORWARD_DIAGONAL, Picture.BACKWARD_DIAGONAL};
+		for (int axis : axes) {
+			assertTrue(pic.flip(axis).flip(axis).equals(picCopy));
+			assertTrue(pic.equals(picCopy));
+		}
+	}
+
+}
@@ -0,0 +1,78 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+
+public class PictureTest_Widen {
+	/*
+	 * Checks that every row of the original picture appears, in order, in
+	 * the same row of the widened picture.
+	 */
+	private static void assertRowsKept(Picture pic, Picture widened) {
+		for (int y = 0; y < pic.getHeight(); y++) {
+			int x = 0;
+			for (int newX = 0; newX < widened.getWidth() && x < pic.getWidth(); newX++)
+				if (widened.getBasicPixel(newX, y) == pic.getBasicPixel(x, y))
+					x++;
+			assertEquals("row " + y, pic.getWidth(), x);
+		}
+	}
+
+	/*
+	 * Validate that widen adds the columns asked for, keeps the original
+	 * pixels and does not modify the original Picture object
+	 */
+	@Test
+	public void testWiden_Okinawa_Tiny()
+	{
+		Picture pic 		= Picture.loadPicture("Okinawa_tiny.bmp");
+		Picture picCopy 	= new Picture(pic);
+		Picture picTest		= pic.widen(3);
+		assertTrue(pic.equals(picCopy));
+		assertEquals(pic.getWidth() + 3, picTest.getWidth());
+		assertEquals(pic.getHeight(), picTest.getHeight());
+		assertRowsKept(pic, picTest);
+	}
+
+	/*
+	 * Validate that widen doubles the seams carveMany removes
+	 */
+	@Test
+	public void testWiden_MatchesCarveMany()
+	{
+		Picture pic = Picture.loadPicture("Camel.bmp");
+		Picture picTest = pic.widen(5);
+		assertEquals(pic.getWidth() + 5, picTest.getWidth());
+		assertRowsKept(pic.carveMany(5), picTest);
+		assertRowsKept(pic, picTest);
+	}
+
+	/*
+	 * Validate that widen can more than double the width, in several steps
+	 */
+	@Test
+	public void testWiden_Large()
+	{
+		Picture pic = Picture.loadPicture("Tiny.bmp");
+		Picture picTest = pic.widen(3 * pic.getWidth());
+		assertEquals(4 * pic.getWidth(), picTest.getWidth());
+		assertRowsKept(pic, picTest);
+	}
+
+	/*
+	 * Validate that the inserted pixels average their neighbours
+	 */
+	@Test
+	public void testWiden_Average()
+	{
+		Picture pic = new Picture(2, 2);
+		pic.setBasicPixel(1, 0, Color.BLACK.getRGB());
+		pic.setBasicPixel(1, 1, Color.BLACK.getRGB());
+		Picture picTest = pic.widen(1);
+		assertEquals(new Color(127, 127, 127).getRGB(), picTest.getBasicPixel(1, 0));
+		assertEquals(new Color(127, 127, 127).getRGB(), picTest.getBasicPixel(1, 1));
+	}
+
+}